@@ -0,0 +1,189 @@
+package com.asledgehammer.pipewrench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Compares two {@link ApiSnapshot}s in a single merge over their sorted entries, streaming each
+ * added, removed and changed entry as a JSON object. The members of an added or removed class are
+ * implied by the class and are not listed separately.
+ */
+public class ApiDiff {
+
+  private static final String[] CHANGES = {"added", "removed", "changed"};
+  private static final String[] KINDS = {"class", "constructor", "field", "method", "slot",
+      "constant"};
+
+  private final ApiSnapshot before;
+  private final ApiSnapshot after;
+  private final int[][] counts = new int[CHANGES.length][KINDS.length];
+  private final List<String> addedClasses = new ArrayList<>();
+  private final List<String> removedClasses = new ArrayList<>();
+  private boolean first = true;
+
+  public ApiDiff(ApiSnapshot before, ApiSnapshot after) {
+    this.before = before;
+    this.after = after;
+  }
+
+  /**
+   * Writes the report as JSON. The counts are written after the changes, so the report can be
+   * streamed in one pass.
+   */
+  public void write(Writer writer) throws IOException {
+    writer.write("{\n  \"old\": \"" + escape(before.getName()) + "\",\n  \"new\": \""
+        + escape(after.getName()) + "\",\n  \"changes\": [");
+
+    int left = 0;
+    int right = 0;
+    // Members of a class that was added or removed as a whole are skipped.
+    String skipped = null;
+    while (left < before.size() || right < after.size()) {
+      int compare;
+      if (left == before.size()) {
+        compare = 1;
+      } else if (right == after.size()) {
+        compare = -1;
+      } else {
+        compare = before.getKey(left).compareTo(after.getKey(right));
+      }
+
+      String key = compare <= 0 ? before.getKey(left) : after.getKey(right);
+      if (skipped != null && key.startsWith(skipped)) {
+        if (compare <= 0) {
+          left++;
+        }
+        if (compare >= 0) {
+          right++;
+        }
+        continue;
+      }
+      skipped = null;
+
+      if (compare == 0) {
+        String oldValue = before.getValue(left++);
+        String newValue = after.getValue(right++);
+        if (!oldValue.equals(newValue)) {
+          writeChange(writer, 2, key, oldValue, newValue);
+        }
+      } else if (compare < 0) {
+        writeChange(writer, 1, key, before.getValue(left++), null);
+        if (getKind(key) == 0) {
+          removedClasses.add(key);
+          skipped = key + "#";
+        }
+      } else {
+        writeChange(writer, 0, key, null, after.getValue(right++));
+        if (getKind(key) == 0) {
+          addedClasses.add(key);
+          skipped = key + "#";
+        }
+      }
+    }
+
+    writer.write(first ? "],\n" : "\n  ],\n");
+    writer.write("  \"counts\": {");
+    for (int change = 0; change < CHANGES.length; change++) {
+      writer.write(change == 0 ? "\n" : ",\n");
+      writer.write("    \"" + CHANGES[change] + "\": {");
+      for (int kind = 0; kind < KINDS.length; kind++) {
+        writer.write(
+            (kind == 0 ? "" : ", ") + "\"" + KINDS[kind] + "\": " + counts[change][kind]);
+      }
+      writer.write("}");
+    }
+    writer.write("\n  }\n}\n");
+  }
+
+  private void writeChange(
+      Writer writer, int change, String key, String oldValue, String newValue) throws IOException {
+    int kind = getKind(key);
+    counts[change][kind]++;
+    writer.write(first ? "\n" : ",\n");
+    first = false;
+    writer.write("    {\"change\": \"" + CHANGES[change] + "\", \"kind\": \"" + KINDS[kind]
+        + "\", \"path\": \"" + escape(key) + "\"");
+    if (oldValue != null) {
+      writer.write(", \"old\": \"" + escape(oldValue) + "\"");
+    }
+    if (newValue != null) {
+      writer.write(", \"new\": \"" + escape(newValue) + "\"");
+    }
+    writer.write("}");
+  }
+
+  /**
+   * @return The index of the entry's kind in {@link #KINDS}, read from the shape of its key.
+   */
+  private static int getKind(String key) {
+    int hash = key.indexOf('#');
+    if (hash == -1) {
+      return 0;
+    }
+    if (key.indexOf('/', hash) != -1) {
+      return 4;
+    }
+    if (key.startsWith("constructor", hash + 1)) {
+      return 1;
+    }
+    if (key.startsWith("field:", hash + 1)) {
+      return 2;
+    }
+    if (key.startsWith("constant:", hash + 1)) {
+      return 5;
+    }
+    return 3;
+  }
+
+  /**
+   * @return Lines for the console: the counts per kind of change, then every added and removed
+   *     class. Must be called after {@link #write(Writer)}.
+   */
+  public List<String> getSummary() {
+    List<String> lines = new ArrayList<>();
+    lines.add("API changes from " + before.getName() + " to " + after.getName() + ":");
+    for (int change = 0; change < CHANGES.length; change++) {
+      StringBuilder line = new StringBuilder("\t" + CHANGES[change] + ":");
+      int total = 0;
+      for (int kind = 0; kind < KINDS.length; kind++) {
+        int count = counts[change][kind];
+        if (count != 0) {
+          line.append(total == 0 ? " " : ", ").append(count).append(' ').append(KINDS[kind])
+              .append(count == 1 ? "" : KINDS[kind].endsWith("s") ? "es" : "s");
+          total += count;
+        }
+      }
+      if (total == 0) {
+        line.append(" none");
+      }
+      lines.add(line.toString());
+    }
+    for (String className : addedClasses) {
+      lines.add("\t+ " + className);
+    }
+    for (String className : removedClasses) {
+      lines.add("\t- " + className);
+    }
+    return lines;
+  }
+
+  /**
+   * @return True if any entry was added, removed or changed. Must be called after
+   *     {@link #write(Writer)}.
+   */
+  public boolean hasChanges() {
+    for (int[] row : counts) {
+      for (int count : row) {
+        if (count != 0) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static String escape(String string) {
+    return string.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+}
@@ -0,0 +1,254 @@
+package com.asledgehammer.pipewrench;
+
+import com.asledgehammer.typescript.TypeScriptCompiler;
+import com.asledgehammer.typescript.type.*;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * The API of a walked graph as sorted entries, one per class, constructor, field, method, argument
+ * slot and enum constant. Each entry is a key naming the member and a value holding its
+ * signature, for example:
+ *
+ * <pre>
+ *   zombie.iso.IsoObject                     class extends java.lang.Object
+ *   zombie.iso.IsoObject#method:getX         1 overload(s), 0-0 arg(s): number
+ *   zombie.iso.IsoObject#method:setX/arg0    number
+ * </pre>
+ *
+ * <p>The members of a class sort right after it, so two snapshots can be compared in one pass.
+ * Values are interned, so equal signatures within a snapshot are the same string.
+ */
+public class ApiSnapshot {
+
+  static final String HEADER = "# pipewrench-api-snapshot 1";
+  private static final String NAME_PREFIX = "# name: ";
+
+  private final String name;
+  private final String[] keys;
+  private final String[] values;
+
+  private ApiSnapshot(String name, String[] keys, String[] values) {
+    this.name = name;
+    this.keys = keys;
+    this.values = values;
+  }
+
+  /**
+   * Reads the API off a walked compiler.
+   */
+  public static ApiSnapshot of(String name, TypeScriptCompiler compiler) {
+    Builder builder = new Builder();
+    for (TypeScriptElement element : compiler.getAllGeneratedElements()) {
+      Class<?> clazz = element.getClazz();
+      if (clazz == null) {
+        continue;
+      }
+      if (element instanceof TypeScriptClass typeScriptClass) {
+        builder.add(clazz.getName(), describe(clazz));
+        addConstructor(builder, clazz.getName(), typeScriptClass.getConstructor());
+        addFields(builder, clazz.getName(), typeScriptClass.getFields());
+        addMethods(builder, clazz.getName(), "method", typeScriptClass.getMethods());
+        addMethods(builder, clazz.getName(), "static", typeScriptClass.getStaticMethods());
+      } else if (element instanceof TypeScriptEnum typeScriptEnum) {
+        builder.add(clazz.getName(), "enum");
+        // Read the constants from their fields, so that the enum is not initialized.
+        for (Field field : clazz.getDeclaredFields()) {
+          if (field.isEnumConstant()) {
+            builder.add(clazz.getName() + "#constant:" + field.getName(), "constant");
+          }
+        }
+        addFields(builder, clazz.getName(), typeScriptEnum.getFields());
+        addMethods(builder, clazz.getName(), "method", typeScriptEnum.getMethods());
+        addMethods(builder, clazz.getName(), "static", typeScriptEnum.getStaticMethods());
+      }
+    }
+    return builder.build(name);
+  }
+
+  private static String describe(Class<?> clazz) {
+    StringBuilder builder = new StringBuilder();
+    if (clazz.isInterface()) {
+      builder.append("interface");
+    } else if (Modifier.isAbstract(clazz.getModifiers())) {
+      builder.append("abstract class");
+    } else {
+      builder.append("class");
+    }
+    TypeVariable<?>[] parameters = clazz.getTypeParameters();
+    if (parameters.length != 0) {
+      builder.append('<');
+      for (int index = 0; index < parameters.length; index++) {
+        if (index != 0) {
+          builder.append(", ");
+        }
+        builder.append(parameters[index].getName());
+      }
+      builder.append('>');
+    }
+    Type superClazz = clazz.getGenericSuperclass();
+    if (superClazz != null && !superClazz.equals(Object.class)) {
+      builder.append(" extends ").append(superClazz.getTypeName());
+    }
+    return builder.toString();
+  }
+
+  private static void addConstructor(
+      Builder builder, String className, TypeScriptConstructor constructor) {
+    if (constructor == null || constructor.getOverloads() == null) {
+      return;
+    }
+    TypeScriptOverloadSet overloads = constructor.getOverloads();
+    if (!overloads.exists()) {
+      return;
+    }
+    String key = className + "#constructor";
+    builder.add(key, describe(overloads, false));
+    addSlots(builder, key, overloads);
+  }
+
+  private static void addFields(
+      Builder builder, String className, Map<String, TypeScriptField> fields) {
+    for (TypeScriptField field : fields.values()) {
+      if (field.getType() == null || field.getField().isEnumConstant()) {
+        continue;
+      }
+      builder.add(className + "#field:" + field.getField().getName(),
+          (field.isStatic() ? "static " : "") + (field.isFinal() ? "readonly " : "")
+              + field.getType());
+    }
+  }
+
+  private static void addMethods(Builder builder, String className, String kind,
+      Map<String, TypeScriptMethodCluster> methods) {
+    for (TypeScriptMethodCluster method : methods.values()) {
+      TypeScriptOverloadSet overloads = method.getOverloads();
+      if (overloads == null || !overloads.exists()) {
+        continue;
+      }
+      String key = className + "#" + kind + ":" + method.getName();
+      builder.add(key, describe(overloads, true));
+      addSlots(builder, key, overloads);
+    }
+  }
+
+  private static String describe(TypeScriptOverloadSet overloads, boolean withReturn) {
+    StringBuilder builder = new StringBuilder();
+    builder.append(overloads.getSignatures().length).append(" overload(s), ")
+        .append(overloads.getMinParameterCount()).append('-')
+        .append(overloads.getParameterCount()).append(" arg(s)");
+    if (withReturn) {
+      builder.append(": ").append(String.join(" | ", overloads.getReturnTypes()));
+    }
+    return builder.toString();
+  }
+
+  private static void addSlots(Builder builder, String key, TypeScriptOverloadSet overloads) {
+    for (int index = 0; index < overloads.getParameterCount(); index++) {
+      String value = String.join(" | ", overloads.getSlotTypes(index));
+      if (index >= overloads.getMinParameterCount()) {
+        value += " (optional)";
+      }
+      builder.add(key + "/arg" + index, value);
+    }
+  }
+
+  /**
+   * @throws UncheckedIOException If the file cannot be read or is not a snapshot.
+   */
+  public static ApiSnapshot read(File file) {
+    Builder builder = new Builder();
+    String name = file.getName();
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String line = reader.readLine();
+      if (!HEADER.equals(line)) {
+        throw new IOException("Not an API snapshot: " + file);
+      }
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(NAME_PREFIX)) {
+          name = line.substring(NAME_PREFIX.length());
+          continue;
+        }
+        int tab = line.indexOf('\t');
+        if (tab == -1) {
+          continue;
+        }
+        builder.add(line.substring(0, tab), line.substring(tab + 1));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read API snapshot: " + file, e);
+    }
+    return builder.build(name);
+  }
+
+  /**
+   * @return True if the file starts with the snapshot header.
+   */
+  static boolean isSnapshot(File file) {
+    if (!file.isFile()) {
+      return false;
+    }
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      return HEADER.equals(reader.readLine());
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  public void write(Writer writer) throws IOException {
+    writer.write(HEADER);
+    writer.write('\n');
+    writer.write(NAME_PREFIX + name);
+    writer.write('\n');
+    for (int index = 0; index < keys.length; index++) {
+      writer.write(keys[index]);
+      writer.write('\t');
+      writer.write(values[index]);
+      writer.write('\n');
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int size() {
+    return keys.length;
+  }
+
+  String getKey(int index) {
+    return keys[index];
+  }
+
+  String getValue(int index) {
+    return values[index];
+  }
+
+  private static class Builder {
+
+    private final Map<String, String> entries = new HashMap<>();
+    private final Map<String, String> interned = new HashMap<>();
+
+    void add(String key, String value) {
+      String existing = interned.putIfAbsent(value, value);
+      entries.put(key, existing != null ? existing : value);
+    }
+
+    ApiSnapshot build(String name) {
+      String[] keys = entries.keySet().toArray(new String[0]);
+      Arrays.sort(keys);
+      String[] values = new String[keys.length];
+      for (int index = 0; index < keys.length; index++) {
+        values[index] = entries.get(keys[index]);
+      }
+      return new ApiSnapshot(name, keys, values);
+    }
+  }
+}
@@ -0,0 +1,322 @@
+package com.asledgehammer.pipewrench;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * An {@link OutputTarget} that collects every file and writes them into a single zip archive when
+ * finished, followed by an index entry listing every file and its size.
+ *
+ * <p>Files at the root of the archive, such as the partials, can be listed and read back by the
+ * stitcher before the archive is finished.
+ *
+ * <p>Entries carry a fixed timestamp and are written sorted by path, so the archive is the same
+ * for the same files however parallel writers are scheduled. To keep that order, each file is
+ * encoded and deflated by its writer as it is emitted, and only the deflated bytes are held until
+ * {@link #finish()} writes the archive. The archive file is not touched before then.
+ */
+public class ArchiveOutputTarget implements OutputTarget {
+
+  static final String INDEX_NAME = "pipewrench-index.json";
+
+  private static final int LOCAL_HEADER = 0x04034b50;
+  private static final int CENTRAL_HEADER = 0x02014b50;
+  private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+  private static final int VERSION = 20;
+  private static final int UTF8_NAMES = 0x0800;
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+
+  /**
+   * 1980-01-01 00:00 in MS-DOS date format, the earliest time a zip entry can hold.
+   */
+  private static final int ENTRY_DATE = (1 << 5) | 1;
+
+  private final File file;
+  private final Predicate<String> compressed;
+  private final TreeMap<String, Entry> entries = new TreeMap<>();
+  private boolean finished;
+
+  public ArchiveOutputTarget(File file) {
+    this(file, path -> true);
+  }
+
+  /**
+   * @param compressed Selects the entries to deflate. All others are stored as-is.
+   */
+  public ArchiveOutputTarget(File file, Predicate<String> compressed) {
+    this.file = file;
+    this.compressed = compressed;
+  }
+
+  /**
+   * Encodes and deflates the content on the calling thread and holds it until the archive is
+   * finished.
+   *
+   * @throws UncheckedIOException If the entry cannot be encoded or was already written.
+   */
+  @Override
+  public void write(String path, Emitter emitter) {
+    Entry entry = encode(path, emitter);
+    synchronized (entries) {
+      if (finished) {
+        throw new IllegalStateException("The archive is finished: " + file);
+      }
+      if (entries.putIfAbsent(path, entry) != null) {
+        throw duplicate(path);
+      }
+    }
+  }
+
+  private Entry encode(String path, Emitter emitter) {
+    boolean deflate = compressed.test(path);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 12);
+    CRC32 crc = new CRC32();
+    Deflater deflater = deflate ? new Deflater(Deflater.DEFAULT_COMPRESSION, true) : null;
+    try {
+      OutputStream out = deflate ? new DeflaterOutputStream(bytes, deflater, 1 << 14) : bytes;
+      try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+          new CheckedOutputStream(out, crc), StandardCharsets.UTF_8), 1 << 16)) {
+        emitter.emit(writer);
+      }
+      long size = deflate ? deflater.getBytesRead() : bytes.size();
+      return new Entry(bytes.toByteArray(), deflate, size, crc.getValue());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write entry: " + path, e);
+    } finally {
+      if (deflater != null) {
+        deflater.end();
+      }
+    }
+  }
+
+  private static UncheckedIOException duplicate(String path) {
+    return new UncheckedIOException(
+        "Failed to write entry: " + path, new ZipException("duplicate entry: " + path));
+  }
+
+  /**
+   * @return The files written so far at the root of the archive.
+   */
+  @Override
+  public List<String> list() {
+    List<String> names = new ArrayList<>();
+    synchronized (entries) {
+      for (String path : entries.keySet()) {
+        if (path.indexOf('/') == -1) {
+          names.add(path);
+        }
+      }
+    }
+    return names;
+  }
+
+  @Override
+  public InputStream open(String path) throws IOException {
+    return new ByteArrayInputStream(read(path));
+  }
+
+  /**
+   * Inflates a file written so far.
+   */
+  @Override
+  public byte[] read(String path) throws IOException {
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(path);
+    }
+    if (entry == null) {
+      throw new FileNotFoundException(path);
+    }
+    return entry.inflate(path);
+  }
+
+  /**
+   * Writes every entry sorted by path, then the index entry, and closes the archive. Nothing can be
+   * written afterwards. If the archive cannot be completed, the partial file is deleted.
+   *
+   * @throws UncheckedIOException If the archive cannot be completed.
+   */
+  @Override
+  public void finish() {
+    long total = 0;
+    int count;
+    synchronized (entries) {
+      if (finished) {
+        return;
+      }
+      finished = true;
+      try {
+        if (entries.containsKey(INDEX_NAME)) {
+          throw duplicate(INDEX_NAME);
+        }
+        StringBuilder index = new StringBuilder("{\n  \"entries\": [\n");
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+          Map.Entry<String, Entry> next = iterator.next();
+          total += next.getValue().size;
+          index.append("    {\"path\": \"").append(escape(next.getKey()))
+              .append("\", \"size\": ").append(next.getValue().size)
+              .append(", \"compressedSize\": ").append(next.getValue().data.length).append('}')
+              .append(iterator.hasNext() ? ",\n" : "\n");
+        }
+        index.append("  ],\n  \"totalSize\": ").append(total).append("\n}\n");
+        List<Map.Entry<String, Entry>> ordered = new ArrayList<>(entries.entrySet());
+        ordered.add(Map.entry(INDEX_NAME,
+            encode(INDEX_NAME, writer -> writer.write(index.toString()))));
+        count = ordered.size();
+        writeArchive(ordered);
+      } finally {
+        entries.clear();
+      }
+    }
+    System.out.println(
+        "Wrote " + count + " entries (" + total + " bytes) to archive: " + file);
+  }
+
+  /**
+   * Writes the entries in order, then the central directory. The file is deleted if this fails.
+   */
+  private void writeArchive(List<Map.Entry<String, Entry>> ordered) {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (parent != null) {
+      parent.mkdirs();
+    }
+    if (ordered.size() > 0xFFFF) {
+      throw new UncheckedIOException("Failed to complete archive: " + file,
+          new ZipException("too many entries: " + ordered.size()));
+    }
+    boolean completed = false;
+    try {
+      try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+        long offset = 0;
+        long[] offsets = new long[ordered.size()];
+        for (int index = 0; index < ordered.size(); index++) {
+          String path = ordered.get(index).getKey();
+          Entry entry = ordered.get(index).getValue();
+          byte[] name = path.getBytes(StandardCharsets.UTF_8);
+          offsets[index] = offset;
+          writeInt(out, LOCAL_HEADER);
+          writeShort(out, VERSION);
+          writeCommon(out, entry, name);
+          out.write(name);
+          out.write(entry.data);
+          offset += 30 + name.length + entry.data.length;
+        }
+        long directory = offset;
+        for (int index = 0; index < ordered.size(); index++) {
+          Entry entry = ordered.get(index).getValue();
+          byte[] name = ordered.get(index).getKey().getBytes(StandardCharsets.UTF_8);
+          writeInt(out, CENTRAL_HEADER);
+          writeShort(out, VERSION);
+          writeShort(out, VERSION);
+          writeCommon(out, entry, name);
+          writeShort(out, 0);
+          writeShort(out, 0);
+          writeShort(out, 0);
+          writeInt(out, 0);
+          writeInt(out, toUnsignedInt(offsets[index]));
+          out.write(name);
+          offset += 46 + name.length;
+        }
+        writeInt(out, END_OF_CENTRAL_DIRECTORY);
+        writeShort(out, 0);
+        writeShort(out, 0);
+        writeShort(out, ordered.size());
+        writeShort(out, ordered.size());
+        writeInt(out, toUnsignedInt(offset - directory));
+        writeInt(out, toUnsignedInt(directory));
+        writeShort(out, 0);
+      }
+      completed = true;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to complete archive: " + file, e);
+    } finally {
+      if (!completed) {
+        file.delete();
+      }
+    }
+  }
+
+  /**
+   * Writes the header fields shared by local and central headers, from the flags to the extra
+   * field length.
+   */
+  private static void writeCommon(OutputStream out, Entry entry, byte[] name) throws IOException {
+    writeShort(out, UTF8_NAMES);
+    writeShort(out, entry.deflated ? DEFLATED : STORED);
+    writeShort(out, 0);
+    writeShort(out, ENTRY_DATE);
+    writeInt(out, (int) entry.crc);
+    writeInt(out, toUnsignedInt(entry.data.length));
+    writeInt(out, toUnsignedInt(entry.size));
+    writeShort(out, name.length);
+    writeShort(out, 0);
+  }
+
+  private static void writeShort(OutputStream out, int value) throws IOException {
+    out.write(value);
+    out.write(value >>> 8);
+  }
+
+  private static void writeInt(OutputStream out, int value) throws IOException {
+    writeShort(out, value);
+    writeShort(out, value >>> 16);
+  }
+
+  /**
+   * @throws ZipException If the value needs a ZIP64 archive.
+   */
+  private static int toUnsignedInt(long value) throws ZipException {
+    if (value >= 0xFFFFFFFFL) {
+      throw new ZipException("archive too large: " + value);
+    }
+    return (int) value;
+  }
+
+  private static String escape(String string) {
+    return string.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+
+  /**
+   * An encoded file.
+   *
+   * @param data The deflated or stored bytes.
+   * @param size The number of bytes before deflating.
+   */
+  private record Entry(byte[] data, boolean deflated, long size, long crc) {
+
+    byte[] inflate(String path) throws IOException {
+      if (!deflated) {
+        return data;
+      }
+      byte[] content = new byte[Math.toIntExact(size)];
+      Inflater inflater = new Inflater(true);
+      try {
+        inflater.setInput(data);
+        int offset = 0;
+        while (offset < content.length) {
+          int read = inflater.inflate(content, offset, content.length - offset);
+          if (read == 0 && (inflater.finished() || inflater.needsInput())) {
+            throw new ZipException("truncated entry: " + path);
+          }
+          offset += read;
+        }
+        return content;
+      } catch (DataFormatException e) {
+        throw new ZipException("invalid entry: " + path + " (" + e.getMessage() + ")");
+      } finally {
+        inflater.end();
+      }
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.asledgehammer.pipewrench;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads class files from jars and class directories, keeping each jar open until closed.
+ */
+class ClassFileReader implements Closeable {
+
+  private final Map<File, ZipFile> jars = new HashMap<>();
+
+  byte[] read(GameVersions.ClassFile classFile) throws IOException {
+    if (classFile.root().isDirectory()) {
+      return Files.readAllBytes(new File(classFile.root(), classFile.path()).toPath());
+    }
+    ZipFile zip;
+    synchronized (jars) {
+      zip = jars.get(classFile.root());
+      if (zip == null) {
+        zip = new ZipFile(classFile.root());
+        jars.put(classFile.root(), zip);
+      }
+    }
+    ZipEntry entry = zip.getEntry(classFile.path());
+    if (entry == null) {
+      throw new IOException("Missing entry: " + classFile.path() + " in " + classFile.root());
+    }
+    try (InputStream in = zip.getInputStream(entry)) {
+      return in.readAllBytes();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (jars) {
+      for (ZipFile zip : jars.values()) {
+        zip.close();
+      }
+      jars.clear();
+    }
+  }
+}
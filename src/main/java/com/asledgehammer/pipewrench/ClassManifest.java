@@ -0,0 +1,181 @@
+package com.asledgehammer.pipewrench;
+
+import com.asledgehammer.typescript.TypeScriptCompiler;
+import com.asledgehammer.typescript.util.ClassPathIndex;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * The root classes to render, read from a manifest file. See 'pipewrench/classes.manifest' for the
+ * format. Entries are only resolved to binary names here. The classes themselves are loaded by the
+ * compiler when it walks.
+ */
+public class ClassManifest {
+
+  /**
+   * The system property that points at a manifest to use instead of the bundled one.
+   */
+  public static final String PROPERTY = "pipewrench.classes";
+
+  private static final String RESOURCE = "/pipewrench/classes.manifest";
+
+  private final List<String> imports = new ArrayList<>();
+  private final Set<String> entries = new LinkedHashSet<>();
+
+  /**
+   * Reads the manifest named by the 'pipewrench.classes' system property, or the bundled one.
+   */
+  public static ClassManifest load() {
+    String path = System.getProperty(PROPERTY);
+    try {
+      if (path != null) {
+        try (Reader reader = new InputStreamReader(
+            new FileInputStream(path), StandardCharsets.UTF_8)) {
+          return parse(reader);
+        }
+      }
+      InputStream in = ClassManifest.class.getResourceAsStream(RESOURCE);
+      if (in == null) {
+        throw new RuntimeException("Missing class manifest: " + RESOURCE);
+      }
+      try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+        return parse(reader);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(
+          "Failed to read class manifest: " + (path != null ? path : RESOURCE), e);
+    }
+  }
+
+  /**
+   * @param entries Binary names or package globs.
+   */
+  public static ClassManifest of(Collection<String> entries) {
+    ClassManifest manifest = new ClassManifest();
+    manifest.entries.addAll(entries);
+    return manifest;
+  }
+
+  public static ClassManifest parse(Reader reader) throws IOException {
+    ClassManifest manifest = new ClassManifest();
+    BufferedReader buffered = new BufferedReader(reader);
+    String line;
+    int number = 0;
+    while ((line = buffered.readLine()) != null) {
+      number++;
+      int comment = line.indexOf('#');
+      if (comment != -1) {
+        line = line.substring(0, comment);
+      }
+      line = line.trim();
+      if (line.isEmpty()) {
+        continue;
+      }
+      if (line.startsWith("import ")) {
+        String imported = line.substring("import ".length()).trim();
+        if (!imported.endsWith(".*")) {
+          throw new RuntimeException(
+              "Line " + number + ": Only package imports ('pkg.*') are supported: " + line);
+        }
+        manifest.imports.add(imported.substring(0, imported.length() - 2));
+      } else {
+        manifest.entries.add(line);
+      }
+    }
+    return manifest;
+  }
+
+  /**
+   * Resolves simple names to binary names and adds every entry to the compiler. Package globs are
+   * passed on as-is and expanded by the compiler. The class path is only indexed if the manifest
+   * holds simple names.
+   */
+  public void addTo(TypeScriptCompiler compiler) {
+    List<String> classNames = resolve(compiler.getClassLoader(), compiler::getClassPathIndex);
+    compiler.addByName(classNames.toArray(new String[0]));
+  }
+
+  /**
+   * @param index Supplies the index that simple names are looked up in, only if there are any.
+   * @return The entries with simple names resolved to binary names. Package globs are kept as-is.
+   */
+  public List<String> resolve(ClassLoader classLoader, Supplier<ClassPathIndex> index) {
+    List<String> classNames = new ArrayList<>();
+    for (String entry : entries) {
+      if (entry.indexOf('.') == -1) {
+        classNames.add(resolveSimpleName(classLoader, index.get(), entry));
+      } else {
+        classNames.add(entry);
+      }
+    }
+    return classNames;
+  }
+
+  /**
+   * @return The entries as binary names, with simple names resolved and package globs expanded
+   *     from the index.
+   */
+  public List<String> expand(ClassLoader classLoader, ClassPathIndex index) {
+    List<String> classNames = new ArrayList<>();
+    for (String entry : resolve(classLoader, () -> index)) {
+      if (entry.endsWith(".**")) {
+        classNames.addAll(index.getClasses(entry.substring(0, entry.length() - 3), true));
+      } else if (entry.endsWith(".*")) {
+        classNames.addAll(index.getClasses(entry.substring(0, entry.length() - 2), false));
+      } else {
+        classNames.add(entry);
+      }
+    }
+    return classNames;
+  }
+
+  /**
+   * Looks a simple name, optionally with nested names after '$', up in the imported packages the
+   * way javac resolves on-demand imports. A name that is not found is returned as-is and reported
+   * by the compiler when it fails to load.
+   */
+  private String resolveSimpleName(ClassLoader classLoader, ClassPathIndex index, String name) {
+    int nested = name.indexOf('$');
+    String topLevel = nested != -1 ? name.substring(0, nested) : name;
+    String found = null;
+    for (String imported : imports) {
+      if (index.contains(imported + "." + topLevel)) {
+        if (found != null) {
+          throw new RuntimeException(
+              "Ambiguous class '" + name + "' in packages " + found + " and " + imported);
+        }
+        found = imported;
+      }
+    }
+    if (found == null) {
+      // Classes outside the class path, such as the JDK's, are probed without initializing them.
+      for (String imported : imports) {
+        if (exists(classLoader, imported + "." + topLevel)) {
+          found = imported;
+          break;
+        }
+      }
+    }
+    return found != null ? found + "." + name : name;
+  }
+
+  private static boolean exists(ClassLoader classLoader, String className) {
+    try {
+      Class.forName(className, false, classLoader);
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  public List<String> getImports() {
+    return Collections.unmodifiableList(imports);
+  }
+
+  public Set<String> getEntries() {
+    return Collections.unmodifiableSet(entries);
+  }
+}
@@ -0,0 +1,476 @@
+package com.asledgehammer.pipewrench;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link OutputTarget} backed by a directory, leaving files untouched when their content has not
+ * changed. A manifest of content hashes, sizes and modification times is kept in the directory
+ * between runs so that unchanged files keep their timestamps and downstream incremental builds
+ * skip them. A file whose size or modification time no longer matches the manifest, such as one
+ * edited by hand, is written again.
+ *
+ * <p>Several targets may share a directory. Each saves only the entries it wrote into the manifest
+ * on disk, under a lock, so one target does not overwrite the hashes recorded by another.
+ *
+ * <p>All content is encoded as UTF-8 through per-thread buffers and hashed in memory, so an
+ * unchanged file costs no disk write at all. Only content larger than {@link #SPILL_SIZE} is
+ * streamed into a temporary file while it is emitted. Failures are thrown rather than logged.
+ */
+public class FileOutputTarget implements OutputTarget {
+
+  static final String MANIFEST_NAME = ".pipewrench-manifest";
+
+  private static final int CHAR_BUFFER_SIZE = 1 << 15;
+  private static final int BYTE_BUFFER_SIZE = 1 << 17;
+
+  /**
+   * The most bytes of one file held in memory before the rest is streamed to a temporary file.
+   */
+  static final int SPILL_SIZE = 1 << 21;
+
+  /**
+   * Held while a manifest is saved. File locks are held by the whole process, so they do not keep
+   * out other targets in it.
+   */
+  private static final Object MANIFEST_LOCK = new Object();
+
+  private static final ThreadLocal<ChannelWriter> buffers =
+      ThreadLocal.withInitial(ChannelWriter::new);
+
+  private final Path root;
+  private final Path manifestPath;
+  private final Map<String, Entry> manifest = new ConcurrentHashMap<>();
+  private final Map<String, Entry> changed = new ConcurrentHashMap<>();
+  private final AtomicInteger written = new AtomicInteger();
+  private final AtomicInteger skipped = new AtomicInteger();
+
+  public FileOutputTarget(File root) {
+    this.root = root.toPath().toAbsolutePath().normalize();
+    this.manifestPath = this.root.resolve(MANIFEST_NAME);
+    readManifest();
+  }
+
+  /**
+   * Hashes the content as it is emitted. The target is only replaced, atomically through a
+   * temporary file next to it, if the hash differs from the last write or the file on disk no
+   * longer matches the manifest.
+   *
+   * @throws UncheckedIOException If the file cannot be written.
+   */
+  @Override
+  public void write(String key, Emitter emitter) {
+    Path path = resolve(key);
+    ChannelWriter writer = buffers.get();
+    Path temp = null;
+    try {
+      writer.open(path);
+      emitter.emit(writer);
+      writer.close();
+
+      String hash = toHex(writer.digest.digest());
+      Entry previous = manifest.get(key);
+      if (previous != null
+          && previous.hash.equals(hash)
+          && previous.size == writer.count
+          && isUnchanged(path, previous)) {
+        skipped.incrementAndGet();
+        return;
+      }
+
+      temp = writer.commit();
+      try {
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+      temp = null;
+      long lastModified = Files.getLastModifiedTime(path).to(TimeUnit.NANOSECONDS);
+      Entry entry = new Entry(hash, writer.count, lastModified);
+      manifest.put(key, entry);
+      changed.put(key, entry);
+      written.incrementAndGet();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write file: " + path, e);
+    } finally {
+      writer.release();
+      if (temp != null) {
+        try {
+          Files.deleteIfExists(temp);
+        } catch (IOException ignored) {
+        }
+      }
+    }
+  }
+
+  /**
+   * @return True if the file on disk still has the size and modification time it was written
+   *     with.
+   */
+  private static boolean isUnchanged(Path path, Entry entry) throws IOException {
+    if (!Files.isRegularFile(path)) {
+      return false;
+    }
+    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    return attributes.size() == entry.size
+        && attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS) == entry.lastModified;
+  }
+
+  @Override
+  public List<String> list() {
+    List<String> names = new ArrayList<>();
+    File[] files = root.toFile().listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.isFile() && !file.getName().equals(MANIFEST_NAME)) {
+          names.add(file.getName());
+        }
+      }
+    }
+    names.sort(Comparator.naturalOrder());
+    return names;
+  }
+
+  @Override
+  public InputStream open(String path) throws IOException {
+    return Files.newInputStream(resolve(path));
+  }
+
+  @Override
+  public byte[] read(String path) throws IOException {
+    return Files.readAllBytes(resolve(path));
+  }
+
+  @Override
+  public Stamp stamp(String path) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(resolve(path), BasicFileAttributes.class);
+    return new Stamp(attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+  }
+
+  /**
+   * Saves the entries written since the last call into the manifest on disk, keeping the entries
+   * saved there by other targets, and reports how many files were written.
+   *
+   * @throws UncheckedIOException If the manifest cannot be written.
+   */
+  @Override
+  public void finish() {
+    synchronized (MANIFEST_LOCK) {
+      try {
+        Files.createDirectories(root);
+        try (FileChannel channel = FileChannel.open(manifestPath, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+             FileLock ignored = channel.lock()) {
+          ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(channel.size()));
+          while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+              break;
+            }
+          }
+          Map<String, Entry> merged = new TreeMap<>();
+          parseManifest(new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8),
+              merged);
+          merged.putAll(changed);
+
+          StringBuilder builder = new StringBuilder();
+          for (Map.Entry<String, Entry> next : merged.entrySet()) {
+            Entry entry = next.getValue();
+            builder.append(entry.hash).append('\t').append(entry.size).append('\t')
+                .append(entry.lastModified).append('\t').append(next.getKey()).append('\n');
+          }
+          channel.truncate(0).position(0);
+          ByteBuffer bytes = ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8));
+          while (bytes.hasRemaining()) {
+            channel.write(bytes);
+          }
+          manifest.putAll(merged);
+          changed.clear();
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to write manifest: " + manifestPath, e);
+      }
+    }
+    System.out.println(
+        "Wrote " + written.getAndSet(0) + " file(s), skipped " + skipped.getAndSet(0)
+            + " unchanged file(s).");
+  }
+
+  public int getWrittenCount() {
+    return written.get();
+  }
+
+  public int getSkippedCount() {
+    return skipped.get();
+  }
+
+  public File getRoot() {
+    return root.toFile();
+  }
+
+  private Path resolve(String path) {
+    Path resolved = root.resolve(path).normalize();
+    if (!resolved.startsWith(root)) {
+      throw new RuntimeException("Path is outside of the output directory: " + path);
+    }
+    return resolved;
+  }
+
+  private void readManifest() {
+    if (!Files.isRegularFile(manifestPath)) {
+      return;
+    }
+    try {
+      parseManifest(Files.readString(manifestPath, StandardCharsets.UTF_8), manifest);
+    } catch (IOException ignored) {
+    }
+  }
+
+  /**
+   * Reads the entries of a manifest into the map. A damaged manifest yields no entries, which only
+   * costs a full rewrite.
+   */
+  private static void parseManifest(String content, Map<String, Entry> into) {
+    Map<String, Entry> entries = new HashMap<>();
+    try {
+      for (String line : content.split("\n")) {
+        String[] split = line.split("\t", 4);
+        if (split.length != 4) {
+          // Lines without a modification time are rewritten once.
+          continue;
+        }
+        entries.put(split[3],
+            new Entry(split[0], Long.parseLong(split[1]), Long.parseLong(split[2])));
+      }
+    } catch (NumberFormatException e) {
+      return;
+    }
+    into.putAll(entries);
+  }
+
+  static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  static String toHex(byte[] bytes) {
+    StringBuilder builder = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+      builder.append(Character.forDigit(b & 0xF, 16));
+    }
+    return builder.toString();
+  }
+
+  /**
+   * @param lastModified The modification time of the written file in nanoseconds since the epoch.
+   */
+  private record Entry(String hash, long size, long lastModified) {
+  }
+
+  /**
+   * Encodes characters as UTF-8 into a direct buffer and drains it into memory, hashing the bytes
+   * on the way out. Past {@link #SPILL_SIZE} the bytes go on into a temporary file next to the
+   * target instead. One instance is kept per thread and reused for every file written by that
+   * thread.
+   */
+  private static class ChannelWriter extends Writer {
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+    private final MessageDigest digest = newDigest();
+    private byte[] held = new byte[BYTE_BUFFER_SIZE];
+    private int heldLength;
+    private Path target;
+    private Path temp;
+    private FileChannel channel;
+    private boolean open;
+    private long count;
+
+    void open(Path target) {
+      this.target = target;
+      this.temp = null;
+      this.channel = null;
+      this.open = true;
+      this.heldLength = 0;
+      this.count = 0;
+      encoder.reset();
+      chars.clear();
+      bytes.clear();
+      digest.reset();
+    }
+
+    /**
+     * Writes the bytes still held in memory into the temporary file, creating it first if the
+     * content never spilled.
+     *
+     * @return The temporary file, now owned by the caller.
+     */
+    Path commit() throws IOException {
+      if (channel == null) {
+        spill();
+      }
+      channel.close();
+      channel = null;
+      Path committed = temp;
+      temp = null;
+      return committed;
+    }
+
+    /**
+     * Closes and deletes a temporary file that was not committed.
+     */
+    void release() {
+      open = false;
+      target = null;
+      if (channel != null) {
+        try {
+          channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+      }
+      if (temp != null) {
+        try {
+          Files.deleteIfExists(temp);
+        } catch (IOException ignored) {
+        }
+        temp = null;
+      }
+    }
+
+    /**
+     * Opens the temporary file and moves the bytes held in memory into it.
+     */
+    private void spill() throws IOException {
+      Files.createDirectories(target.getParent());
+      temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+      channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+      ByteBuffer buffer = ByteBuffer.wrap(held, 0, heldLength);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      heldLength = 0;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+      if (!chars.hasRemaining()) {
+        encode(false);
+      }
+      chars.put((char) c);
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+      while (length > 0) {
+        if (!chars.hasRemaining()) {
+          encode(false);
+        }
+        int n = Math.min(length, chars.remaining());
+        chars.put(buffer, offset, n);
+        offset += n;
+        length -= n;
+      }
+    }
+
+    @Override
+    public void write(String string, int offset, int length) throws IOException {
+      while (length > 0) {
+        if (!chars.hasRemaining()) {
+          encode(false);
+        }
+        int n = Math.min(length, chars.remaining());
+        chars.put(string, offset, offset + n);
+        offset += n;
+        length -= n;
+      }
+    }
+
+    @Override
+    public Writer append(CharSequence sequence) throws IOException {
+      String string = String.valueOf(sequence);
+      write(string, 0, string.length());
+      return this;
+    }
+
+    private void encode(boolean endOfInput) throws IOException {
+      chars.flip();
+      while (true) {
+        CoderResult result = encoder.encode(chars, bytes, endOfInput);
+        if (result.isOverflow()) {
+          drain();
+        } else {
+          break;
+        }
+      }
+      // Keep a trailing high surrogate for the next round.
+      chars.compact();
+    }
+
+    private void drain() throws IOException {
+      bytes.flip();
+      digest.update(bytes.duplicate());
+      int length = bytes.remaining();
+      count += length;
+      if (channel == null && heldLength + length <= SPILL_SIZE) {
+        if (heldLength + length > held.length) {
+          held = Arrays.copyOf(held, Math.min(SPILL_SIZE, Math.max(held.length * 2,
+              heldLength + length)));
+        }
+        bytes.get(held, heldLength, length);
+        heldLength += length;
+      } else {
+        if (channel == null) {
+          spill();
+        }
+        while (bytes.hasRemaining()) {
+          channel.write(bytes);
+        }
+      }
+      bytes.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+      encode(false);
+      drain();
+    }
+
+    /**
+     * Finishes the encoding and drains everything. The content stays held until {@link #commit()}
+     * or {@link #release()}.
+     */
+    @Override
+    public void close() throws IOException {
+      if (!open) {
+        return;
+      }
+      encode(true);
+      while (encoder.flush(bytes).isOverflow()) {
+        drain();
+      }
+      drain();
+      open = false;
+    }
+  }
+}
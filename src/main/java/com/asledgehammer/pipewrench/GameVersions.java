@@ -0,0 +1,342 @@
+package com.asledgehammer.pipewrench;
+
+import com.asledgehammer.typescript.util.ClassPathIndex;
+
+import java.io.*;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Several game builds, such as the stable and beta branches, loaded side by side for one run.
+ *
+ * <p>A class whose bytes are identical in every version, and that only refers to other such
+ * classes, is defined once by a shared loader that each version's loader delegates to. Those
+ * classes are loaded and reflected once no matter how many versions are generated. The rest are
+ * loaded by each version's own loader.
+ */
+public class GameVersions implements AutoCloseable {
+
+  /**
+   * A class file in a jar or class directory. The CRC comes from the jar's central directory, and
+   * is -1 for class directories.
+   */
+  record ClassFile(File root, String path, long size, long crc) {
+  }
+
+  /**
+   * @param classLoader Loads the version's classes, delegating to the shared loader first.
+   * @param index Lists the version's top-level classes, for package roots.
+   */
+  public record Version(String name, ClassLoader classLoader, ClassPathIndex index) {
+  }
+
+  private final List<Version> versions;
+  private final List<URLClassLoader> classLoaders;
+  private final SharedClassLoader shared;
+
+  private GameVersions(
+      List<Version> versions, List<URLClassLoader> classLoaders, SharedClassLoader shared) {
+    this.versions = versions;
+    this.classLoaders = classLoaders;
+    this.shared = shared;
+  }
+
+  /**
+   * @param specs One 'name=path' per version. The path is a jar, or a directory of classes whose
+   *     jars are added as well.
+   */
+  public static GameVersions parse(List<String> specs) {
+    Map<String, File> roots = new LinkedHashMap<>();
+    for (String spec : specs) {
+      int index = spec.indexOf('=');
+      if (index <= 0 || index == spec.length() - 1) {
+        throw new RuntimeException("Invalid class path, expected 'name=path': " + spec);
+      }
+      String name = spec.substring(0, index);
+      File root = new File(spec.substring(index + 1));
+      if (!root.exists()) {
+        throw new RuntimeException("Missing class path for version '" + name + "': " + root);
+      }
+      if (roots.put(name, root) != null) {
+        throw new RuntimeException("Duplicate version: " + name);
+      }
+    }
+    return of(roots);
+  }
+
+  public static GameVersions of(Map<String, File> roots) {
+    if (roots.isEmpty()) {
+      throw new RuntimeException("No versions to load.");
+    }
+    List<String> names = new ArrayList<>(roots.keySet());
+    List<List<File>> classPaths = new ArrayList<>();
+    List<Map<String, ClassFile>> classFiles = new ArrayList<>();
+    for (File root : roots.values()) {
+      List<File> classPath = expand(root);
+      classPaths.add(classPath);
+      classFiles.add(scan(classPath));
+    }
+
+    SharedClassLoader shared = new SharedClassLoader(findShared(classFiles));
+    System.out.println("Sharing " + shared.size() + " class(es) across " + names.size()
+        + " version(s).");
+
+    List<Version> versions = new ArrayList<>();
+    List<URLClassLoader> classLoaders = new ArrayList<>();
+    for (int index = 0; index < names.size(); index++) {
+      String name = names.get(index);
+      List<File> classPath = classPaths.get(index);
+      URL[] urls = new URL[classPath.size()];
+      for (int entry = 0; entry < urls.length; entry++) {
+        try {
+          urls[entry] = classPath.get(entry).toURI().toURL();
+        } catch (MalformedURLException e) {
+          throw new RuntimeException("Invalid class path entry: " + classPath.get(entry), e);
+        }
+      }
+      URLClassLoader classLoader = new URLClassLoader("pipewrench-" + name, urls, shared);
+      String joined = classPath.stream().map(File::getPath)
+          .collect(Collectors.joining(File.pathSeparator));
+      classLoaders.add(classLoader);
+      versions.add(new Version(name, classLoader, ClassPathIndex.of(joined)));
+      System.out.println("\t" + name + ": " + (classFiles.get(index).size() - shared.size())
+          + " class(es) of its own.");
+    }
+    return new GameVersions(versions, classLoaders, shared);
+  }
+
+  /**
+   * A directory is a class directory, followed by the jars directly inside it in name order.
+   */
+  private static List<File> expand(File root) {
+    List<File> classPath = new ArrayList<>();
+    classPath.add(root);
+    if (root.isDirectory()) {
+      File[] jars = root.listFiles((dir, name) -> name.toLowerCase().endsWith(".jar"));
+      if (jars != null) {
+        Arrays.sort(jars);
+        classPath.addAll(Arrays.asList(jars));
+      }
+    }
+    return classPath;
+  }
+
+  /**
+   * @return Every class file by binary name. The first class path entry holding a class wins.
+   */
+  private static Map<String, ClassFile> scan(List<File> classPath) {
+    Map<String, ClassFile> classFiles = new HashMap<>();
+    for (File entry : classPath) {
+      if (entry.isDirectory()) {
+        Path root = entry.toPath();
+        try (Stream<Path> stream = Files.walk(root)) {
+          stream.filter(Files::isRegularFile).forEach(path -> {
+            String relative = root.relativize(path).toString().replace(File.separatorChar, '/');
+            String name = getClassName(relative);
+            if (name != null) {
+              classFiles.putIfAbsent(
+                  name, new ClassFile(entry, relative, path.toFile().length(), -1));
+            }
+          });
+        } catch (IOException e) {
+          throw new UncheckedIOException("Failed to scan class directory: " + entry, e);
+        }
+      } else {
+        try (ZipFile zip = new ZipFile(entry)) {
+          Enumeration<? extends ZipEntry> entries = zip.entries();
+          while (entries.hasMoreElements()) {
+            ZipEntry zipEntry = entries.nextElement();
+            String name = getClassName(zipEntry.getName());
+            if (name != null && !zipEntry.isDirectory()) {
+              classFiles.putIfAbsent(name, new ClassFile(
+                  entry, zipEntry.getName(), zipEntry.getSize(), zipEntry.getCrc()));
+            }
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException("Failed to scan jar: " + entry, e);
+        }
+      }
+    }
+    return classFiles;
+  }
+
+  private static String getClassName(String path) {
+    if (!path.endsWith(".class") || path.startsWith("META-INF/")) {
+      return null;
+    }
+    String name = path.substring(0, path.length() - ".class".length()).replace('/', '.');
+    if (name.endsWith("module-info") || name.endsWith("package-info")) {
+      return null;
+    }
+    return name;
+  }
+
+  /**
+   * Finds the classes with identical bytes in every version, then drops those that refer to a game
+   * class that is not shared, until none is left. A shared class can then always be linked by the
+   * shared loader.
+   *
+   * @return The shared classes by binary name, located in the first version.
+   */
+  private static Map<String, ClassFile> findShared(List<Map<String, ClassFile>> classFiles) {
+    Map<String, ClassFile> first = classFiles.get(0);
+    Set<String> known = new HashSet<>();
+    for (Map<String, ClassFile> map : classFiles) {
+      known.addAll(map.keySet());
+    }
+
+    Map<String, Set<String>> references = new ConcurrentHashMap<>();
+    try (ClassFileReader reader = new ClassFileReader()) {
+      first.entrySet().parallelStream().forEach(entry -> {
+        ClassFile classFile = entry.getValue();
+        List<ClassFile> others = new ArrayList<>();
+        for (int index = 1; index < classFiles.size(); index++) {
+          ClassFile other = classFiles.get(index).get(entry.getKey());
+          // Sizes and central directory CRCs rule out most changed classes without reading them.
+          if (other == null
+              || other.size() != classFile.size()
+              || (other.crc() != -1 && classFile.crc() != -1 && other.crc() != classFile.crc())) {
+            return;
+          }
+          others.add(other);
+        }
+        try {
+          byte[] bytes = reader.read(classFile);
+          byte[] digest = FileOutputTarget.newDigest().digest(bytes);
+          for (ClassFile other : others) {
+            if (!MessageDigest.isEqual(digest,
+                FileOutputTarget.newDigest().digest(reader.read(other)))) {
+              return;
+            }
+          }
+          Set<String> referenced = getReferences(bytes);
+          if (referenced != null) {
+            references.put(entry.getKey(), referenced);
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException("Failed to read class: " + entry.getKey(), e);
+        }
+      });
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    boolean removed;
+    do {
+      removed = false;
+      Iterator<Map.Entry<String, Set<String>>> iterator = references.entrySet().iterator();
+      while (iterator.hasNext()) {
+        for (String name : iterator.next().getValue()) {
+          if (known.contains(name) && !references.containsKey(name)) {
+            iterator.remove();
+            removed = true;
+            break;
+          }
+        }
+      }
+    } while (removed);
+
+    Map<String, ClassFile> shared = new HashMap<>();
+    for (String name : references.keySet()) {
+      shared.put(name, first.get(name));
+    }
+    return shared;
+  }
+
+  /**
+   * Reads the class names a class file refers to from its constant pool: every class constant, and
+   * every 'L...;' in its descriptors and signatures. Anything that is not a class name is ignored
+   * later as unknown.
+   *
+   * @return The binary names, or null if the class file cannot be parsed.
+   */
+  static Set<String> getReferences(byte[] bytes) {
+    Set<String> references = new HashSet<>();
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+      if (in.readInt() != 0xCAFEBABE) {
+        return null;
+      }
+      in.skipBytes(4);
+      int count = in.readUnsignedShort();
+      String[] strings = new String[count];
+      List<Integer> classes = new ArrayList<>();
+      for (int index = 1; index < count; index++) {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+          case 1 -> strings[index] = in.readUTF();
+          case 7 -> classes.add(in.readUnsignedShort());
+          case 8, 16, 19, 20 -> in.skipBytes(2);
+          case 15 -> in.skipBytes(3);
+          case 3, 4, 9, 10, 11, 12, 17, 18 -> in.skipBytes(4);
+          case 5, 6 -> {
+            // Longs and doubles take up two entries.
+            in.skipBytes(8);
+            index++;
+          }
+          default -> {
+            return null;
+          }
+        }
+      }
+      for (int index : classes) {
+        String name = strings[index];
+        if (name != null && !name.startsWith("[")) {
+          references.add(name.replace('/', '.'));
+        }
+      }
+      for (String string : strings) {
+        if (string != null) {
+          addDescriptorNames(string, references);
+        }
+      }
+    } catch (IOException e) {
+      return null;
+    }
+    return references;
+  }
+
+  private static void addDescriptorNames(String string, Set<String> references) {
+    int start = string.indexOf('L');
+    while (start != -1) {
+      int end = start + 1;
+      while (end < string.length()) {
+        char c = string.charAt(end);
+        if (c == ';' || c == '<') {
+          break;
+        }
+        end++;
+      }
+      if (end < string.length() && end > start + 1) {
+        references.add(string.substring(start + 1, end).replace('/', '.'));
+      }
+      start = string.indexOf('L', start + 1);
+    }
+  }
+
+  public List<Version> getVersions() {
+    return Collections.unmodifiableList(versions);
+  }
+
+  @Override
+  public void close() {
+    try {
+      for (URLClassLoader classLoader : classLoaders) {
+        classLoader.close();
+      }
+      shared.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to close class loaders", e);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package com.asledgehammer.pipewrench;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * An {@link OutputTarget} that keeps every file in memory as UTF-8 bytes. This lets the whole
+ * generate and stitch pipeline run without touching the disk.
+ */
+public class MemoryOutputTarget implements OutputTarget {
+
+  private final Map<String, byte[]> files = new ConcurrentSkipListMap<>();
+
+  @Override
+  public void write(String path, Emitter emitter) {
+    StringWriter writer = new StringWriter();
+    try {
+      emitter.emit(writer);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write file: " + path, e);
+    }
+    files.put(path, writer.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public List<String> list() {
+    List<String> names = new ArrayList<>();
+    for (String path : files.keySet()) {
+      if (path.indexOf('/') == -1) {
+        names.add(path);
+      }
+    }
+    return names;
+  }
+
+  @Override
+  public InputStream open(String path) throws IOException {
+    byte[] bytes = files.get(path);
+    if (bytes == null) {
+      throw new FileNotFoundException(path);
+    }
+    return new ByteArrayInputStream(bytes);
+  }
+
+  @Override
+  public byte[] read(String path) throws IOException {
+    byte[] bytes = files.get(path);
+    if (bytes == null) {
+      throw new FileNotFoundException(path);
+    }
+    return bytes;
+  }
+
+  @Override
+  public void finish() {
+  }
+
+  /**
+   * @return The SHA-256 of every file, by path, in path order.
+   */
+  public Map<String, String> getDigests() {
+    Map<String, String> digests = new LinkedHashMap<>();
+    for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+      digests.put(entry.getKey(),
+          FileOutputTarget.toHex(FileOutputTarget.newDigest().digest(entry.getValue())));
+    }
+    return digests;
+  }
+
+  /**
+   * @return One SHA-256 over the paths and digests of every file.
+   */
+  public String getDigest() {
+    MessageDigest digest = FileOutputTarget.newDigest();
+    for (Map.Entry<String, String> entry : getDigests().entrySet()) {
+      digest.update((entry.getKey() + '\0' + entry.getValue() + '\n')
+          .getBytes(StandardCharsets.UTF_8));
+    }
+    return FileOutputTarget.toHex(digest.digest());
+  }
+
+  public byte[] get(String path) {
+    return files.get(path);
+  }
+
+  public String getString(String path) {
+    byte[] bytes = files.get(path);
+    return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+  }
+
+  /**
+   * @return A live, path-sorted view of every file written so far.
+   */
+  public Map<String, byte[]> getFiles() {
+    return files;
+  }
+}
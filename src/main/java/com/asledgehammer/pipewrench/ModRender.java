@@ -0,0 +1,181 @@
+package com.asledgehammer.pipewrench;
+
+import com.asledgehammer.typescript.TypeScriptCompiler;
+import com.asledgehammer.typescript.settings.TypeScriptSettings;
+import com.asledgehammer.typescript.util.ClassPathIndex;
+import se.krka.kahlua.integration.annotations.LuaMethod;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Renders only the part of the API a mod uses. The mod's TypeScript sources are read with {@link
+ * ModUsage}, and the walk starts from the classes they name instead of every root of the {@link
+ * ClassManifest}. The other roots are still declared when the walk reaches them through a
+ * signature, so the typings stay complete, and Lua's global functions the mod does not call are
+ * left out.
+ */
+public class ModRender {
+
+  private final String outDir;
+  private final File modDir;
+
+  public ModRender(String outDir, File modDir) {
+    this.outDir = outDir;
+    this.modDir = modDir;
+  }
+
+  public void render() {
+    ModUsage usage = ModUsage.scan(modDir, RenderZomboid.MODULE_NAME);
+    System.out.println("Read " + usage.getFileCount() + " source file(s) using "
+        + usage.getNames().size() + " name(s) from " + RenderZomboid.MODULE_NAME + ".");
+    if (usage.isEverything()) {
+      System.out.println("The mod re-exports the whole module. Rendering everything..");
+      new RenderZomboid(outDir).render();
+      return;
+    }
+
+    ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    ClassPathIndex index = ClassPathIndex.ofClassPath();
+    List<String> roots = ClassManifest.load().expand(classLoader, index);
+    Map<String, String> functions = getFunctions(classLoader);
+
+    Set<String> classNames = new TreeSet<>();
+    Set<String> functionNames = new TreeSet<>();
+    List<String> unresolved = new ArrayList<>();
+    Map<String, String> bySimpleName = indexSimpleNames(roots);
+    for (String name : usage.getNames()) {
+      String className = resolve(name, bySimpleName, classLoader);
+      if (className != null) {
+        classNames.add(className);
+      } else if (functions.containsKey(unescape(name.split("\\.")[0]))) {
+        functionNames.add(unescape(name.split("\\.")[0]));
+      } else {
+        unresolved.add(name);
+      }
+    }
+    if (!unresolved.isEmpty()) {
+      System.out.println("Found " + unresolved.size() + " name(s) not in the API:");
+      for (String name : unresolved) {
+        System.out.println("\t" + name);
+      }
+    }
+    System.out.println("Rendering " + classNames.size() + " class(es) and "
+        + functionNames.size() + " global function(s)..");
+
+    TypeScriptSettings settings = RenderZomboid.newSettings();
+    for (Map.Entry<String, String> entry : functions.entrySet()) {
+      if (!functionNames.contains(entry.getKey())) {
+        settings.methodsBlackListByPath.add(RenderZomboid.GLOBAL_OBJECT + "#" + entry.getValue());
+      }
+    }
+    List<String> seeds = new ArrayList<>(classNames);
+    seeds.add(RenderZomboid.GLOBAL_OBJECT);
+    TypeScriptCompiler compiler =
+        RenderZomboid.newCompiler(settings, ClassManifest.of(seeds), classLoader, index);
+    compiler.addReachable(roots);
+
+    new File(outDir, "java").mkdirs();
+    new File(outDir, "lua").mkdirs();
+    new RenderZomboid(new FileOutputTarget(new File(outDir)), compiler).render();
+  }
+
+  /**
+   * Maps the simple name of each root to its class, as the API partial exports it. When roots
+   * share a simple name, the last in graph order wins, as it does in the partial.
+   */
+  private static Map<String, String> indexSimpleNames(List<String> roots) {
+    List<String> sorted = new ArrayList<>(new LinkedHashSet<>(roots));
+    sorted.sort(Comparator.comparing(ModRender::getPackageName, ShardSnapshot::compareGraphOrder)
+        .thenComparing(Comparator.naturalOrder()));
+    Map<String, String> bySimpleName = new HashMap<>();
+    for (String className : sorted) {
+      String simpleName = className.substring(className.lastIndexOf('.') + 1);
+      simpleName = simpleName.substring(simpleName.lastIndexOf('$') + 1);
+      bySimpleName.put(simpleName, className);
+    }
+    return bySimpleName;
+  }
+
+  private static String getPackageName(String className) {
+    int index = className.lastIndexOf('.');
+    return index != -1 ? className.substring(0, index) : "";
+  }
+
+  /**
+   * Resolves a used name to a class: a simple name through the roots, or a dotted path by its
+   * longest prefix naming a class, so that 'zombie.iso.IsoObject.new' resolves to
+   * 'zombie.iso.IsoObject'.
+   *
+   * @return The class name, or null if the name is not a class.
+   */
+  static String resolve(
+      String name, Map<String, String> bySimpleName, ClassLoader classLoader) {
+    String[] parts = name.split("\\.");
+    String className = bySimpleName.get(parts[0]);
+    if (className != null) {
+      return className;
+    }
+    for (int length = parts.length; length > 1; length--) {
+      StringBuilder builder = new StringBuilder();
+      for (int index = 0; index < length; index++) {
+        if (index != 0) {
+          builder.append('.');
+        }
+        builder.append(unescape(parts[index]));
+      }
+      String candidate = builder.toString();
+      if (bySimpleName.containsValue(candidate) || exists(candidate, classLoader)) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return The name without the underscores that reserved words, such as 'function' and
+   *     'instanceof', are emitted with around them.
+   */
+  static String unescape(String name) {
+    if (name.length() > 2 && name.startsWith("_") && name.endsWith("_")) {
+      return name.substring(1, name.length() - 1);
+    }
+    return name;
+  }
+
+  private static boolean exists(String className, ClassLoader classLoader) {
+    try {
+      Class.forName(className, false, classLoader);
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  /**
+   * @return Lua's global functions by the name Lua sees, mapped to their Java method names, or an
+   *     empty map if the class holding them cannot be loaded.
+   */
+  private static Map<String, String> getFunctions(ClassLoader classLoader) {
+    Map<String, String> functions = new TreeMap<>();
+    Class<?> clazz;
+    try {
+      clazz = Class.forName(RenderZomboid.GLOBAL_OBJECT, false, classLoader);
+    } catch (ClassNotFoundException | LinkageError e) {
+      return functions;
+    }
+    for (Method method : clazz.getMethods()) {
+      if (!Modifier.isStatic(method.getModifiers())) {
+        continue;
+      }
+      String name = method.getName();
+      if (method.isAnnotationPresent(LuaMethod.class)) {
+        name = method.getAnnotationsByType(LuaMethod.class)[0].name();
+      }
+      functions.putIfAbsent(name, method.getName());
+    }
+    return functions;
+  }
+}
@@ -0,0 +1,541 @@
+package com.asledgehammer.pipewrench;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * The names a mod's TypeScript sources use from a module, read with a streaming lexer rather than
+ * a TypeScript parser. Each file is read once, token by token, and only import declarations and
+ * the member chains of the bindings they declare are looked at.
+ *
+ * <p>For example, with
+ *
+ * <pre>
+ *   import { getPlayer, IsoPlayer as Player } from '@asledgehammer/pipewrench';
+ *   import * as PW from '@asledgehammer/pipewrench';
+ *   let square: PW.zombie.iso.IsoGridSquare;
+ * </pre>
+ *
+ * the names are 'getPlayer', 'IsoPlayer' and 'zombie.iso.IsoGridSquare'. Bindings are expected to
+ * be imported before they are used, as they are in practice. A shadowed binding only adds a name
+ * that is not needed, which is safe.
+ */
+public class ModUsage {
+
+  private static final Set<String> REGEX_KEYWORDS = Set.of("return", "typeof", "instanceof",
+      "in", "of", "new", "delete", "void", "throw", "case", "do", "else", "yield", "await");
+
+  private final String moduleName;
+  private final Set<String> names = new TreeSet<>();
+  private boolean everything;
+  private int fileCount;
+
+  public ModUsage(String moduleName) {
+    this.moduleName = moduleName;
+  }
+
+  /**
+   * Reads every '.ts' and '.tsx' file under the directory, leaving out 'node_modules' and hidden
+   * directories.
+   *
+   * @throws UncheckedIOException If a file cannot be read.
+   */
+  public static ModUsage scan(File root, String moduleName) {
+    if (!root.isDirectory()) {
+      throw new RuntimeException("Not a directory: " + root);
+    }
+    ModUsage usage = new ModUsage(moduleName);
+    Path base = root.toPath();
+    try (Stream<Path> stream = Files.walk(base)) {
+      Iterator<Path> iterator = stream
+          .filter(path -> isSource(base.relativize(path)))
+          .sorted()
+          .iterator();
+      while (iterator.hasNext()) {
+        Path path = iterator.next();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+          usage.read(reader);
+        } catch (IOException e) {
+          throw new UncheckedIOException("Failed to read mod source: " + path, e);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to scan mod sources: " + root, e);
+    }
+    return usage;
+  }
+
+  private static boolean isSource(Path relative) {
+    String name = relative.getFileName().toString();
+    if (!name.endsWith(".ts") && !name.endsWith(".tsx")) {
+      return false;
+    }
+    Path parent = relative.getParent();
+    if (parent != null) {
+      for (Path part : parent) {
+        String directory = part.toString();
+        if (directory.equals("node_modules") || directory.startsWith(".")) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds the names used by one source file.
+   */
+  public void read(Reader reader) throws IOException {
+    new Scanner(new Lexer(reader)).scan();
+    fileCount++;
+  }
+
+  /**
+   * @return The names used from the module, sorted. A name is a simple name, such as a class or a
+   *     global function, or a dotted path, such as a class by its full name or a member of a class.
+   */
+  public Set<String> getNames() {
+    return Collections.unmodifiableSet(names);
+  }
+
+  /**
+   * @return True if a source re-exports the whole module, so that every name may be used.
+   */
+  public boolean isEverything() {
+    return everything;
+  }
+
+  public int getFileCount() {
+    return fileCount;
+  }
+
+  private enum Kind {
+    IDENTIFIER, STRING, VALUE, PUNCTUATION
+  }
+
+  private record Token(Kind kind, String text) {
+
+    boolean is(String punctuation) {
+      return kind == Kind.PUNCTUATION && text.equals(punctuation);
+    }
+
+    boolean isIdentifier(String identifier) {
+      return kind == Kind.IDENTIFIER && text.equals(identifier);
+    }
+  }
+
+  /**
+   * Picks out import declarations and the member chains of the bindings they declare.
+   */
+  private class Scanner {
+
+    private final Lexer lexer;
+    /**
+     * Bindings of the module itself, such as 'PW' in "import * as PW from ...".
+     */
+    private final Set<String> modules = new HashSet<>();
+    /**
+     * Named bindings, mapped to the name they import.
+     */
+    private final Map<String, String> imports = new HashMap<>();
+
+    Scanner(Lexer lexer) {
+      this.lexer = lexer;
+    }
+
+    void scan() throws IOException {
+      Token previous = null;
+      Token token;
+      while ((token = lexer.next()) != null) {
+        boolean member = previous != null && (previous.is(".") || previous.is("?."));
+        if (token.kind == Kind.IDENTIFIER && !member) {
+          if (token.text.equals("import")) {
+            readImport();
+          } else if (token.text.equals("export")) {
+            readExport();
+          } else if (modules.contains(token.text)) {
+            String chain = readChain();
+            if (!chain.isEmpty()) {
+              names.add(chain);
+            }
+          } else if (imports.containsKey(token.text)) {
+            String chain = readChain();
+            if (!chain.isEmpty()) {
+              names.add(imports.get(token.text) + "." + chain);
+            }
+          }
+        }
+        previous = token;
+      }
+    }
+
+    /**
+     * @return The identifiers after the current one joined by '.', such as 'zombie.iso.IsoObject'
+     *     after 'PW' in 'PW.zombie.iso.IsoObject'.
+     */
+    private String readChain() throws IOException {
+      StringBuilder chain = new StringBuilder();
+      while (true) {
+        Token dot = lexer.peek();
+        if (dot == null || !(dot.is(".") || dot.is("?."))) {
+          break;
+        }
+        lexer.next();
+        Token member = lexer.peek();
+        if (member == null || member.kind != Kind.IDENTIFIER) {
+          break;
+        }
+        lexer.next();
+        if (chain.length() != 0) {
+          chain.append('.');
+        }
+        chain.append(member.text);
+      }
+      return chain.toString();
+    }
+
+    /**
+     * Reads an import declaration up to its module specifier and binds its names if it imports
+     * the module. Dynamic imports and 'import.meta' are left alone.
+     */
+    private void readImport() throws IOException {
+      Token next = lexer.peek();
+      if (next == null || next.is("(") || next.is(".")) {
+        return;
+      }
+      List<Token> clause = new ArrayList<>();
+      Token token;
+      while ((token = lexer.next()) != null && token.kind != Kind.STRING) {
+        if (token.is(";")) {
+          return;
+        }
+        clause.add(token);
+      }
+      if (token == null || !token.text.equals(moduleName)) {
+        return;
+      }
+      int index = 0;
+      if (index < clause.size() && clause.get(index).isIdentifier("type")
+          && clause.size() > 1 && !clause.get(1).isIdentifier("from")) {
+        index++;
+      }
+      while (index < clause.size()) {
+        Token part = clause.get(index);
+        if (part.is("*")) {
+          // import * as PW from '...'
+          if (index + 2 < clause.size() && clause.get(index + 2).kind == Kind.IDENTIFIER) {
+            modules.add(clause.get(index + 2).text);
+          }
+          index += 3;
+        } else if (part.is("{")) {
+          index = readNamed(clause, index + 1, true);
+        } else if (part.kind == Kind.IDENTIFIER && !part.text.equals("from")) {
+          // A default import, or 'import PW = require(...)', binds the module itself.
+          modules.add(part.text);
+          index++;
+          while (index < clause.size() && !clause.get(index).is(",")
+              && !clause.get(index).is("{")) {
+            index++;
+          }
+        } else {
+          index++;
+        }
+      }
+    }
+
+    /**
+     * Reads the named bindings of an import or re-export up to the closing brace.
+     *
+     * @param bind True to bind the names in this file, false to only record them.
+     * @return The index after the closing brace.
+     */
+    private int readNamed(List<Token> clause, int index, boolean bind) {
+      while (index < clause.size() && !clause.get(index).is("}")) {
+        Token part = clause.get(index);
+        if (part.is(",")) {
+          index++;
+          continue;
+        }
+        if (part.isIdentifier("type") && index + 1 < clause.size()
+            && clause.get(index + 1).kind == Kind.IDENTIFIER
+            && !clause.get(index + 1).isIdentifier("as")) {
+          index++;
+          part = clause.get(index);
+        }
+        if (part.kind == Kind.IDENTIFIER) {
+          String local = part.text;
+          if (index + 2 < clause.size() && clause.get(index + 1).isIdentifier("as")) {
+            local = clause.get(index + 2).text;
+            index += 2;
+          }
+          names.add(part.text);
+          if (bind) {
+            imports.put(local, part.text);
+          }
+        }
+        index++;
+      }
+      return index + 1;
+    }
+
+    /**
+     * Records the names of "export { ... } from" and "export * from" the module, with or without
+     * 'type'. Other exports are left alone.
+     */
+    private void readExport() throws IOException {
+      Token next = lexer.peek();
+      if (next != null && next.isIdentifier("type")) {
+        lexer.next();
+        next = lexer.peek();
+      }
+      if (next == null || !(next.is("{") || next.is("*"))) {
+        return;
+      }
+      List<Token> clause = new ArrayList<>();
+      Token token;
+      while ((token = lexer.next()) != null && token.kind != Kind.STRING) {
+        if (token.is(";")) {
+          return;
+        }
+        clause.add(token);
+        // A local "export { a, b }" has no specifier after its closing brace.
+        if (token.is("}")) {
+          Token from = lexer.peek();
+          if (from == null || !from.isIdentifier("from")) {
+            return;
+          }
+        }
+      }
+      if (token == null || !token.text.equals(moduleName)) {
+        return;
+      }
+      if (clause.get(0).is("*")) {
+        everything = true;
+      } else {
+        readNamed(clause, 1, false);
+      }
+    }
+  }
+
+  /**
+   * Splits TypeScript source into identifiers, string literals, other values and punctuation,
+   * skipping whitespace and comments. Regular expression literals are told from division by the
+   * token before them, and template literals are read as strings with their substitutions lexed
+   * as code.
+   */
+  private static class Lexer {
+
+    private final PushbackReader reader;
+    /**
+     * The brace depth at each open template substitution.
+     */
+    private final Deque<Integer> templates = new ArrayDeque<>();
+    private int braces;
+    private Token last;
+    private Token peeked;
+
+    Lexer(Reader reader) {
+      this.reader = new PushbackReader(reader, 2);
+    }
+
+    Token peek() throws IOException {
+      if (peeked == null) {
+        peeked = read();
+      }
+      return peeked;
+    }
+
+    Token next() throws IOException {
+      Token token = peek();
+      peeked = null;
+      return token;
+    }
+
+    private Token read() throws IOException {
+      Token token = lex();
+      if (token != null) {
+        last = token;
+      }
+      return token;
+    }
+
+    private Token lex() throws IOException {
+      while (true) {
+        int c = reader.read();
+        if (c == -1) {
+          return null;
+        }
+        if (Character.isWhitespace(c)) {
+          continue;
+        }
+        if (c == '/') {
+          int n = reader.read();
+          if (n == '/') {
+            skipLine();
+            continue;
+          }
+          if (n == '*') {
+            skipBlock();
+            continue;
+          }
+          unread(n);
+          if (isRegexAllowed()) {
+            skipRegex();
+            return new Token(Kind.VALUE, "/regex/");
+          }
+          return new Token(Kind.PUNCTUATION, "/");
+        }
+        if (c == '"' || c == '\'') {
+          return new Token(Kind.STRING, readString(c));
+        }
+        if (c == '`') {
+          return readTemplate();
+        }
+        if (Character.isJavaIdentifierStart(c)) {
+          StringBuilder builder = new StringBuilder().appendCodePoint(c);
+          int n;
+          while ((n = reader.read()) != -1 && Character.isJavaIdentifierPart(n)) {
+            builder.append((char) n);
+          }
+          unread(n);
+          return new Token(Kind.IDENTIFIER, builder.toString());
+        }
+        if (Character.isDigit(c)) {
+          int n;
+          while ((n = reader.read()) != -1 && (Character.isLetterOrDigit(n) || n == '_')) {
+            // Skip the rest of the number.
+          }
+          unread(n);
+          return new Token(Kind.VALUE, "0");
+        }
+        if (c == '{') {
+          braces++;
+        } else if (c == '}') {
+          if (!templates.isEmpty() && templates.peek() == braces) {
+            templates.pop();
+            return readTemplate();
+          }
+          braces--;
+        } else if (c == '.') {
+          int n = reader.read();
+          if (n == '.') {
+            reader.read();
+            return new Token(Kind.PUNCTUATION, "...");
+          }
+          unread(n);
+        } else if (c == '?') {
+          int n = reader.read();
+          if (n == '.') {
+            // In 'a ? .5 : b' the '?' is a conditional.
+            int d = reader.read();
+            unread(d);
+            if (!Character.isDigit(d)) {
+              return new Token(Kind.PUNCTUATION, "?.");
+            }
+          }
+          unread(n);
+        }
+        return new Token(Kind.PUNCTUATION, String.valueOf((char) c));
+      }
+    }
+
+    /**
+     * A '/' starts a regular expression unless it follows something that ends an expression.
+     */
+    private boolean isRegexAllowed() {
+      if (last == null) {
+        return true;
+      }
+      return switch (last.kind) {
+        case IDENTIFIER -> REGEX_KEYWORDS.contains(last.text);
+        case STRING, VALUE -> false;
+        case PUNCTUATION -> !(last.is(")") || last.is("]") || last.is("}"));
+      };
+    }
+
+    private void skipLine() throws IOException {
+      int c;
+      while ((c = reader.read()) != -1 && c != '\n') {
+        // Skip the comment.
+      }
+    }
+
+    private void skipBlock() throws IOException {
+      int previous = 0;
+      int c;
+      while ((c = reader.read()) != -1) {
+        if (previous == '*' && c == '/') {
+          return;
+        }
+        previous = c;
+      }
+    }
+
+    private void skipRegex() throws IOException {
+      boolean inClass = false;
+      int c;
+      while ((c = reader.read()) != -1 && c != '\n') {
+        if (c == '\\') {
+          reader.read();
+        } else if (c == '[') {
+          inClass = true;
+        } else if (c == ']') {
+          inClass = false;
+        } else if (c == '/' && !inClass) {
+          break;
+        }
+      }
+      int n;
+      while ((n = reader.read()) != -1 && Character.isLetter(n)) {
+        // Skip the flags.
+      }
+      unread(n);
+    }
+
+    private String readString(int quote) throws IOException {
+      StringBuilder builder = new StringBuilder();
+      int c;
+      while ((c = reader.read()) != -1 && c != quote && c != '\n') {
+        if (c == '\\') {
+          c = reader.read();
+          if (c == -1) {
+            break;
+          }
+        }
+        builder.append((char) c);
+      }
+      return builder.toString();
+    }
+
+    /**
+     * Reads a template literal up to its end or its next substitution, which is then lexed as
+     * code until its closing brace.
+     */
+    private Token readTemplate() throws IOException {
+      int c;
+      while ((c = reader.read()) != -1 && c != '`') {
+        if (c == '\\') {
+          reader.read();
+        } else if (c == '$') {
+          int n = reader.read();
+          if (n == '{') {
+            templates.push(braces);
+            break;
+          }
+          unread(n);
+        }
+      }
+      return new Token(Kind.VALUE, "`template`");
+    }
+
+    private void unread(int c) throws IOException {
+      if (c != -1) {
+        reader.unread(c);
+      }
+    }
+  }
+}
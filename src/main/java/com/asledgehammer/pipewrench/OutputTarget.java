@@ -0,0 +1,67 @@
+package com.asledgehammer.pipewrench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * A place where PipeWrench writes generated files and reads partials back from. Paths are relative
+ * to the root of the target and use '/' as the separator.
+ */
+public interface OutputTarget {
+
+  /**
+   * Streams content into the file at the path, replacing it if it exists.
+   *
+   * @throws java.io.UncheckedIOException If the file cannot be written.
+   */
+  void write(String path, Emitter emitter);
+
+  default void write(String path, String content) {
+    write(path, writer -> writer.write(content));
+  }
+
+  /**
+   * @return The names of the files at the root of the target, sorted.
+   */
+  List<String> list();
+
+  InputStream open(String path) throws IOException;
+
+  /**
+   * Reads the whole file at once. The returned array must not be modified.
+   */
+  default byte[] read(String path) throws IOException {
+    try (InputStream in = open(path)) {
+      return in.readAllBytes();
+    }
+  }
+
+  /**
+   * @return The size and modification time of the file, or null if the target cannot tell without
+   *     reading it.
+   */
+  default Stamp stamp(String path) throws IOException {
+    return null;
+  }
+
+  /**
+   * Called once all files of a run are written.
+   */
+  void finish();
+
+  /**
+   * @param lastModified The modification time in nanoseconds since the epoch.
+   */
+  record Stamp(long size, long lastModified) {
+  }
+
+  /**
+   * Streams content into an output file.
+   */
+  interface Emitter {
+
+    void emit(Writer writer) throws IOException;
+  }
+}
@@ -0,0 +1,71 @@
+package com.asledgehammer.pipewrench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the files accepted by a filter in memory and passes everything else through to a base
+ * target. Reads and listings see both, with the in-memory files shadowing files of the same name in
+ * the base target.
+ */
+public class OverlayOutputTarget implements OutputTarget {
+
+  private final OutputTarget base;
+  private final Predicate<String> filter;
+  private final MemoryOutputTarget overlay = new MemoryOutputTarget();
+
+  public OverlayOutputTarget(OutputTarget base, Predicate<String> filter) {
+    this.base = base;
+    this.filter = filter;
+  }
+
+  @Override
+  public void write(String path, Emitter emitter) {
+    if (filter.test(path)) {
+      overlay.write(path, emitter);
+    } else {
+      base.write(path, emitter);
+    }
+  }
+
+  @Override
+  public List<String> list() {
+    TreeSet<String> names = new TreeSet<>(base.list());
+    names.addAll(overlay.list());
+    return List.copyOf(names);
+  }
+
+  @Override
+  public InputStream open(String path) throws IOException {
+    if (overlay.get(path) != null) {
+      return overlay.open(path);
+    }
+    return base.open(path);
+  }
+
+  @Override
+  public byte[] read(String path) throws IOException {
+    byte[] bytes = overlay.get(path);
+    return bytes != null ? bytes : base.read(path);
+  }
+
+  @Override
+  public Stamp stamp(String path) throws IOException {
+    return overlay.get(path) != null ? null : base.stamp(path);
+  }
+
+  /**
+   * Does nothing. The base target is finished by whoever owns it, once, after every stage that
+   * writes through this overlay is done.
+   */
+  @Override
+  public void finish() {
+  }
+
+  public MemoryOutputTarget getOverlay() {
+    return overlay;
+  }
+}
@@ -0,0 +1,145 @@
+package com.asledgehammer.pipewrench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The lines of a partial file that sit between its '[PARTIAL:START]' and '[PARTIAL:STOP]' markers.
+ * The file is scanned once as bytes and the lines are kept as ranges into it, so nothing is decoded
+ * until the partial is written.
+ *
+ * @param name The name of the partial file.
+ * @param content The raw UTF-8 content of the file.
+ * @param lines Pairs of start (inclusive) and end (exclusive) offsets into the content, one pair per
+ *     line without its line terminator.
+ */
+public record Partial(String name, byte[] content, int[] lines) {
+
+  private static final byte[] START = "[partial:start]".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] STOP = "[partial:stop]".getBytes(StandardCharsets.US_ASCII);
+
+  /**
+   * Scans the content for marked lines. A line is a marker if, after leading whitespace, it starts
+   * with the comment prefix and contains a marker, ignoring case. Other comment lines and code
+   * lines between markers are kept.
+   *
+   * @param commentPrefix '//' for TypeScript, '--' for Lua.
+   */
+  public static Partial scan(String name, byte[] content, String commentPrefix) {
+    byte[] prefix = commentPrefix.getBytes(StandardCharsets.US_ASCII);
+    int[] lines = new int[64];
+    int count = 0;
+    boolean in = false;
+    int position = 0;
+    int length = content.length;
+    while (position < length) {
+      int end = position;
+      while (end < length && content[end] != '\n' && content[end] != '\r') {
+        end++;
+      }
+      int next = end;
+      if (next < length) {
+        next += content[next] == '\r' && next + 1 < length && content[next + 1] == '\n' ? 2 : 1;
+      }
+
+      int first = position;
+      while (first < end && (content[first] & 0xFF) <= ' ') {
+        first++;
+      }
+
+      boolean keep;
+      if (startsWith(content, first, end, prefix)) {
+        if (containsIgnoreCase(content, position, end, START)) {
+          in = true;
+          keep = false;
+        } else if (containsIgnoreCase(content, position, end, STOP)) {
+          in = false;
+          keep = false;
+        } else {
+          keep = in;
+        }
+      } else {
+        keep = in;
+      }
+
+      if (keep) {
+        if (count + 2 > lines.length) {
+          lines = Arrays.copyOf(lines, lines.length * 2);
+        }
+        lines[count++] = position;
+        lines[count++] = end;
+      }
+      position = next;
+    }
+    return new Partial(name, content, Arrays.copyOf(lines, count));
+  }
+
+  public boolean isEmpty() {
+    return lines.length == 0;
+  }
+
+  public int getLineCount() {
+    return lines.length / 2;
+  }
+
+  /**
+   * Writes every kept line followed by '\n'. Runs of lines that are already separated by a single
+   * '\n' in the source are decoded and written as one range.
+   */
+  public void writeTo(Writer writer) throws IOException {
+    int i = 0;
+    while (i < lines.length) {
+      int start = lines[i];
+      int end = lines[i + 1];
+      i += 2;
+      while (i < lines.length && lines[i] == end + 1 && content[end] == '\n') {
+        end = lines[i + 1];
+        i += 2;
+      }
+      writer.write(new String(content, start, end - start, StandardCharsets.UTF_8));
+      writer.write('\n');
+    }
+  }
+
+  public List<String> getLines() {
+    List<String> list = new ArrayList<>(getLineCount());
+    for (int i = 0; i < lines.length; i += 2) {
+      list.add(new String(content, lines[i], lines[i + 1] - lines[i], StandardCharsets.UTF_8));
+    }
+    return list;
+  }
+
+  private static boolean startsWith(byte[] content, int from, int to, byte[] prefix) {
+    if (to - from < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (content[from + i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean containsIgnoreCase(byte[] content, int from, int to, byte[] lowerNeedle) {
+    int last = to - lowerNeedle.length;
+    outer:
+    for (int i = from; i <= last; i++) {
+      for (int j = 0; j < lowerNeedle.length; j++) {
+        byte b = content[i + j];
+        if (b >= 'A' && b <= 'Z') {
+          b += 'a' - 'A';
+        }
+        if (b != lowerNeedle[j]) {
+          continue outer;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+}
@@ -1,10 +1,22 @@
 package com.asledgehammer.pipewrench;
 
+import com.asledgehammer.typescript.TypeScriptCompiler;
+import com.asledgehammer.typescript.TypeScriptWalkCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.Scanner;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
@@ -23,7 +35,10 @@ public class PipeWrench implements Runnable {
       home = System.getProperty("user.home");
     }
     String outDir = Paths.get(home, "Zomboid", "PipeWrench").toString();
-    RenderZomboid generator = new RenderZomboid(outDir);
+    // One target for both, so each sees the hashes the other recorded.
+    FileOutputTarget output = new FileOutputTarget(new File(outDir));
+    RenderZomboid generator = new RenderZomboid(output, true);
+    StitchPipeWrench stitcher = new StitchPipeWrench("PipeWrench", output);
     Scanner scanner = new Scanner(System.in);
     while (true) {
       String command;
@@ -52,10 +67,14 @@ public class PipeWrench implements Runnable {
           }
           case "stitch", "s" -> {
             System.out.println("[PIPEWRENCH] :: Stitching Typings..");
-            StitchPipeWrench stitcher = new StitchPipeWrench("PipeWrench", outDir);
             stitcher.stitch();
             System.out.println("[PIPEWRENCH] :: Done.");
           }
+          case "build", "b" -> {
+            System.out.println("[PIPEWRENCH] :: Building Typings..");
+            build(outDir);
+            System.out.println("[PIPEWRENCH] :: Done.");
+          }
           default -> sendHelp();
         }
       } catch (Exception e) {
@@ -77,7 +96,7 @@ public class PipeWrench implements Runnable {
 
   private static void sendHelp() {
     System.out.println(
-        "[PIPEWRENCH] :: Commands:\n\t- 'pipewrench generate' Generates Java TypeScript definitions, exporting them to 'Zomboid/PipeWrench/generated/.\n\t- 'pipewrench stitch' Stitches Java & Lua TypeScript Definitions, Exporting them to 'Zomboid/PipeWrench/output'.");
+        "[PIPEWRENCH] :: Commands:\n\t- 'pipewrench generate' Generates Java TypeScript definitions, exporting them to 'Zomboid/PipeWrench/generated/.\n\t- 'pipewrench stitch' Stitches Java & Lua TypeScript Definitions, Exporting them to 'Zomboid/PipeWrench/output'.\n\t- 'pipewrench build' Generates and stitches in one pass, without writing the generated partials.");
   }
 
   public static void cli(String outDir) {
@@ -86,6 +105,267 @@ public class PipeWrench implements Runnable {
     renderer.render();
   }
 
+  /**
+   * Renders in worker processes. See {@link ShardedRender}.
+   *
+   * @param jvmArgs Extra arguments for each worker's JVM.
+   */
+  public static void cli(String outDir, int shards, List<String> jvmArgs) {
+    System.out.println("Exporting to " + outDir + " in up to " + shards + " shard(s)");
+    long start = System.nanoTime();
+    new ShardedRender(outDir, shards, jvmArgs).render();
+    System.out.println("Rendered in " + (System.nanoTime() - start) / 1_000_000L + " ms.");
+  }
+
+  /**
+   * Renders only the part of the API a mod's TypeScript sources use. See {@link ModRender}.
+   */
+  public static void cli(String outDir, File modDir) {
+    System.out.println("Exporting to " + outDir + " for the mod in " + modDir);
+    new ModRender(outDir, modDir).render();
+  }
+
+  /**
+   * Generates and stitches in one pass. The generated partials are handed to the stitcher in memory
+   * and merged with the hand-written partials on disk, so only the namespace files and the final
+   * stitched files are written.
+   */
+  public static void build(String outDir) {
+    build(outDir, RenderZomboid.newCompiler());
+  }
+
+  /**
+   * Builds several game versions in one run, each into the sub-directory named after it. Classes
+   * that are identical in every version are loaded, walked and compiled once for all of them.
+   *
+   * @param specs One 'name=path' per version. See {@link GameVersions#parse(List)}.
+   */
+  public static void build(String outDir, List<String> specs) {
+    try (GameVersions versions = GameVersions.parse(specs)) {
+      // Every version compiles the classes they share, so keep their compiled output.
+      TypeScriptWalkCache walkCache = new TypeScriptWalkCache(RenderZomboid.newCachedSettings());
+      for (GameVersions.Version version : versions.getVersions()) {
+        int reused = walkCache.getReuseCount();
+        build(new File(outDir, version.name()).getPath(),
+            RenderZomboid.newCompiler(version.classLoader(), version.index(), walkCache));
+        System.out.println("Reused " + (walkCache.getReuseCount() - reused)
+            + " walked class(es) from earlier versions.");
+      }
+    }
+  }
+
+  private static void build(String outDir, TypeScriptCompiler compiler) {
+    System.out.println("Building to " + outDir);
+    new File(outDir, "lua").mkdirs();
+    FileOutputTarget target = new FileOutputTarget(new File(outDir));
+    OutputTarget overlay = new OverlayOutputTarget(target, PipeWrench::isGeneratedPartial);
+    new RenderZomboid(overlay, compiler).render();
+    new StitchPipeWrench("PipeWrench", overlay).stitch();
+    target.finish();
+  }
+
+  /**
+   * Generates and stitches straight into a single zip archive, with an index of every entry. Like
+   * {@link #build(String)}, the generated partials are stitched in memory, so the archive holds the
+   * namespace files and the stitched files.
+   *
+   * @param compress False to store entries without compression.
+   */
+  public static void bundle(String archive, boolean compress) {
+    System.out.println("Bundling to " + archive);
+    ArchiveOutputTarget target = new ArchiveOutputTarget(new File(archive), path -> compress);
+    OutputTarget overlay = new OverlayOutputTarget(target,
+        path -> isGeneratedPartial(path) || path.equals(StitchPipeWrench.STATE_NAME));
+    new RenderZomboid(overlay).render();
+    new StitchPipeWrench("PipeWrench", overlay).stitch();
+    target.finish();
+  }
+
+  /**
+   * Generates and stitches twice in memory, at the same time and each from its own freshly walked
+   * graph, and compares the digests of every output file. Running both at once also shows that
+   * renders do not share state. Each run is then bundled by parallel writers, as {@link
+   * #bundle(String, boolean)} does, and the digests of the two archives are compared.
+   *
+   * @return True if both runs produced identical output.
+   */
+  public static boolean check() {
+    System.out.println("Checking that output is reproducible..");
+    CompletableFuture<MemoryOutputTarget> other =
+        CompletableFuture.supplyAsync(PipeWrench::generateInMemory);
+    MemoryOutputTarget first = generateInMemory();
+    MemoryOutputTarget second;
+    try {
+      second = other.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+
+    Map<String, String> firstDigests = first.getDigests();
+    Map<String, String> secondDigests = second.getDigests();
+    Set<String> paths = new TreeSet<>(firstDigests.keySet());
+    paths.addAll(secondDigests.keySet());
+    List<String> differences = new ArrayList<>();
+    for (String path : paths) {
+      if (!Objects.equals(firstDigests.get(path), secondDigests.get(path))) {
+        differences.add(path);
+      }
+    }
+
+    if (!differences.isEmpty()) {
+      System.out.println("Output is not reproducible. " + differences.size() + " file(s) differ:");
+      for (String path : differences) {
+        System.out.println("\t" + path);
+      }
+      return false;
+    }
+
+    String firstArchive = digestArchive(first);
+    String secondArchive = digestArchive(second);
+    if (!firstArchive.equals(secondArchive)) {
+      System.out.println("Archives are not reproducible: " + firstArchive + " and "
+          + secondArchive + " differ.");
+      return false;
+    }
+    System.out.println(
+        "Output is reproducible. " + paths.size() + " file(s), digest: " + first.getDigest()
+            + ", archive digest: " + firstArchive);
+    return true;
+  }
+
+  /**
+   * Writes the files into a temporary archive from parallel writers and hashes it.
+   *
+   * @return The SHA-256 of the archive.
+   */
+  private static String digestArchive(MemoryOutputTarget files) {
+    File archive;
+    try {
+      archive = File.createTempFile("pipewrench-check", ".zip");
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to create an archive to check", e);
+    }
+    try {
+      ArchiveOutputTarget target = new ArchiveOutputTarget(archive);
+      files.getDigests().keySet().parallelStream().forEach(path -> {
+        byte[] content = files.get(path);
+        target.write(path, writer -> writer.write(new String(content, StandardCharsets.UTF_8)));
+      });
+      target.finish();
+      return FileOutputTarget.toHex(FileOutputTarget.newDigest().digest(
+          Files.readAllBytes(archive.toPath())));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read archive: " + archive, e);
+    } finally {
+      archive.delete();
+    }
+  }
+
+  /**
+   * Walks a model and saves its API, to be compared later by {@link #diff(String, String, String)}.
+   *
+   * @param spec 'live' for the current class path, or a 'name=path' class path.
+   */
+  public static void snapshot(String file, String spec) {
+    ApiSnapshot snapshot = loadSnapshots(List.of(spec)).get(0);
+    File output = new File(file);
+    File parent = output.getAbsoluteFile().getParentFile();
+    if (parent != null) {
+      parent.mkdirs();
+    }
+    try (Writer writer = Files.newBufferedWriter(output.toPath(), StandardCharsets.UTF_8)) {
+      snapshot.write(writer);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write API snapshot: " + output, e);
+    }
+    System.out.println("Saved " + snapshot.size() + " API entries to " + output);
+  }
+
+  /**
+   * Compares the APIs of two models, writes every change to a JSON report and prints a summary.
+   *
+   * @param oldSpec A saved snapshot, 'live' for the current class path, or a 'name=path' class
+   *     path. Class paths on both sides are walked together, sharing their identical classes.
+   * @return True if the APIs differ.
+   */
+  public static boolean diff(String oldSpec, String newSpec, String report) {
+    List<ApiSnapshot> snapshots = loadSnapshots(List.of(oldSpec, newSpec));
+    ApiDiff diff = new ApiDiff(snapshots.get(0), snapshots.get(1));
+    File output = new File(report);
+    File parent = output.getAbsoluteFile().getParentFile();
+    if (parent != null) {
+      parent.mkdirs();
+    }
+    long start = System.nanoTime();
+    try (Writer writer = Files.newBufferedWriter(output.toPath(), StandardCharsets.UTF_8)) {
+      diff.write(writer);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write API diff: " + output, e);
+    }
+    long millis = (System.nanoTime() - start) / 1_000_000L;
+
+    for (String line : diff.getSummary()) {
+      System.out.println(line);
+    }
+    System.out.println("Compared " + snapshots.get(0).size() + " and " + snapshots.get(1).size()
+        + " API entries in " + millis + " ms. Report: " + output);
+    return diff.hasChanges();
+  }
+
+  /**
+   * Reads saved snapshots and walks the rest. The class paths are loaded as one set of versions.
+   */
+  private static List<ApiSnapshot> loadSnapshots(List<String> specs) {
+    ApiSnapshot[] snapshots = new ApiSnapshot[specs.size()];
+    List<String> classPaths = new ArrayList<>();
+    for (int index = 0; index < specs.size(); index++) {
+      String spec = specs.get(index);
+      if (ApiSnapshot.isSnapshot(new File(spec))) {
+        snapshots[index] = ApiSnapshot.read(new File(spec));
+      } else if (spec.equals("live")) {
+        snapshots[index] = walk("live", RenderZomboid.newCompiler());
+      } else {
+        classPaths.add(spec);
+      }
+    }
+    if (!classPaths.isEmpty()) {
+      try (GameVersions versions = GameVersions.parse(classPaths)) {
+        TypeScriptWalkCache walkCache = new TypeScriptWalkCache(RenderZomboid.newSettings());
+        Iterator<GameVersions.Version> iterator = versions.getVersions().iterator();
+        for (int index = 0; index < snapshots.length; index++) {
+          if (snapshots[index] == null) {
+            GameVersions.Version version = iterator.next();
+            snapshots[index] = walk(version.name(),
+                RenderZomboid.newCompiler(version.classLoader(), version.index(), walkCache));
+          }
+        }
+      }
+    }
+    return Arrays.asList(snapshots);
+  }
+
+  private static ApiSnapshot walk(String name, TypeScriptCompiler compiler) {
+    System.out.println("Walking " + name + "..");
+    compiler.walk();
+    return ApiSnapshot.of(name, compiler);
+  }
+
+  private static MemoryOutputTarget generateInMemory() {
+    MemoryOutputTarget target = new MemoryOutputTarget();
+    new RenderZomboid(target, RenderZomboid.newCompiler()).render();
+    new StitchPipeWrench("PipeWrench", target).stitch();
+    return target;
+  }
+
+  private static boolean isGeneratedPartial(String path) {
+    return path.equals("java.api.partial.d.ts")
+        || path.equals("java.reference.partial.d.ts")
+        || path.equals("java.interface.partial.lua");
+  }
+
   public static void live(String[] args) {
     new Thread(new PipeWrench(), "PipeWrench-Thread").start();
     invokeMain("zombie.gameStates.MainScreenState", args);
@@ -98,12 +378,80 @@ public class PipeWrench implements Runnable {
     Subparsers subparsers = parser.addSubparsers().help("sub-command help").dest("subparser_name");
     Subparser cli = subparsers.addParser("cli");
     cli.addArgument("--out").dest("outDir").setDefault("./dist");
+    cli.addArgument("--shards").dest("shards").type(Integer.class).metavar("N")
+        .help("Renders in up to N worker processes, each walking part of the roots.");
+    cli.addArgument("--shard-heap").dest("shardHeap").metavar("SIZE")
+        .help("The heap size of each worker process, such as '2g'.");
+    cli.addArgument("--mod").dest("modDir").metavar("DIR")
+        .help("Renders only the classes and functions the mod's TypeScript sources under DIR "
+            + "import, and what their signatures reach.");
+    Subparser shard = subparsers.addParser(ShardedRender.COMMAND);
+    shard.addArgument("--roots").dest("roots").required(true);
+    shard.addArgument("--all").dest("all").required(true);
+    shard.addArgument("--out").dest("out").required(true);
+    subparsers.addParser("check");
+    Subparser bundle = subparsers.addParser("bundle");
+    bundle.addArgument("--out").dest("archive").setDefault("./dist/pipewrench.zip");
+    bundle.addArgument("--store").dest("store").action(Arguments.storeTrue())
+        .help("Store entries without compression.");
+    Subparser snapshot = subparsers.addParser("snapshot");
+    snapshot.addArgument("--out").dest("file").setDefault("./dist/api.snapshot");
+    snapshot.addArgument("--classpath").dest("spec").setDefault("live").metavar("NAME=PATH")
+        .help("The game version to walk. Defaults to the current class path.");
+    Subparser diff = subparsers.addParser("diff");
+    diff.addArgument("old").metavar("OLD")
+        .help("A saved snapshot, 'live' or a NAME=PATH class path.");
+    diff.addArgument("new").metavar("NEW")
+        .help("A saved snapshot, 'live' or a NAME=PATH class path.");
+    diff.addArgument("--out").dest("report").setDefault("./dist/api-diff.json");
+    Subparser build = subparsers.addParser("build");
+    build.addArgument("--out").dest("outDir").setDefault("./dist");
+    build.addArgument("--classpath").dest("versions").action(Arguments.append())
+        .metavar("NAME=PATH")
+        .help("Builds a game version from a jar or directory into its own sub-directory. Repeat "
+            + "to build several versions, sharing the classes they have in common.");
     subparsers.addParser("live");
     try {
       Namespace res = parser.parseArgs(args);
       String mode = res.get("subparser_name");
       if (mode.equals("cli")) {
-        cli(res.get("outDir"));
+        Integer shards = res.getInt("shards");
+        String modDir = res.getString("modDir");
+        if (modDir != null) {
+          if (shards != null) {
+            throw new RuntimeException("--mod cannot be combined with --shards.");
+          }
+          cli(res.get("outDir"), new File(modDir));
+        } else if (shards != null) {
+          String heap = res.getString("shardHeap");
+          cli(res.get("outDir"), shards, heap != null ? List.of("-Xmx" + heap) : List.of());
+        } else {
+          cli(res.get("outDir"));
+        }
+      }
+      if (mode.equals(ShardedRender.COMMAND)) {
+        ShardedRender.work(new File(res.getString("roots")), new File(res.getString("all")),
+            new File(res.getString("out")));
+      }
+      if (mode.equals("build")) {
+        List<String> versions = res.getList("versions");
+        if (versions != null) {
+          build(res.get("outDir"), versions);
+        } else {
+          build(res.get("outDir"));
+        }
+      }
+      if (mode.equals("bundle")) {
+        bundle(res.get("archive"), !res.getBoolean("store"));
+      }
+      if (mode.equals("check") && !check()) {
+        System.exit(1);
+      }
+      if (mode.equals("snapshot")) {
+        snapshot(res.get("file"), res.get("spec"));
+      }
+      if (mode.equals("diff")) {
+        diff(res.get("old"), res.get("new"), res.get("report"));
       }
       if (mode.equals("live")) {
         live(args);
@@ -111,6 +459,10 @@ public class PipeWrench implements Runnable {
     } catch (ArgumentParserException e) {
       parser.handleError(e);
       System.exit(1);
+    } catch (RuntimeException e) {
+      System.err.println("[PIPEWRENCH] :: Failed: " + e.getMessage());
+      e.printStackTrace(System.err);
+      System.exit(1);
     }
   }
 
@@ -1,160 +1,125 @@
 package com.asledgehammer.pipewrench;
 
 import com.asledgehammer.typescript.TypeScriptCompiler;
+import com.asledgehammer.typescript.TypeScriptWalkCache;
 import com.asledgehammer.typescript.settings.Recursion;
 import com.asledgehammer.typescript.settings.TypeScriptSettings;
 import com.asledgehammer.typescript.type.*;
-import fmod.fmod.EmitterType;
-import fmod.fmod.FMODAudio;
-import fmod.fmod.FMODSoundBank;
-import fmod.fmod.FMODSoundEmitter;
-import org.joml.Vector2f;
-import org.joml.Vector3f;
-import org.lwjglx.input.Keyboard;
-import se.krka.kahlua.vm.KahluaUtil;
-import zombie.*;
-import zombie.Lua.LuaEventManager;
-import zombie.Lua.LuaManager;
-import zombie.Lua.MapObjects;
-import zombie.ai.GameCharacterAIBrain;
-import zombie.ai.MapKnowledge;
-import zombie.ai.sadisticAIDirector.SleepingEvent;
-import zombie.ai.states.*;
-import zombie.audio.*;
-import zombie.characterTextures.BloodBodyPartType;
-import zombie.characterTextures.BloodClothingType;
-import zombie.characters.*;
-import zombie.characters.AttachedItems.*;
-import zombie.characters.BodyDamage.*;
-import zombie.characters.CharacterTimedActions.LuaTimedAction;
-import zombie.characters.CharacterTimedActions.LuaTimedActionNew;
-import zombie.characters.Moodles.Moodle;
-import zombie.characters.Moodles.MoodleType;
-import zombie.characters.Moodles.Moodles;
-import zombie.characters.WornItems.*;
-import zombie.characters.professions.ProfessionFactory;
-import zombie.characters.skills.PerkFactory;
-import zombie.characters.traits.ObservationFactory;
-import zombie.characters.traits.TraitCollection;
-import zombie.characters.traits.TraitFactory;
-import zombie.chat.ChatBase;
-import zombie.chat.ChatMessage;
-import zombie.chat.ChatTab;
-import zombie.chat.ServerChatMessage;
-import zombie.config.*;
-import zombie.core.*;
-import zombie.core.fonts.AngelCodeFont;
-import zombie.core.logger.ZLogger;
-import zombie.core.math.PZMath;
-import zombie.core.properties.PropertyContainer;
-import zombie.core.skinnedmodel.advancedanimation.debug.AnimatorDebugMonitor;
-import zombie.core.skinnedmodel.population.*;
-import zombie.core.skinnedmodel.visual.HumanVisual;
-import zombie.core.skinnedmodel.visual.ItemVisual;
-import zombie.core.skinnedmodel.visual.ItemVisuals;
-import zombie.core.stash.Stash;
-import zombie.core.stash.StashBuilding;
-import zombie.core.stash.StashSystem;
-import zombie.core.textures.ColorInfo;
-import zombie.core.textures.Texture;
-import zombie.core.znet.SteamFriend;
-import zombie.core.znet.SteamUGCDetails;
-import zombie.core.znet.SteamWorkshopItem;
-import zombie.debug.BooleanDebugOption;
-import zombie.debug.DebugLog;
-import zombie.debug.DebugOptions;
-import zombie.debug.DebugType;
-import zombie.erosion.ErosionConfig;
-import zombie.erosion.ErosionMain;
-import zombie.erosion.season.ErosionSeason;
-import zombie.gameStates.*;
-import zombie.globalObjects.*;
-import zombie.input.GameKeyboard;
-import zombie.input.Mouse;
-import zombie.inventory.*;
-import zombie.inventory.types.*;
-import zombie.iso.*;
-import zombie.iso.SpriteDetails.IsoFlagType;
-import zombie.iso.SpriteDetails.IsoObjectType;
-import zombie.iso.areas.IsoBuilding;
-import zombie.iso.areas.IsoRoom;
-import zombie.iso.areas.NonPvpZone;
-import zombie.iso.areas.SafeHouse;
-import zombie.iso.areas.isoregion.IsoRegionLogType;
-import zombie.iso.areas.isoregion.IsoRegions;
-import zombie.iso.areas.isoregion.IsoRegionsLogger;
-import zombie.iso.areas.isoregion.IsoRegionsRenderer;
-import zombie.iso.areas.isoregion.data.DataCell;
-import zombie.iso.areas.isoregion.data.DataChunk;
-import zombie.iso.areas.isoregion.regions.IsoChunkRegion;
-import zombie.iso.areas.isoregion.regions.IsoWorldRegion;
-import zombie.iso.objects.*;
-import zombie.iso.objects.interfaces.BarricadeAble;
-import zombie.iso.sprite.IsoSprite;
-import zombie.iso.sprite.IsoSpriteGrid;
-import zombie.iso.sprite.IsoSpriteInstance;
-import zombie.iso.sprite.IsoSpriteManager;
-import zombie.iso.weather.*;
-import zombie.iso.weather.fog.ImprovedFog;
-import zombie.iso.weather.fx.IsoWeatherFX;
-import zombie.modding.ActiveMods;
-import zombie.network.*;
-import zombie.network.packets.hit.Vehicle;
-import zombie.popman.ZombiePopulationManager;
-import zombie.popman.ZombiePopulationRenderer;
-import zombie.radio.ChannelCategory;
-import zombie.radio.RadioAPI;
-import zombie.radio.RadioData;
-import zombie.radio.StorySounds.*;
-import zombie.radio.ZomboidRadio;
-import zombie.radio.devices.DeviceData;
-import zombie.radio.devices.DevicePresets;
-import zombie.radio.devices.PresetEntry;
-import zombie.radio.media.MediaData;
-import zombie.radio.media.RecordedMedia;
-import zombie.radio.scripting.*;
-import zombie.randomizedWorld.RandomizedWorldBase;
-import zombie.randomizedWorld.randomizedBuilding.*;
-import zombie.randomizedWorld.randomizedDeadSurvivor.*;
-import zombie.randomizedWorld.randomizedVehicleStory.*;
-import zombie.randomizedWorld.randomizedZoneStory.*;
-import zombie.scripting.ScriptManager;
-import zombie.scripting.objects.*;
-import zombie.text.templating.ReplaceProviderCharacter;
-import zombie.text.templating.TemplateText;
-import zombie.ui.*;
-import zombie.util.PZCalendar;
-import zombie.util.list.PZArrayList;
-import zombie.vehicles.*;
-import zombie.world.moddata.ModData;
+import com.asledgehammer.typescript.util.ClassPathIndex;
+import com.asledgehammer.typescript.util.Indent;
 
-import java.io.*;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @SuppressWarnings({"ResultOfMethodCallIgnored", "SpellCheckingInspection", "unused"})
 public class RenderZomboid {
 
-  private final File outDir;
-  private final File javaDir;
+  /**
+   * The class holding Lua's global functions. It is named rather than referenced, so that it comes
+   * from the compiler's class loader.
+   */
+  static final String GLOBAL_OBJECT = "zombie.Lua.LuaManager$GlobalObject";
+
+  /**
+   * The module the API is declared under, unless a render is given another.
+   */
+  public static final String MODULE_NAME = "@asledgehammer/pipewrench";
+
+  private final OutputTarget output;
+  private final TypeScriptSettings settings;
+  private final ClassManifest roots;
+  private final String moduleName;
+  private final ClassLoader classLoader;
+  private final ClassPathIndex index;
+  private final boolean incremental;
+  private TypeScriptCompiler compiler;
+  private TypeScriptCompiler walked;
 
   public RenderZomboid(String outDir) {
-    this.outDir = new File(outDir);
-    this.outDir.mkdirs();
-    this.javaDir = new File(this.outDir, "java");
-    this.javaDir.mkdirs();
-    File luaDir = new File(this.outDir, "lua");
-    luaDir.mkdirs();
+    this(outDir, false);
   }
 
-  private static final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm'Z'");
-  private static final List<Class<?>> classes = new ArrayList<>();
-  private static final TypeScriptCompiler tsCompiler;
+  /**
+   * @param incremental True to keep the walked graph between renders. Each later render reopens
+   *     it, adds the roots again, walks only the classes that are new, and writes only the
+   *     namespaces that changed. Classes that could not be loaded before are retried, so classes
+   *     loaded by mods since the last render are picked up without a restart.
+   */
+  public RenderZomboid(String outDir, boolean incremental) {
+    this(new FileOutputTarget(new File(outDir)), incremental);
+  }
+
+  /**
+   * @param output The directory to render into, which may be shared with a {@link
+   *     StitchPipeWrench}.
+   * @param incremental See {@link #RenderZomboid(String, boolean)}.
+   */
+  public RenderZomboid(FileOutputTarget output, boolean incremental) {
+    this(output, incremental ? newCachedSettings() : newSettings(), null, MODULE_NAME, null, null,
+        incremental);
+    new File(output.getRoot(), "java").mkdirs();
+    new File(output.getRoot(), "lua").mkdirs();
+  }
+
+  public RenderZomboid(OutputTarget output) {
+    this(output, null);
+  }
 
-  static {
-    addClassesToRender();
+  /**
+   * @param compiler A compiler that has not been walked yet, used for the next render. Later
+   *     renders build their own with its settings and class loader. If null, each render builds its
+   *     own from {@link #newCompiler()}.
+   */
+  public RenderZomboid(OutputTarget output, TypeScriptCompiler compiler) {
+    this(output,
+        compiler != null ? compiler.getSettings() : newSettings(),
+        null,
+        MODULE_NAME,
+        compiler != null ? compiler.getClassLoader() : null,
+        compiler != null ? compiler.getClassPathIndex() : null,
+        false);
+    this.compiler = compiler;
+  }
+
+  /**
+   * Each render walks a new compiler built from the settings and roots, so renders with different
+   * settings can run side by side.
+   *
+   * @param roots The classes to render, or null for {@link ClassManifest#load()}.
+   * @param moduleName The module the API is declared under.
+   */
+  public RenderZomboid(
+      OutputTarget output, TypeScriptSettings settings, ClassManifest roots, String moduleName) {
+    this(output, settings, roots, moduleName, null, null, false);
+  }
+
+  private RenderZomboid(
+      OutputTarget output,
+      TypeScriptSettings settings,
+      ClassManifest roots,
+      String moduleName,
+      ClassLoader classLoader,
+      ClassPathIndex index,
+      boolean incremental) {
+    this.output = output;
+    this.settings = settings;
+    this.roots = roots;
+    this.moduleName = moduleName;
+    this.classLoader = classLoader;
+    this.index = index;
+    this.incremental = incremental;
+  }
 
+  /**
+   * @return The settings PipeWrench renders with: Object's methods are left out and every class
+   *     gets a private constructor.
+   */
+  public static TypeScriptSettings newSettings() {
     TypeScriptSettings tsSettings = new TypeScriptSettings();
     tsSettings.methodsBlackListByPath.add("java.lang.Object#equals");
     tsSettings.methodsBlackListByPath.add("java.lang.Object#getClass");
@@ -165,120 +130,251 @@ public class RenderZomboid {
     tsSettings.methodsBlackListByPath.add("java.lang.Object#wait");
     tsSettings.recursion = Recursion.NONE;
     tsSettings.readOnly = true;
+    return tsSettings;
+  }
 
-    tsCompiler = new TypeScriptCompiler(tsSettings);
-    for (Class<?> clazz : classes) {
-      tsCompiler.add(clazz);
-    }
+  /**
+   * @return {@link #newSettings()} with compiled output kept between compiles, for graphs that are
+   *     compiled more than once.
+   */
+  static TypeScriptSettings newCachedSettings() {
+    TypeScriptSettings settings = newSettings();
+    settings.compileCacheLength = 1 << 24;
+    return settings;
   }
 
-  public static String MODULE_NAME = "@asledgehammer/pipewrench";
+  /**
+   * @return A new compiler with the classes of the {@link ClassManifest} added by name, ready to
+   *     walk.
+   */
+  public static TypeScriptCompiler newCompiler() {
+    return newCompiler(null, null);
+  }
 
-  public void render() {
-    tsCompiler.walk();
-    renderZomboidAsMultiFile();
-    renderLuaZomboid();
+  /**
+   * @param classLoader The loader to render classes from, or null for the context class loader.
+   * @param index The index to list package roots from, or null for 'java.class.path'.
+   * @return A new compiler with the classes of the {@link ClassManifest} added by name, ready to
+   *     walk.
+   */
+  public static TypeScriptCompiler newCompiler(ClassLoader classLoader, ClassPathIndex index) {
+    return newCompiler(classLoader, index, null);
   }
 
-  private void renderZomboidAsMultiFile() {
+  /**
+   * @param walkCache The walks shared with the compilers of other game versions, built for {@link
+   *     #newSettings()}, or null to walk every class.
+   * @see #newCompiler(ClassLoader, ClassPathIndex)
+   */
+  public static TypeScriptCompiler newCompiler(
+      ClassLoader classLoader, ClassPathIndex index, TypeScriptWalkCache walkCache) {
+    TypeScriptCompiler compiler =
+        new TypeScriptCompiler(newSettings(), classLoader, index, walkCache);
+    ClassManifest.load().addTo(compiler);
+    return compiler;
+  }
 
-    Map<TypeScriptNamespace, String> compiledNamespaces =
-        tsCompiler.compileNamespacesSeparately("  ");
+  /**
+   * @param roots The classes to add, or null for {@link ClassManifest#load()}.
+   * @return A new compiler with the roots added by name, ready to walk.
+   */
+  public static TypeScriptCompiler newCompiler(
+      TypeScriptSettings settings,
+      ClassManifest roots,
+      ClassLoader classLoader,
+      ClassPathIndex index) {
+    TypeScriptCompiler compiler = new TypeScriptCompiler(settings, classLoader, index);
+    (roots != null ? roots : ClassManifest.load()).addTo(compiler);
+    return compiler;
+  }
 
-    // Write all references to a file to refer to for all files.
-    List<String> references = new ArrayList<>();
-    for (TypeScriptNamespace namespace : compiledNamespaces.keySet()) {
-      String fileName = namespace.getFullPath().replaceAll("\\.", "_") + ".d.ts";
-      references.add("/// <reference path=\"java/" + fileName + "\" />\n");
+  public void render() {
+    TypeScriptCompiler compiler;
+    int sinceRevision = 0;
+    if (walked != null) {
+      compiler = walked;
+      sinceRevision = compiler.getRevision();
+      compiler.reopen();
+      (roots != null ? roots : ClassManifest.load()).addTo(compiler);
+    } else if (this.compiler != null) {
+      compiler = this.compiler;
+    } else {
+      compiler = newCompiler(settings, roots, classLoader, index);
     }
+    this.compiler = null;
+    compiler.walk();
+    if (incremental) {
+      walked = compiler;
+    }
+    SymbolTable symbols = SymbolTable.of(compiler.getAllGeneratedElements());
+    renderZomboidAsMultiFile(compiler, sinceRevision);
+    TypeScriptClass globalObject = getGlobalObject(compiler);
+    if (globalObject != null) {
+      renderApiPartial(symbols, compileFunctions(globalObject));
+      renderLuaZomboid(symbols, globalObject.compileLua("Exports"));
+    } else {
+      renderApiPartial(symbols, Collections.emptyList());
+      renderLuaZomboid(symbols, "");
+    }
+    output.finish();
+    report(compiler.getCollapsedUnions(), symbols.getCollisions());
+  }
 
-    references.sort(Comparator.naturalOrder());
-
-    StringBuilder referenceBuilder = new StringBuilder();
-    for (String s : references) {
-      referenceBuilder.append(s);
+  /**
+   * Writes the same files as {@link #render()} from a snapshot, such as one merged from shards,
+   * without walking anything.
+   */
+  void render(ShardSnapshot snapshot) {
+    List<String> namespaces = snapshot.getNamespaces();
+    renderReferencePartial(namespaces);
+    for (String namespace : namespaces) {
+      renderNamespace(namespace, writer -> snapshot.compileNamespace(namespace, writer));
     }
+    SymbolTable symbols = new SymbolTable(snapshot.getSymbols());
+    renderApiPartial(symbols, snapshot.getFunctions());
+    renderLuaZomboid(symbols, snapshot.getLua());
+    output.finish();
+    report(snapshot.getCollapsedUnions(), symbols.getCollisions());
+  }
 
-    String output = "// [PARTIAL:START]\n";
-    output += referenceBuilder;
-    output += "// [PARTIAL:STOP]\n";
-    write(new File(outDir, "java.reference.partial.d.ts"), output);
+  /**
+   * @return The class holding Lua's global functions, if the compiler declares it.
+   */
+  static TypeScriptClass getGlobalObject(TypeScriptCompiler compiler) {
+    TypeScriptElement element = compiler.resolve(GLOBAL_OBJECT);
+    return element instanceof TypeScriptClass ? (TypeScriptClass) element : null;
+  }
 
-    for (TypeScriptNamespace namespace : compiledNamespaces.keySet()) {
-      output = "/** @noSelfInFile */\n";
-      output += "declare module '" + MODULE_NAME + "' {\n";
-      output += compiledNamespaces.get(namespace) + "\n";
+  /**
+   * @return Lua's global functions as TypeScript functions, sorted by name.
+   */
+  static List<String> compileFunctions(TypeScriptClass globalObject) {
+    Map<String, TypeScriptMethodCluster> methods = globalObject.getStaticMethods();
+    List<String> methodNames = new ArrayList<>(methods.keySet());
+    methodNames.sort(Comparator.naturalOrder());
+    List<String> functions = new ArrayList<>();
+    for (String methodName : methodNames) {
+      functions.add(methods.get(methodName).compileTypeScriptFunction("  "));
+    }
+    return functions;
+  }
 
-      List<TypeScriptElement> elements = namespace.getAllGeneratedElements();
-      List<String> knownNames = new ArrayList<>();
-      List<TypeScriptElement> prunedElements = new ArrayList<>();
-      for (int index = elements.size() - 1; index >= 0; index--) {
-        TypeScriptElement element = elements.get(index);
-        Class<?> clazz = element.getClazz();
-        if (clazz == null) {
-          continue;
-        }
-        String name = clazz.getSimpleName();
-        if (name.contains("$")) {
-          String[] split = name.split("\\$");
-          name = split[split.length - 1];
-        }
-        if (!knownNames.contains(name)) {
-          prunedElements.add(element);
-          knownNames.add(name);
-        }
+  private static void report(List<String> collapsedUnions, List<String> collisions) {
+    if (!collapsedUnions.isEmpty()) {
+      System.out.println("Collapsed " + collapsedUnions.size() + " wide parameter union(s):");
+      for (String entry : collapsedUnions) {
+        System.out.println("\t" + entry);
       }
-      prunedElements.sort(nameSorter);
-
-      output += "}\n";
-
-      String fileName = namespace.getFullPath().replaceAll("\\.", "_") + ".d.ts";
-      System.out.println("Writing file: " + fileName + "..");
-      write(new File(javaDir, fileName), output);
     }
 
-    String prepend = "/** @noSelfInFile */\n";
-    prepend += "/// <reference path=\"java.reference.partial.d.ts\" />\n";
-    prepend += "declare module '" + MODULE_NAME + "' {\n";
-    prepend += "  // [PARTIAL:START]\n";
-    TypeScriptClass globalObject =
-        (TypeScriptClass) tsCompiler.resolve(LuaManager.GlobalObject.class);
+    if (!collisions.isEmpty()) {
+      System.out.println("Found " + collisions.size() + " simple name collision(s) in the API:");
+      for (String entry : collisions) {
+        System.out.println("\t" + entry);
+      }
+    }
+  }
 
-    List<TypeScriptElement> elements = tsCompiler.getAllGeneratedElements();
-    List<String> knownNames = new ArrayList<>();
-    List<TypeScriptElement> prunedElements = new ArrayList<>();
+  /**
+   * @param sinceRevision The revision of the last render of the same graph. Only the namespaces
+   *     changed at or after it are compiled. The partials list every namespace and are always
+   *     written.
+   */
+  private void renderZomboidAsMultiFile(TypeScriptCompiler compiler, int sinceRevision) {
+
+    List<TypeScriptNamespace> namespaces = compiler.getCompilableNamespaces();
+    List<TypeScriptNamespace> changed = compiler.getCompilableNamespaces(sinceRevision);
+    if (sinceRevision != 0) {
+      System.out.println("Compiling " + changed.size() + " of " + namespaces.size()
+          + " namespace(s) changed since the last render.");
+    }
 
-    for (int index = elements.size() - 1; index >= 0; index--) {
-      TypeScriptElement element = elements.get(index);
-      Class<?> clazz = element.getClazz();
-      if (clazz == null) {
-        continue;
-      }
-      String name = clazz.getSimpleName();
-      if (name.contains("$")) {
-        String[] split = name.split("\\$");
-        name = split[split.length - 1];
+    List<String> paths = new ArrayList<>();
+    for (TypeScriptNamespace namespace : namespaces) {
+      paths.add(namespace.getFullPath());
+    }
+    renderReferencePartial(paths);
+
+    // The graph is read-only after the walk, so namespaces compile independently. Each task streams
+    // its namespace straight to its own file, and the bounded queue makes the submitting thread
+    // run tasks itself when the workers fall behind. This caps how many files are open at once.
+    int threads = Runtime.getRuntime().availableProcessors();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(threads * 2),
+        runnable -> {
+          Thread thread = new Thread(runnable, "PipeWrench-Render");
+          thread.setDaemon(true);
+          return thread;
+        },
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    List<Future<?>> futures = new ArrayList<>();
+    try {
+      for (TypeScriptNamespace namespace : changed) {
+        futures.add(executor.submit(() -> renderNamespace(namespace.getFullPath(),
+            writer -> namespace.compile(writer, Indent.of("  ")))));
       }
-      if (!knownNames.contains(name)) {
-        prunedElements.add(element);
-        knownNames.add(name);
+      for (Future<?> future : futures) {
+        future.get();
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Writes all references to a file to refer to for all files.
+   */
+  private void renderReferencePartial(List<String> namespaces) {
+    List<String> references = new ArrayList<>();
+    for (String namespace : namespaces) {
+      String fileName = namespace.replaceAll("\\.", "_") + ".d.ts";
+      references.add("/// <reference path=\"java/" + fileName + "\" />\n");
     }
 
-    prunedElements.sort(nameSorter);
+    references.sort(Comparator.naturalOrder());
+
+    write("java.reference.partial.d.ts", writer -> {
+      writer.write("// [PARTIAL:START]\n");
+      for (String s : references) {
+        writer.write(s);
+      }
+      writer.write("// [PARTIAL:STOP]\n");
+    });
+  }
+
+  /**
+   * @param body Writes the compiled namespace.
+   */
+  private void renderNamespace(String namespace, OutputTarget.Emitter body) {
+    String fileName = namespace.replaceAll("\\.", "_") + ".d.ts";
+    System.out.println("Writing file: " + fileName + "..");
+    write("java/" + fileName, writer -> {
+      writer.write("/** @noSelfInFile */\n");
+      writer.write("declare module '" + moduleName + "' {\n");
+      body.emit(writer);
+      writer.write("\n}\n");
+    });
+  }
 
+  /**
+   * @param functions Lua's global functions, compiled by {@link #compileFunctions}.
+   */
+  private void renderApiPartial(SymbolTable symbols, List<String> functions) {
     StringBuilder builderTypes = new StringBuilder();
     StringBuilder builderClasses = new StringBuilder();
     StringBuilder builderMethods = new StringBuilder();
-    for (TypeScriptElement element : prunedElements) {
+    Set<String> emitted = new HashSet<>();
+    for (SymbolTable.Symbol symbol : symbols.getExported()) {
 
-      String name = element.getClazz().getSimpleName();
-      if (name.contains("$")) {
-        String[] split = name.split("\\$");
-        name = split[split.length - 1];
-      }
+      String name = symbol.simpleName();
 
-      int genParams = element.getClazz().getTypeParameters().length;
+      int genParams = symbol.typeParameters();
       StringBuilder params = new StringBuilder();
       if (genParams != 0) {
         params.append("<");
@@ -293,11 +389,11 @@ public class RenderZomboid {
       }
 
       String s;
-      if (element instanceof TypeScriptType) {
-        String fullPath = element.getClazz().getName();
+      if (symbol.type()) {
+        String fullPath = symbol.className();
         fullPath = fullPath.replaceAll(".function.", "._function_.");
         s = "  export type " + name + " = " + fullPath + params + '\n';
-        if (builderTypes.indexOf(s, 0) == -1) {
+        if (emitted.add(s)) {
           builderTypes.append(s);
         }
       } else {
@@ -306,23 +402,17 @@ public class RenderZomboid {
             "  export class "
                 + name
                 + " extends "
-                + element.getClazz().getName()
+                + symbol.className()
                 + params
                 + " {}\n";
-        if (builderClasses.indexOf(s, 0) == -1) {
+        if (emitted.add(s)) {
           builderClasses.append(s);
         }
       }
     }
 
-    Map<String, TypeScriptMethodCluster> methods = globalObject.getStaticMethods();
-    List<String> methodNames = new ArrayList<>(methods.keySet());
-    methodNames.sort(Comparator.naturalOrder());
-
-    for (String methodName : methodNames) {
-      TypeScriptMethodCluster method = methods.get(methodName);
-      String s = method.compileTypeScriptFunction("  ") + '\n';
-      builderMethods.append(s);
+    for (String function : functions) {
+      builderMethods.append(function).append('\n');
     }
 
     // Add these two methods to the API. This helps arbitrate EventListener handling
@@ -331,18 +421,24 @@ public class RenderZomboid {
     builderMethods.append(
         "  export function removeEventListener(id: string, listener: any): void;\n");
 
-    File fileZomboid = new File(outDir, "java.api.partial.d.ts");
-    String content = prepend + builderClasses + '\n' + builderTypes + '\n' + builderMethods;
-    content += "// [PARTIAL:STOP]\n";
-    content += "}\n";
     System.out.println("Writing file: java.api.partial.d.ts..");
-    write(fileZomboid, content);
+    write("java.api.partial.d.ts", writer -> {
+      writer.write("/** @noSelfInFile */\n");
+      writer.write("/// <reference path=\"java.reference.partial.d.ts\" />\n");
+      writer.write("declare module '" + moduleName + "' {\n");
+      writer.write("  // [PARTIAL:START]\n");
+      writer.append(builderClasses).append('\n');
+      writer.append(builderTypes).append('\n');
+      writer.append(builderMethods);
+      writer.write("// [PARTIAL:STOP]\n");
+      writer.write("}\n");
+    });
   }
 
-  private void renderLuaZomboid() {
-
-    List<TypeScriptElement> elements = tsCompiler.getAllGeneratedElements();
-    elements.sort(nameSorter);
+  /**
+   * @param globalLua Lua's global functions, compiled onto the 'Exports' table.
+   */
+  private void renderLuaZomboid(SymbolTable symbols, String globalLua) {
 
     String s =
         """
@@ -358,17 +454,23 @@ public class RenderZomboid {
         """;
 
     StringBuilder builder = new StringBuilder(s);
-    builder.append(tsCompiler.resolve(LuaManager.GlobalObject.class).compileLua("Exports"));
-
-    for (TypeScriptElement element : elements) {
-      if (element instanceof TypeScriptClass || element instanceof TypeScriptEnum) {
-        String name = element.name;
-        if (name.contains("$")) {
-          String[] split = name.split("\\$");
-          name = split[split.length - 1];
+    builder.append(globalLua);
+
+    Set<String> emitted = new HashSet<>();
+    for (String name : symbols.getNames()) {
+      for (SymbolTable.Symbol symbol : symbols.getAll(name)) {
+        if (!symbol.type()) {
+          String elementName = symbol.name();
+          if (elementName.contains("$")) {
+            String[] split = elementName.split("\\$");
+            elementName = split[split.length - 1];
+          }
+          String line = "Exports." + elementName + " = loadstring(\"return _G['" + elementName
+              + "']\")()\n";
+          if (emitted.add(line)) {
+            builder.append(line);
+          }
         }
-        String line = "Exports." + name + " = loadstring(\"return _G['" + name + "']\")()\n";
-        builder.append(line);
       }
     }
     builder.append("-- [PARTIAL:STOP]\n");
@@ -376,1160 +478,14 @@ public class RenderZomboid {
 
     // Here we have to name the Lua file exactly the same as the module so require
     // statements work.
-    File fileZomboidLua = new File(this.outDir, "java.interface.partial.lua");
-    write(fileZomboidLua, builder.toString());
-  }
-
-  static void addClassesToRender() {
-    addClassesFromLegacyPipeWrench();
-
-    addClassesFrom41_78();
-
-    classes.sort(Comparator.comparing(Class::getSimpleName));
+    write("java.interface.partial.lua", builder.toString());
   }
 
-  private static void addClassesFromLegacyPipeWrench() {
-    addClass(IsoPlayer.class);
-    addClass(Vehicle.class);
-    addClass(BaseVehicle.class);
-    addClass(BufferedReader.class);
-    addClass(BufferedWriter.class);
-    addClass(DataInputStream.class);
-    addClass(DataOutputStream.class);
-    addClass(Math.class);
-    addClass(SimpleDateFormat.class);
-    addClass(ArrayList.class);
-    addClass(EnumMap.class);
-    addClass(HashMap.class);
-    addClass(LinkedList.class);
-    addClass(Stack.class);
-    addClass(Vector.class);
-    addClass(Iterator.class);
-    addClass(EmitterType.class);
-    addClass(FMODAudio.class);
-    addClass(FMODSoundBank.class);
-    addClass(FMODSoundEmitter.class);
-    addClass(Vector2f.class);
-    addClass(Vector3f.class);
-    addClass(KahluaUtil.class);
-    addClass(DummySoundBank.class);
-    addClass(DummySoundEmitter.class);
-    addClass(BaseSoundEmitter.class);
-    addClass(GameSound.class);
-    addClass(GameSoundClip.class);
-    addClass(AttackState.class);
-    addClass(BurntToDeath.class);
-    addClass(ClimbDownSheetRopeState.class);
-    addClass(ClimbOverFenceState.class);
-    addClass(ClimbOverWallState.class);
-    addClass(ClimbSheetRopeState.class);
-    addClass(ClimbThroughWindowState.class);
-    addClass(CloseWindowState.class);
-    addClass(CrawlingZombieTurnState.class);
-    addClass(FakeDeadAttackState.class);
-    addClass(FakeDeadZombieState.class);
-    addClass(FishingState.class);
-    addClass(FitnessState.class);
-    addClass(IdleState.class);
-    addClass(LungeState.class);
-    addClass(OpenWindowState.class);
-    addClass(PathFindState.class);
-    addClass(PlayerActionsState.class);
-    addClass(PlayerAimState.class);
-    addClass(PlayerEmoteState.class);
-    addClass(PlayerExtState.class);
-    addClass(PlayerFallDownState.class);
-    addClass(PlayerFallingState.class);
-    addClass(PlayerGetUpState.class);
-    addClass(PlayerHitReactionPVPState.class);
-    addClass(PlayerHitReactionState.class);
-    addClass(PlayerKnockedDown.class);
-    addClass(PlayerOnGroundState.class);
-    addClass(PlayerSitOnGroundState.class);
-    addClass(PlayerStrafeState.class);
-    addClass(SmashWindowState.class);
-    addClass(StaggerBackState.class);
-    addClass(SwipeStatePlayer.class);
-    addClass(ThumpState.class);
-    addClass(WalkTowardState.class);
-    addClass(ZombieFallDownState.class);
-    addClass(ZombieGetDownState.class);
-    addClass(ZombieGetUpState.class);
-    addClass(ZombieIdleState.class);
-    addClass(ZombieOnGroundState.class);
-    addClass(ZombieReanimateState.class);
-    addClass(ZombieSittingState.class);
-    addClass(GameCharacterAIBrain.class);
-    addClass(MapKnowledge.class);
-    addClass(BodyPartType.class);
-    addClass(BodyPart.class);
-    addClass(BodyDamage.class);
-    addClass(Thermoregulator.class);
-    addClass(Thermoregulator.ThermalNode.class);
-    addClass(Metabolics.class);
-    addClass(Fitness.class);
-    addClass(GameKeyboard.class);
-    addClass(LuaTimedAction.class);
-    addClass(LuaTimedActionNew.class);
-    addClass(Moodle.class);
-    addClass(Moodles.class);
-    addClass(MoodleType.class);
-    addClass(ProfessionFactory.class);
-    addClass(ProfessionFactory.Profession.class);
-    addClass(PerkFactory.class);
-    addClass(PerkFactory.Perk.class);
-    addClass(PerkFactory.Perks.class);
-    addClass(ObservationFactory.class);
-    addClass(ObservationFactory.Observation.class);
-    addClass(TraitFactory.class);
-    addClass(TraitFactory.Trait.class);
-    addClass(IsoDummyCameraCharacter.class);
-    addClass(Stats.class);
-    addClass(SurvivorDesc.class);
-    addClass(SurvivorFactory.class);
-    addClass(SurvivorFactory.SurvivorType.class);
-    addClass(IsoGameCharacter.class);
-    addClass(IsoGameCharacter.PerkInfo.class);
-    addClass(IsoGameCharacter.XP.class);
-    addClass(IsoGameCharacter.CharacterTraits.class);
-    addClass(TraitCollection.TraitSlot.class);
-    addClass(TraitCollection.class);
-    addClass(IsoPlayer.class);
-    addClass(IsoSurvivor.class);
-    addClass(IsoZombie.class);
-    addClass(CharacterActionAnims.class);
-    addClass(HaloTextHelper.class);
-    addClass(HaloTextHelper.ColorRGB.class);
-    addClass(NetworkAIParams.class);
-    addClass(BloodBodyPartType.class);
-    addClass(Clipboard.class);
-    addClass(AngelCodeFont.class);
-    addClass(ZLogger.class);
-    addClass(PropertyContainer.class);
-    addClass(ClothingItem.class);
-    addClass(AnimatorDebugMonitor.class);
-    addClass(ColorInfo.class);
-    addClass(Texture.class);
-    addClass(SteamFriend.class);
-    addClass(SteamUGCDetails.class);
-    addClass(SteamWorkshopItem.class);
-    addClass(Color.class);
-    addClass(Colors.class);
-    addClass(Core.class);
-    addClass(GameVersion.class);
-    addClass(ImmutableColor.class);
-    addClass(Language.class);
-    addClass(PerformanceSettings.class);
-    addClass(SpriteRenderer.class);
-    addClass(Translator.class);
-    addClass(PZMath.class);
-    addClass(DebugLog.class);
-    addClass(DebugOptions.class);
-    addClass(BooleanDebugOption.class);
-    addClass(DebugType.class);
-    addClass(ErosionConfig.class);
-    addClass(ErosionConfig.Debug.class);
-    addClass(ErosionConfig.Season.class);
-    addClass(ErosionConfig.Seeds.class);
-    addClass(ErosionConfig.Time.class);
-    addClass(ErosionMain.class);
-    addClass(ErosionSeason.class);
-    addClass(AnimationViewerState.class);
-    addClass(AnimationViewerState.BooleanDebugOption.class);
-    addClass(AttachmentEditorState.class);
-    addClass(ChooseGameInfo.Mod.class);
-    addClass(DebugChunkState.class);
-    addClass(zombie.gameStates.DebugChunkState.BooleanDebugOption.class);
-    addClass(DebugGlobalObjectState.class);
-    addClass(GameLoadingState.class);
-    addClass(LoadingQueueState.class);
-    addClass(MainScreenState.class);
-    addClass(CGlobalObject.class);
-    addClass(CGlobalObjects.class);
-    addClass(CGlobalObjectSystem.class);
-    addClass(SGlobalObject.class);
-    addClass(SGlobalObjects.class);
-    addClass(SGlobalObjectSystem.class);
-    addClass(Mouse.class);
-    addClass(AlarmClock.class);
-    addClass(AlarmClockClothing.class);
-    addClass(Clothing.class);
-    addClass(Clothing.ClothingPatch.class);
-    addClass(Clothing.ClothingPatchFabricType.class);
-    addClass(ComboItem.class);
-    addClass(Drainable.class);
-    addClass(DrainableComboItem.class);
-    addClass(Food.class);
-    addClass(HandWeapon.class);
-    addClass(InventoryContainer.class);
-    addClass(Key.class);
-    addClass(KeyRing.class);
-    addClass(Literature.class);
-    addClass(MapItem.class);
-    addClass(Moveable.class);
-    addClass(Radio.class);
-    addClass(WeaponPart.class);
-    addClass(ItemContainer.class);
-    addClass(ItemPickerJava.class);
-    addClass(InventoryItem.class);
-    addClass(InventoryItemFactory.class);
-    addClass(FixingManager.class);
-    addClass(RecipeManager.class);
-    addClass(IsoRegions.class);
-    addClass(IsoRegionsLogger.class);
-    addClass(IsoRegionsLogger.IsoRegionLog.class);
-    addClass(IsoRegionLogType.class);
-    addClass(DataCell.class);
-    addClass(DataChunk.class);
-    addClass(IsoChunkRegion.class);
-    addClass(IsoWorldRegion.class);
-    addClass(IsoRegionsRenderer.class);
-    addClass(zombie.iso.areas.isoregion.IsoRegionsRenderer.BooleanDebugOption.class);
-    addClass(IsoBuilding.class);
-    addClass(IsoRoom.class);
-    addClass(SafeHouse.class);
-    addClass(BarricadeAble.class);
-    addClass(IsoBarbecue.class);
-    addClass(IsoBarricade.class);
-    addClass(IsoBrokenGlass.class);
-    addClass(IsoClothingDryer.class);
-    addClass(IsoClothingWasher.class);
-    addClass(IsoCombinationWasherDryer.class);
-    addClass(IsoStackedWasherDryer.class);
-    addClass(IsoCurtain.class);
-    addClass(IsoCarBatteryCharger.class);
-    addClass(IsoDeadBody.class);
-    addClass(IsoDoor.class);
-    addClass(IsoFire.class);
-    addClass(IsoFireManager.class);
-    addClass(IsoFireplace.class);
-    addClass(IsoGenerator.class);
-    addClass(IsoJukebox.class);
-    addClass(IsoLightSwitch.class);
-    addClass(IsoMannequin.class);
-    addClass(IsoMolotovCocktail.class);
-    addClass(IsoWaveSignal.class);
-    addClass(IsoRadio.class);
-    addClass(IsoTelevision.class);
-    addClass(IsoStackedWasherDryer.class);
-    addClass(IsoStove.class);
-    addClass(IsoThumpable.class);
-    addClass(IsoTrap.class);
-    addClass(IsoTree.class);
-    addClass(IsoWheelieBin.class);
-    addClass(IsoWindow.class);
-    addClass(IsoWindowFrame.class);
-    addClass(IsoWorldInventoryObject.class);
-    addClass(IsoZombieGiblets.class);
-    addClass(RainManager.class);
-    addClass(ObjectRenderEffects.class);
-    addClass(HumanVisual.class);
-    addClass(ItemVisual.class);
-    addClass(ItemVisuals.class);
-    addClass(IsoSprite.class);
-    addClass(IsoSpriteInstance.class);
-    addClass(IsoSpriteManager.class);
-    addClass(IsoSpriteGrid.class);
-    addClass(IsoFlagType.class);
-    addClass(IsoObjectType.class);
-    addClass(ClimateManager.class);
-    addClass(ClimateManager.DayInfo.class);
-    addClass(ClimateManager.ClimateFloat.class);
-    addClass(ClimateManager.ClimateColor.class);
-    addClass(ClimateManager.ClimateBool.class);
-    addClass(ClimateManager.AirFront.class);
-    addClass(ClimateColorInfo.class);
-    addClass(ClimateValues.class);
-    addClass(ClimateForecaster.class);
-    addClass(ClimateForecaster.DayForecast.class);
-    addClass(ClimateForecaster.ForecastValue.class);
-    addClass(ClimateHistory.class);
-    addClass(ClimateMoon.class);
-    addClass(WeatherPeriod.class);
-    addClass(WeatherPeriod.WeatherStage.class);
-    addClass(WeatherPeriod.StrLerpVal.class);
-    addClass(ThunderStorm.class);
-    addClass(ThunderStorm.ThunderCloud.class);
-    addClass(IsoWeatherFX.class);
-    addClass(Temperature.class);
-    addClass(WorldFlares.class);
-    addClass(WorldFlares.Flare.class);
-    addClass(ImprovedFog.class);
-    addClass(IsoPuddles.class);
-    addClass(IsoPuddles.PuddlesFloat.class);
-    addClass(BentFences.class);
-    addClass(BrokenFences.class);
-    addClass(ContainerOverlays.class);
-    addClass(IsoChunk.class);
-    addClass(BuildingDef.class);
-    addClass(IsoCamera.class);
-    addClass(IsoCell.class);
-    addClass(IsoChunkMap.class);
-    addClass(IsoDirections.class);
-    addClass(IsoDirectionSet.class);
-    addClass(IsoGridSquare.class);
-    addClass(IsoHeatSource.class);
-    addClass(IsoLightSource.class);
-    addClass(IsoLot.class);
-    addClass(IsoLuaMover.class);
-    addClass(IsoMetaChunk.class);
-    addClass(IsoMetaCell.class);
-    addClass(IsoMetaGrid.class);
-    addClass(IsoMetaGrid.Trigger.class);
-    addClass(IsoMetaGrid.VehicleZone.class);
-    addClass(IsoMetaGrid.Zone.class);
-    addClass(IsoMovingObject.class);
-    addClass(IsoObject.class);
-    addClass(IsoObjectPicker.class);
-    addClass(IsoPushableObject.class);
-    addClass(IsoUtils.class);
-    addClass(IsoWorld.class);
-    addClass(LosUtil.class);
-    addClass(MetaObject.class);
-    addClass(RoomDef.class);
-    addClass(SliceY.class);
-    addClass(TileOverlays.class);
-    addClass(Vector2.class);
-    addClass(Vector3.class);
-    addClass(WorldMarkers.class);
-    addClass(WorldMarkers.DirectionArrow.class);
-    addClass(WorldMarkers.GridSquareMarker.class);
-    addClass(WorldMarkers.PlayerHomingPoint.class);
-    addClass(SearchMode.class);
-    addClass(SearchMode.PlayerSearchMode.class);
-    addClass(SearchMode.SearchModeFloat.class);
-    addClass(IsoMarkers.class);
-    addClass(IsoMarkers.IsoMarker.class);
-    addClass(IsoMarkers.CircleIsoMarker.class);
-    addClass(LuaEventManager.class);
-    addClass(MapObjects.class);
-    addClass(ActiveMods.class);
-    addClass(Server.class);
-    addClass(ServerOptions.class);
-    addClass(ServerOptions.BooleanServerOption.class);
-    addClass(ServerOptions.DoubleServerOption.class);
-    addClass(ServerOptions.IntegerServerOption.class);
-    addClass(ServerOptions.StringServerOption.class);
-    addClass(ServerOptions.TextServerOption.class);
-    addClass(ServerSettings.class);
-    addClass(ServerSettingsManager.class);
-    addClass(ZombiePopulationManager.class);
-    addClass(ZombiePopulationRenderer.BooleanDebugOption.class);
-    addClass(RadioAPI.class);
-    addClass(DeviceData.class);
-    addClass(DevicePresets.class);
-    addClass(PresetEntry.class);
-    addClass(ZomboidRadio.class);
-    addClass(RadioData.class);
-    addClass(RadioScriptManager.class);
-    addClass(DynamicRadioChannel.class);
-    addClass(RadioChannel.class);
-    addClass(RadioBroadCast.class);
-    addClass(RadioLine.class);
-    addClass(RadioScript.class);
-    addClass(RadioScript.ExitOption.class);
-    addClass(ChannelCategory.class);
-    addClass(SLSoundManager.class);
-    addClass(StorySound.class);
-    addClass(StorySoundEvent.class);
-    addClass(EventSound.class);
-    addClass(DataPoint.class);
-    addClass(RecordedMedia.class);
-    addClass(MediaData.class);
-    addClass(EvolvedRecipe.class);
-    addClass(Fixing.class);
-    addClass(Fixing.Fixer.class);
-    addClass(Fixing.FixerSkill.class);
-    addClass(GameSoundScript.class);
-    addClass(Item.class);
-    addClass(zombie.scripting.objects.Item.Type.class);
-    addClass(ItemRecipe.class);
-    addClass(ModelAttachment.class);
-    addClass(ModelScript.class);
-    addClass(MovableRecipe.class);
-    addClass(Recipe.class);
-    addClass(Recipe.RequiredSkill.class);
-    addClass(Recipe.Result.class);
-    addClass(Recipe.Source.class);
-    addClass(ScriptModule.class);
-    addClass(VehicleScript.class);
-    addClass(VehicleScript.Area.class);
-    addClass(VehicleScript.Model.class);
-    addClass(VehicleScript.Part.class);
-    addClass(VehicleScript.Passenger.class);
-    addClass(VehicleScript.PhysicsShape.class);
-    addClass(VehicleScript.Position.class);
-    addClass(VehicleScript.Wheel.class);
-    addClass(ScriptManager.class);
-    addClass(ActionProgressBar.class);
-    addClass(Clock.class);
-    addClass(UIDebugConsole.class);
-    addClass(ModalDialog.class);
-    addClass(MoodlesUI.class);
-    addClass(NewHealthPanel.class);
-    addClass(ObjectTooltip.class);
-    addClass(ObjectTooltip.Layout.class);
-    addClass(ObjectTooltip.LayoutItem.class);
-    addClass(RadarPanel.class);
-    addClass(RadialMenu.class);
-    addClass(RadialProgressBar.class);
-    addClass(SpeedControls.class);
-    addClass(TextManager.class);
-    addClass(UI3DModel.class);
-    addClass(UIElement.class);
-    addClass(UIFont.class);
-    addClass(UITransition.class);
-    addClass(UIManager.class);
-    addClass(UIServerToolbox.class);
-    addClass(UITextBox2.class);
-    addClass(VehicleGauge.class);
-    addClass(TextDrawObject.class);
-    addClass(PZArrayList.class);
-    addClass(PZCalendar.class);
-    addClass(BaseVehicle.class);
-    addClass(EditVehicleState.class);
-    addClass(PathFindBehavior2.BehaviorResult.class);
-    addClass(PathFindBehavior2.class);
-    addClass(PathFindState2.class);
-    addClass(UI3DScene.class);
-    addClass(VehicleDoor.class);
-    addClass(VehicleLight.class);
-    addClass(VehiclePart.class);
-    addClass(VehicleType.class);
-    addClass(VehicleWindow.class);
-    addClass(AttachedItem.class);
-    addClass(AttachedItems.class);
-    addClass(AttachedLocation.class);
-    addClass(AttachedLocationGroup.class);
-    addClass(AttachedLocations.class);
-    addClass(WornItems.class);
-    addClass(WornItem.class);
-    addClass(BodyLocation.class);
-    addClass(BodyLocationGroup.class);
-    addClass(BodyLocations.class);
-    addClass(DummySoundManager.class);
-    addClass(GameSounds.class);
-    addClass(GameTime.class);
-    addClass(GameWindow.class);
-    addClass(SandboxOptions.class);
-    addClass(SandboxOptions.BooleanSandboxOption.class);
-    addClass(SandboxOptions.DoubleSandboxOption.class);
-    addClass(SandboxOptions.StringSandboxOption.class);
-    addClass(SandboxOptions.EnumSandboxOption.class);
-    addClass(SandboxOptions.IntegerSandboxOption.class);
-    addClass(SoundManager.class);
-    addClass(SystemDisabler.class);
-    addClass(VirtualZombieManager.class);
-    addClass(WorldSoundManager.class);
-    addClass(WorldSoundManager.WorldSound.class);
-    addClass(DummyCharacterSoundEmitter.class);
-    addClass(CharacterSoundEmitter.class);
-    addClass(SoundManager.AmbientSoundEffect.class);
-    addClass(BaseAmbientStreamManager.class);
-    addClass(AmbientStreamManager.class);
-    addClass(Nutrition.class);
-    addClass(BSFurnace.class);
-    addClass(MultiStageBuilding.class);
-    addClass(MultiStageBuilding.Stage.class);
-    addClass(SleepingEvent.class);
-    addClass(IsoCompost.class);
-    addClass(Userlog.class);
-    addClass(Userlog.UserlogType.class);
-    addClass(ConfigOption.class);
-    addClass(BooleanConfigOption.class);
-    addClass(DoubleConfigOption.class);
-    addClass(EnumConfigOption.class);
-    addClass(IntegerConfigOption.class);
-    addClass(StringConfigOption.class);
-    addClass(Faction.class);
-    addClass(LuaManager.GlobalObject.LuaFileWriter.class);
-    addClass(Keyboard.class);
-    addClass(DBResult.class);
-    addClass(NonPvpZone.class);
-    addClass(DBTicket.class);
-    addClass(StashSystem.class);
-    addClass(StashBuilding.class);
-    addClass(Stash.class);
-    addClass(ItemType.class);
-    addClass(RandomizedWorldBase.class);
-    addClass(RandomizedBuildingBase.class);
-    addClass(RBBurntFireman.class);
-    addClass(RBBasic.class);
-    addClass(RBBurnt.class);
-    addClass(RBOther.class);
-    addClass(RBStripclub.class);
-    addClass(RBSchool.class);
-    addClass(RBSpiffo.class);
-    addClass(RBPizzaWhirled.class);
-    addClass(RBOffice.class);
-    addClass(RBHairSalon.class);
-    addClass(RBClinic.class);
-    addClass(RBPileOCrepe.class);
-    addClass(RBCafe.class);
-    addClass(RBBar.class);
-    addClass(RBLooted.class);
-    addClass(RBSafehouse.class);
-    addClass(RBBurntCorpse.class);
-    addClass(RBShopLooted.class);
-    addClass(RBKateAndBaldspot.class);
-    addClass(RandomizedDeadSurvivorBase.class);
-    addClass(RDSZombiesEating.class);
-    addClass(RDSBleach.class);
-    addClass(RDSDeadDrunk.class);
-    addClass(RDSGunmanInBathroom.class);
-    addClass(RDSGunslinger.class);
-    addClass(RDSZombieLockedBathroom.class);
-    addClass(RDSBandPractice.class);
-    addClass(RDSBathroomZed.class);
-    addClass(RDSBedroomZed.class);
-    addClass(RDSFootballNight.class);
-    addClass(RDSHenDo.class);
-    addClass(RDSStagDo.class);
-    addClass(RDSStudentNight.class);
-    addClass(RDSPokerNight.class);
-    addClass(RDSSuicidePact.class);
-    addClass(RDSPrisonEscape.class);
-    addClass(RDSPrisonEscapeWithPolice.class);
-    addClass(RDSSkeletonPsycho.class);
-    addClass(RDSCorpsePsycho.class);
-    addClass(RDSSpecificProfession.class);
-    addClass(RDSPoliceAtHouse.class);
-    addClass(RDSHouseParty.class);
-    addClass(RDSTinFoilHat.class);
-    addClass(RDSHockeyPsycho.class);
-    addClass(RandomizedVehicleStoryBase.class);
-    addClass(RVSCarCrash.class);
-    addClass(RVSBanditRoad.class);
-    addClass(RVSAmbulanceCrash.class);
-    addClass(RVSCrashHorde.class);
-    addClass(RVSCarCrashCorpse.class);
-    addClass(RVSPoliceBlockade.class);
-    addClass(RVSPoliceBlockadeShooting.class);
-    addClass(RVSBurntCar.class);
-    addClass(RVSConstructionSite.class);
-    addClass(RVSUtilityVehicle.class);
-    addClass(RVSChangingTire.class);
-    addClass(RVSFlippedCrash.class);
-    addClass(RVSTrailerCrash.class);
-    addClass(RandomizedZoneStoryBase.class);
-    addClass(RZSForestCamp.class);
-    addClass(RZSForestCampEaten.class);
-    addClass(RZSBuryingCamp.class);
-    addClass(RZSBeachParty.class);
-    addClass(RZSFishingTrip.class);
-    addClass(RZSBBQParty.class);
-    addClass(RZSHunterCamp.class);
-    addClass(RZSSexyTime.class);
-    addClass(RZSTrapperCamp.class);
-    addClass(RZSBaseball.class);
-    addClass(RZSMusicFestStage.class);
-    addClass(RZSMusicFest.class);
-    addClass(MapGroups.class);
-    addClass(BeardStyles.class);
-    addClass(BeardStyle.class);
-    addClass(HairStyles.class);
-    addClass(HairStyle.class);
-    addClass(BloodClothingType.class);
-    addClass(WeaponType.class);
-    addClass(IsoWaterGeometry.class);
-    addClass(ModData.class);
-    addClass(WorldMarkers.class);
-    addClass(ChatMessage.class);
-    addClass(ChatBase.class);
-    addClass(ChatTab.class);
-    addClass(ServerChatMessage.class);
-    addClass(ChatTab.class);
-    addClass(LuaManager.GlobalObject.class);
+  private void write(String path, String content) {
+    output.write(path, content);
   }
 
-  private static void addClassesFrom41_78() {
-    addClass(BufferedReader.class);
-    addClass(BufferedWriter.class);
-    addClass(DataInputStream.class);
-    addClass(DataOutputStream.class);
-    addClass(Double.class);
-    addClass(Long.class);
-    addClass(Float.class);
-    addClass(Integer.class);
-    addClass(Math.class);
-    addClass(Void.class);
-    addClass(SimpleDateFormat.class);
-    addClass(ArrayList.class);
-    addClass(EnumMap.class);
-    addClass(HashMap.class);
-    addClass(LinkedList.class);
-    addClass(Stack.class);
-    addClass(Vector.class);
-    addClass(Iterator.class);
-    addClass(EmitterType.class);
-    addClass(FMODAudio.class);
-    addClass(FMODSoundBank.class);
-    addClass(FMODSoundEmitter.class);
-    addClass(Vector2f.class);
-    addClass(Vector3f.class);
-    addClass(KahluaUtil.class);
-    addClass(DummySoundBank.class);
-    addClass(DummySoundEmitter.class);
-    addClass(BaseSoundEmitter.class);
-    addClass(GameSound.class);
-    addClass(GameSoundClip.class);
-    addClass(AttackState.class);
-    addClass(BurntToDeath.class);
-    addClass(ClimbDownSheetRopeState.class);
-    addClass(ClimbOverFenceState.class);
-    addClass(ClimbOverWallState.class);
-    addClass(ClimbSheetRopeState.class);
-    addClass(ClimbThroughWindowState.class);
-    addClass(CloseWindowState.class);
-    addClass(CrawlingZombieTurnState.class);
-    addClass(FakeDeadAttackState.class);
-    addClass(FakeDeadZombieState.class);
-    addClass(FishingState.class);
-    addClass(FitnessState.class);
-    addClass(IdleState.class);
-    addClass(LungeState.class);
-    addClass(OpenWindowState.class);
-    addClass(PathFindState.class);
-    addClass(PlayerActionsState.class);
-    addClass(PlayerAimState.class);
-    addClass(PlayerEmoteState.class);
-    addClass(PlayerExtState.class);
-    addClass(PlayerFallDownState.class);
-    addClass(PlayerFallingState.class);
-    addClass(PlayerGetUpState.class);
-    addClass(PlayerHitReactionPVPState.class);
-    addClass(PlayerHitReactionState.class);
-    addClass(PlayerKnockedDown.class);
-    addClass(PlayerOnGroundState.class);
-    addClass(PlayerSitOnGroundState.class);
-    addClass(PlayerStrafeState.class);
-    addClass(SmashWindowState.class);
-    addClass(StaggerBackState.class);
-    addClass(SwipeStatePlayer.class);
-    addClass(ThumpState.class);
-    addClass(WalkTowardState.class);
-    addClass(ZombieFallDownState.class);
-    addClass(ZombieGetDownState.class);
-    addClass(ZombieGetUpState.class);
-    addClass(ZombieIdleState.class);
-    addClass(ZombieOnGroundState.class);
-    addClass(ZombieReanimateState.class);
-    addClass(ZombieSittingState.class);
-    addClass(GameCharacterAIBrain.class);
-    addClass(MapKnowledge.class);
-    addClass(BodyPartType.class);
-    addClass(BodyPart.class);
-    addClass(BodyDamage.class);
-    addClass(Thermoregulator.class);
-    addClass(Thermoregulator.ThermalNode.class);
-    addClass(Metabolics.class);
-    addClass(Fitness.class);
-    addClass(GameKeyboard.class);
-    addClass(LuaTimedAction.class);
-    addClass(LuaTimedActionNew.class);
-    addClass(Moodle.class);
-    addClass(Moodles.class);
-    addClass(MoodleType.class);
-    addClass(ProfessionFactory.class);
-    addClass(ProfessionFactory.Profession.class);
-    addClass(PerkFactory.class);
-    addClass(PerkFactory.Perk.class);
-    addClass(PerkFactory.Perks.class);
-    addClass(ObservationFactory.class);
-    addClass(ObservationFactory.Observation.class);
-    addClass(TraitFactory.class);
-    addClass(TraitFactory.Trait.class);
-    addClass(IsoDummyCameraCharacter.class);
-    addClass(Stats.class);
-    addClass(SurvivorDesc.class);
-    addClass(SurvivorFactory.class);
-    addClass(SurvivorFactory.SurvivorType.class);
-    addClass(IsoGameCharacter.class);
-    addClass(IsoGameCharacter.Location.class);
-    addClass(IsoGameCharacter.PerkInfo.class);
-    addClass(IsoGameCharacter.XP.class);
-    addClass(IsoGameCharacter.CharacterTraits.class);
-    addClass(TraitCollection.TraitSlot.class);
-    addClass(TraitCollection.class);
-    addClass(IsoPlayer.class);
-    addClass(IsoSurvivor.class);
-    addClass(IsoZombie.class);
-    addClass(CharacterActionAnims.class);
-    addClass(HaloTextHelper.class);
-    addClass(HaloTextHelper.ColorRGB.class);
-    addClass(NetworkAIParams.class);
-    addClass(BloodBodyPartType.class);
-    addClass(Clipboard.class);
-    addClass(AngelCodeFont.class);
-    addClass(ZLogger.class);
-    addClass(PropertyContainer.class);
-    addClass(ClothingItem.class);
-    addClass(AnimatorDebugMonitor.class);
-    addClass(ColorInfo.class);
-    addClass(Texture.class);
-    addClass(SteamFriend.class);
-    addClass(SteamUGCDetails.class);
-    addClass(SteamWorkshopItem.class);
-    addClass(Color.class);
-    addClass(Colors.class);
-    addClass(Core.class);
-    addClass(GameVersion.class);
-    addClass(ImmutableColor.class);
-    addClass(Language.class);
-    addClass(PerformanceSettings.class);
-    addClass(SpriteRenderer.class);
-    addClass(Translator.class);
-    addClass(PZMath.class);
-    addClass(DebugLog.class);
-    addClass(DebugOptions.class);
-    addClass(BooleanDebugOption.class);
-    addClass(DebugType.class);
-    addClass(ErosionConfig.class);
-    addClass(ErosionConfig.Debug.class);
-    addClass(ErosionConfig.Season.class);
-    addClass(ErosionConfig.Seeds.class);
-    addClass(ErosionConfig.Time.class);
-    addClass(ErosionMain.class);
-    addClass(ErosionSeason.class);
-    addClass(AnimationViewerState.class);
-    addClass(AnimationViewerState.BooleanDebugOption.class);
-    addClass(AttachmentEditorState.class);
-    addClass(ChooseGameInfo.Mod.class);
-    addClass(DebugChunkState.class);
-    addClass(DebugChunkState.BooleanDebugOption.class);
-    addClass(DebugGlobalObjectState.class);
-    addClass(GameLoadingState.class);
-    addClass(LoadingQueueState.class);
-    addClass(MainScreenState.class);
-    addClass(TermsOfServiceState.class);
-    addClass(CGlobalObject.class);
-    addClass(CGlobalObjects.class);
-    addClass(CGlobalObjectSystem.class);
-    addClass(SGlobalObject.class);
-    addClass(SGlobalObjects.class);
-    addClass(SGlobalObjectSystem.class);
-    addClass(Mouse.class);
-    addClass(AlarmClock.class);
-    addClass(AlarmClockClothing.class);
-    addClass(Clothing.class);
-    addClass(Clothing.ClothingPatch.class);
-    addClass(Clothing.ClothingPatchFabricType.class);
-    addClass(ComboItem.class);
-    addClass(Drainable.class);
-    addClass(DrainableComboItem.class);
-    addClass(Food.class);
-    addClass(HandWeapon.class);
-    addClass(InventoryContainer.class);
-    addClass(Key.class);
-    addClass(KeyRing.class);
-    addClass(Literature.class);
-    addClass(MapItem.class);
-    addClass(Moveable.class);
-    addClass(Radio.class);
-    addClass(WeaponPart.class);
-    addClass(ItemContainer.class);
-    addClass(ItemPickerJava.class);
-    addClass(InventoryItem.class);
-    addClass(InventoryItemFactory.class);
-    addClass(FixingManager.class);
-    addClass(RecipeManager.class);
-    addClass(IsoRegions.class);
-    addClass(IsoRegionsLogger.class);
-    addClass(IsoRegionsLogger.IsoRegionLog.class);
-    addClass(IsoRegionLogType.class);
-    addClass(DataCell.class);
-    addClass(DataChunk.class);
-    addClass(IsoChunkRegion.class);
-    addClass(IsoWorldRegion.class);
-    addClass(IsoRegionsRenderer.class);
-    addClass(IsoRegionsRenderer.BooleanDebugOption.class);
-    addClass(IsoBuilding.class);
-    addClass(IsoRoom.class);
-    addClass(SafeHouse.class);
-    addClass(BarricadeAble.class);
-    addClass(IsoBarbecue.class);
-    addClass(IsoBarricade.class);
-    addClass(IsoBrokenGlass.class);
-    addClass(IsoClothingDryer.class);
-    addClass(IsoClothingWasher.class);
-    addClass(IsoCombinationWasherDryer.class);
-    addClass(IsoStackedWasherDryer.class);
-    addClass(IsoCurtain.class);
-    addClass(IsoCarBatteryCharger.class);
-    addClass(IsoDeadBody.class);
-    addClass(IsoDoor.class);
-    addClass(IsoFire.class);
-    addClass(IsoFireManager.class);
-    addClass(IsoFireplace.class);
-    addClass(IsoGenerator.class);
-    addClass(IsoJukebox.class);
-    addClass(IsoLightSwitch.class);
-    addClass(IsoMannequin.class);
-    addClass(IsoMolotovCocktail.class);
-    addClass(IsoWaveSignal.class);
-    addClass(IsoRadio.class);
-    addClass(IsoTelevision.class);
-    addClass(IsoStackedWasherDryer.class);
-    addClass(IsoStove.class);
-    addClass(IsoThumpable.class);
-    addClass(IsoTrap.class);
-    addClass(IsoTree.class);
-    addClass(IsoWheelieBin.class);
-    addClass(IsoWindow.class);
-    addClass(IsoWindowFrame.class);
-    addClass(IsoWorldInventoryObject.class);
-    addClass(IsoZombieGiblets.class);
-    addClass(RainManager.class);
-    addClass(ObjectRenderEffects.class);
-    addClass(HumanVisual.class);
-    addClass(ItemVisual.class);
-    addClass(ItemVisuals.class);
-    addClass(IsoSprite.class);
-    addClass(IsoSpriteInstance.class);
-    addClass(IsoSpriteManager.class);
-    addClass(IsoSpriteGrid.class);
-    addClass(IsoFlagType.class);
-    addClass(IsoObjectType.class);
-    addClass(ClimateManager.class);
-    addClass(ClimateManager.DayInfo.class);
-    addClass(ClimateManager.ClimateFloat.class);
-    addClass(ClimateManager.ClimateColor.class);
-    addClass(ClimateManager.ClimateBool.class);
-    addClass(WeatherPeriod.class);
-    addClass(WeatherPeriod.WeatherStage.class);
-    addClass(WeatherPeriod.StrLerpVal.class);
-    addClass(ClimateManager.AirFront.class);
-    addClass(ThunderStorm.class);
-    addClass(ThunderStorm.ThunderCloud.class);
-    addClass(IsoWeatherFX.class);
-    addClass(Temperature.class);
-    addClass(ClimateColorInfo.class);
-    addClass(ClimateValues.class);
-    addClass(ClimateForecaster.class);
-    addClass(ClimateForecaster.DayForecast.class);
-    addClass(ClimateForecaster.ForecastValue.class);
-    addClass(ClimateHistory.class);
-    addClass(WorldFlares.class);
-    addClass(WorldFlares.Flare.class);
-    addClass(ImprovedFog.class);
-    addClass(ClimateMoon.class);
-    addClass(IsoPuddles.class);
-    addClass(IsoPuddles.PuddlesFloat.class);
-    addClass(BentFences.class);
-    addClass(BrokenFences.class);
-    addClass(ContainerOverlays.class);
-    addClass(IsoChunk.class);
-    addClass(BuildingDef.class);
-    addClass(IsoCamera.class);
-    addClass(IsoCell.class);
-    addClass(IsoChunkMap.class);
-    addClass(IsoDirections.class);
-    addClass(IsoDirectionSet.class);
-    addClass(IsoGridSquare.class);
-    addClass(IsoHeatSource.class);
-    addClass(IsoLightSource.class);
-    addClass(IsoLot.class);
-    addClass(IsoLuaMover.class);
-    addClass(IsoMetaChunk.class);
-    addClass(IsoMetaCell.class);
-    addClass(IsoMetaGrid.class);
-    addClass(IsoMetaGrid.Trigger.class);
-    addClass(IsoMetaGrid.VehicleZone.class);
-    addClass(IsoMetaGrid.Zone.class);
-    addClass(IsoMovingObject.class);
-    addClass(IsoObject.class);
-    addClass(IsoObjectPicker.class);
-    addClass(IsoPushableObject.class);
-    addClass(IsoUtils.class);
-    addClass(IsoWorld.class);
-    addClass(LosUtil.class);
-    addClass(MetaObject.class);
-    addClass(RoomDef.class);
-    addClass(SliceY.class);
-    addClass(TileOverlays.class);
-    addClass(Vector2.class);
-    addClass(Vector3.class);
-    addClass(WorldMarkers.class);
-    addClass(WorldMarkers.DirectionArrow.class);
-    addClass(WorldMarkers.GridSquareMarker.class);
-    addClass(WorldMarkers.PlayerHomingPoint.class);
-    addClass(SearchMode.class);
-    addClass(SearchMode.PlayerSearchMode.class);
-    addClass(SearchMode.SearchModeFloat.class);
-    addClass(IsoMarkers.class);
-    addClass(IsoMarkers.IsoMarker.class);
-    addClass(IsoMarkers.CircleIsoMarker.class);
-    addClass(LuaEventManager.class);
-    addClass(MapObjects.class);
-    addClass(ActiveMods.class);
-    addClass(Server.class);
-    addClass(ServerOptions.class);
-    addClass(ServerOptions.BooleanServerOption.class);
-    addClass(ServerOptions.DoubleServerOption.class);
-    addClass(ServerOptions.IntegerServerOption.class);
-    addClass(ServerOptions.StringServerOption.class);
-    addClass(ServerOptions.TextServerOption.class);
-    addClass(ServerSettings.class);
-    addClass(ServerSettingsManager.class);
-    addClass(ZombiePopulationRenderer.class);
-    addClass(ZombiePopulationRenderer.BooleanDebugOption.class);
-    addClass(RadioAPI.class);
-    addClass(DeviceData.class);
-    addClass(DevicePresets.class);
-    addClass(PresetEntry.class);
-    addClass(ZomboidRadio.class);
-    addClass(RadioData.class);
-    addClass(RadioScriptManager.class);
-    addClass(DynamicRadioChannel.class);
-    addClass(RadioChannel.class);
-    addClass(RadioBroadCast.class);
-    addClass(RadioLine.class);
-    addClass(RadioScript.class);
-    addClass(RadioScript.ExitOption.class);
-    addClass(ChannelCategory.class);
-    addClass(SLSoundManager.class);
-    addClass(StorySound.class);
-    addClass(StorySoundEvent.class);
-    addClass(EventSound.class);
-    addClass(DataPoint.class);
-    addClass(RecordedMedia.class);
-    addClass(MediaData.class);
-    addClass(MediaData.MediaLineData.class);
-    addClass(EvolvedRecipe.class);
-    addClass(Fixing.class);
-    addClass(Fixing.Fixer.class);
-    addClass(Fixing.FixerSkill.class);
-    addClass(GameSoundScript.class);
-    addClass(Item.class);
-    addClass(Item.Type.class);
-    addClass(ItemRecipe.class);
-    addClass(MannequinScript.class);
-    addClass(ModelAttachment.class);
-    addClass(ModelScript.class);
-    addClass(MovableRecipe.class);
-    addClass(Recipe.class);
-    addClass(Recipe.RequiredSkill.class);
-    addClass(Recipe.Result.class);
-    addClass(Recipe.Source.class);
-    addClass(ScriptModule.class);
-    addClass(VehicleScript.class);
-    addClass(VehicleScript.Area.class);
-    addClass(VehicleScript.Model.class);
-    addClass(VehicleScript.Part.class);
-    addClass(VehicleScript.Passenger.class);
-    addClass(VehicleScript.PhysicsShape.class);
-    addClass(VehicleScript.Position.class);
-    addClass(VehicleScript.Wheel.class);
-    addClass(ScriptManager.class);
-    addClass(TemplateText.class);
-    addClass(ReplaceProviderCharacter.class);
-    addClass(ActionProgressBar.class);
-    addClass(Clock.class);
-    addClass(UIDebugConsole.class);
-    addClass(ModalDialog.class);
-    addClass(MoodlesUI.class);
-    addClass(NewHealthPanel.class);
-    addClass(ObjectTooltip.class);
-    addClass(ObjectTooltip.Layout.class);
-    addClass(ObjectTooltip.LayoutItem.class);
-    addClass(RadarPanel.class);
-    addClass(RadialMenu.class);
-    addClass(RadialProgressBar.class);
-    addClass(SpeedControls.class);
-    addClass(TextManager.class);
-    addClass(UI3DModel.class);
-    addClass(UIElement.class);
-    addClass(UIFont.class);
-    addClass(UITransition.class);
-    addClass(UIManager.class);
-    addClass(UIServerToolbox.class);
-    addClass(UITextBox2.class);
-    addClass(VehicleGauge.class);
-    addClass(TextDrawObject.class);
-    addClass(PZArrayList.class);
-    addClass(PZCalendar.class);
-    addClass(BaseVehicle.class);
-    addClass(EditVehicleState.class);
-    addClass(PathFindBehavior2.BehaviorResult.class);
-    addClass(PathFindBehavior2.class);
-    addClass(PathFindState2.class);
-    addClass(UI3DScene.class);
-    addClass(VehicleDoor.class);
-    addClass(VehicleLight.class);
-    addClass(VehiclePart.class);
-    addClass(VehicleType.class);
-    addClass(VehicleWindow.class);
-    addClass(AttachedItem.class);
-    addClass(AttachedItems.class);
-    addClass(AttachedLocation.class);
-    addClass(AttachedLocationGroup.class);
-    addClass(AttachedLocations.class);
-    addClass(WornItems.class);
-    addClass(WornItem.class);
-    addClass(BodyLocation.class);
-    addClass(BodyLocationGroup.class);
-    addClass(BodyLocations.class);
-    addClass(DummySoundManager.class);
-    addClass(GameSounds.class);
-    addClass(GameTime.class);
-    addClass(GameWindow.class);
-    addClass(SandboxOptions.class);
-    addClass(SandboxOptions.BooleanSandboxOption.class);
-    addClass(SandboxOptions.DoubleSandboxOption.class);
-    addClass(SandboxOptions.StringSandboxOption.class);
-    addClass(SandboxOptions.EnumSandboxOption.class);
-    addClass(SandboxOptions.IntegerSandboxOption.class);
-    addClass(SoundManager.class);
-    addClass(SystemDisabler.class);
-    addClass(VirtualZombieManager.class);
-    addClass(WorldSoundManager.class);
-    addClass(WorldSoundManager.WorldSound.class);
-    addClass(DummyCharacterSoundEmitter.class);
-    addClass(CharacterSoundEmitter.class);
-    addClass(SoundManager.AmbientSoundEffect.class);
-    addClass(BaseAmbientStreamManager.class);
-    addClass(AmbientStreamManager.class);
-    addClass(Nutrition.class);
-    addClass(BSFurnace.class);
-    addClass(MultiStageBuilding.class);
-    addClass(MultiStageBuilding.Stage.class);
-    addClass(SleepingEvent.class);
-    addClass(IsoCompost.class);
-    addClass(Userlog.class);
-    addClass(Userlog.UserlogType.class);
-    addClass(ConfigOption.class);
-    addClass(BooleanConfigOption.class);
-    addClass(DoubleConfigOption.class);
-    addClass(EnumConfigOption.class);
-    addClass(IntegerConfigOption.class);
-    addClass(StringConfigOption.class);
-    addClass(Faction.class);
-    addClass(LuaManager.GlobalObject.LuaFileWriter.class);
-    addClass(Keyboard.class);
-    addClass(DBResult.class);
-    addClass(NonPvpZone.class);
-    addClass(DBTicket.class);
-    addClass(StashSystem.class);
-    addClass(StashBuilding.class);
-    addClass(Stash.class);
-    addClass(ItemType.class);
-    addClass(RandomizedWorldBase.class);
-    addClass(RandomizedBuildingBase.class);
-    addClass(RBBurntFireman.class);
-    addClass(RBBasic.class);
-    addClass(RBBurnt.class);
-    addClass(RBOther.class);
-    addClass(RBStripclub.class);
-    addClass(RBSchool.class);
-    addClass(RBSpiffo.class);
-    addClass(RBPizzaWhirled.class);
-    addClass(RBOffice.class);
-    addClass(RBHairSalon.class);
-    addClass(RBClinic.class);
-    addClass(RBPileOCrepe.class);
-    addClass(RBCafe.class);
-    addClass(RBBar.class);
-    addClass(RBLooted.class);
-    addClass(RBSafehouse.class);
-    addClass(RBBurntCorpse.class);
-    addClass(RBShopLooted.class);
-    addClass(RBKateAndBaldspot.class);
-    addClass(RandomizedDeadSurvivorBase.class);
-    addClass(RDSZombiesEating.class);
-    addClass(RDSBleach.class);
-    addClass(RDSDeadDrunk.class);
-    addClass(RDSGunmanInBathroom.class);
-    addClass(RDSGunslinger.class);
-    addClass(RDSZombieLockedBathroom.class);
-    addClass(RDSBandPractice.class);
-    addClass(RDSBathroomZed.class);
-    addClass(RDSBedroomZed.class);
-    addClass(RDSFootballNight.class);
-    addClass(RDSHenDo.class);
-    addClass(RDSStagDo.class);
-    addClass(RDSStudentNight.class);
-    addClass(RDSPokerNight.class);
-    addClass(RDSSuicidePact.class);
-    addClass(RDSPrisonEscape.class);
-    addClass(RDSPrisonEscapeWithPolice.class);
-    addClass(RDSSkeletonPsycho.class);
-    addClass(RDSCorpsePsycho.class);
-    addClass(RDSSpecificProfession.class);
-    addClass(RDSPoliceAtHouse.class);
-    addClass(RDSHouseParty.class);
-    addClass(RDSTinFoilHat.class);
-    addClass(RDSHockeyPsycho.class);
-    addClass(RandomizedVehicleStoryBase.class);
-    addClass(RVSCarCrash.class);
-    addClass(RVSBanditRoad.class);
-    addClass(RVSAmbulanceCrash.class);
-    addClass(RVSCrashHorde.class);
-    addClass(RVSCarCrashCorpse.class);
-    addClass(RVSPoliceBlockade.class);
-    addClass(RVSPoliceBlockadeShooting.class);
-    addClass(RVSBurntCar.class);
-    addClass(RVSConstructionSite.class);
-    addClass(RVSUtilityVehicle.class);
-    addClass(RVSChangingTire.class);
-    addClass(RVSFlippedCrash.class);
-    addClass(RVSTrailerCrash.class);
-    addClass(RandomizedZoneStoryBase.class);
-    addClass(RZSForestCamp.class);
-    addClass(RZSForestCampEaten.class);
-    addClass(RZSBuryingCamp.class);
-    addClass(RZSBeachParty.class);
-    addClass(RZSFishingTrip.class);
-    addClass(RZSBBQParty.class);
-    addClass(RZSHunterCamp.class);
-    addClass(RZSSexyTime.class);
-    addClass(RZSTrapperCamp.class);
-    addClass(RZSBaseball.class);
-    addClass(RZSMusicFestStage.class);
-    addClass(RZSMusicFest.class);
-    addClass(MapGroups.class);
-    addClass(BeardStyles.class);
-    addClass(BeardStyle.class);
-    addClass(HairStyles.class);
-    addClass(HairStyle.class);
-    addClass(BloodClothingType.class);
-    addClass(WeaponType.class);
-    addClass(IsoWaterGeometry.class);
-    addClass(ModData.class);
-    addClass(WorldMarkers.class);
-    addClass(ChatMessage.class);
-    addClass(ChatBase.class);
-    addClass(ServerChatMessage.class);
-    addClass(Safety.class);
+  private void write(String path, OutputTarget.Emitter emitter) {
+    output.write(path, emitter);
   }
-
-  private static void addClass(Class<?> clazz) {
-    if (classes.contains(clazz)) return;
-    classes.add(clazz);
-  }
-
-  private static void write(File file, String content) {
-    try {
-      FileWriter writer = new FileWriter(file);
-      writer.write(content);
-      writer.flush();
-      writer.close();
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
-  }
-
-  private static final Comparator<TypeScriptElement> nameSorter =
-      (o1, o2) -> {
-        String name1 = o1.getClazz() != null ? o1.getClazz().getSimpleName() : o1.getName();
-        if (name1.contains("$")) {
-          String[] split = name1.split("\\$");
-          name1 = split[split.length - 1];
-        }
-        String name2 = o2.getClazz() != null ? o2.getClazz().getSimpleName() : o2.getName();
-        if (name2.contains("$")) {
-          String[] split = name2.split("\\$");
-          name2 = split[split.length - 1];
-        }
-        return name1.compareTo(name2);
-      };
 }
@@ -0,0 +1,357 @@
+package com.asledgehammer.pipewrench;
+
+import com.asledgehammer.typescript.TypeScriptCompiler;
+import com.asledgehammer.typescript.type.TypeScriptClass;
+import com.asledgehammer.typescript.type.TypeScriptCompilable;
+import com.asledgehammer.typescript.type.TypeScriptElement;
+import com.asledgehammer.typescript.type.TypeScriptNamespace;
+import com.asledgehammer.typescript.util.Indent;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The compiled output of one walked graph: every element's declaration by namespace, its symbol
+ * for the partials, the namespaces' union aliases and Lua's global functions. A shard writes one
+ * and {@link #merge(List)} combines them, so the merged API renders without walking anything.
+ */
+public class ShardSnapshot {
+
+  static final String HEADER = "pipewrench-shard 1";
+
+  /**
+   * @param symbol The element's symbol, or null if it has no class.
+   * @param compiled The compiled declaration, or null if the element is not valid or its namespace
+   *     is not emitted.
+   */
+  record Element(String key, SymbolTable.Symbol symbol, String compiled) {
+
+    /**
+     * @return True if the element is only a plain type, which a declaration from another shard
+     *     replaces.
+     */
+    boolean isPlaceholder() {
+      return symbol == null || symbol.type();
+    }
+  }
+
+  /**
+   * @param compilable True if the namespace is emitted as a file.
+   * @param elements The elements by key.
+   * @param unionAliases The union type aliases by union.
+   */
+  private record Namespace(
+      boolean compilable, TreeMap<String, Element> elements, Map<String, String> unionAliases) {
+  }
+
+  private final TreeMap<String, Namespace> namespaces;
+  private final List<String> functions;
+  private final String lua;
+  private final List<String> collapsedUnions;
+
+  private ShardSnapshot(TreeMap<String, Namespace> namespaces, List<String> functions,
+      String lua, List<String> collapsedUnions) {
+    this.namespaces = namespaces;
+    this.functions = functions;
+    this.lua = lua;
+    this.collapsedUnions = collapsedUnions;
+  }
+
+  /**
+   * Compiles every element of a walked compiler the way its namespace would.
+   */
+  public static ShardSnapshot of(TypeScriptCompiler compiler) {
+    Set<String> compilable = new HashSet<>();
+    for (TypeScriptNamespace namespace : compiler.getCompilableNamespaces()) {
+      compilable.add(namespace.getFullPath());
+    }
+    Indent inner = Indent.of("  ").next();
+    TreeMap<String, Namespace> namespaces = new TreeMap<>();
+    for (TypeScriptNamespace namespace : compiler.getAllPopulatedNamespaces().values()) {
+      boolean emitted = compilable.contains(namespace.getFullPath());
+      TreeMap<String, Element> elements = new TreeMap<>();
+      for (Map.Entry<String, TypeScriptElement> entry : namespace.elements.entrySet()) {
+        TypeScriptElement element = entry.getValue();
+        String compiled = emitted && element.isValid() ? element.compile(inner.toString()) : null;
+        elements.put(entry.getKey(),
+            new Element(entry.getKey(), SymbolTable.Symbol.of(element), compiled));
+      }
+      namespaces.put(namespace.getFullPath(),
+          new Namespace(emitted, elements, new HashMap<>(namespace.getUnionAliases())));
+    }
+    TypeScriptClass globalObject = RenderZomboid.getGlobalObject(compiler);
+    List<String> functions = null;
+    String lua = null;
+    if (globalObject != null && globalObject.hasWalked()) {
+      functions = RenderZomboid.compileFunctions(globalObject);
+      lua = globalObject.compileLua("Exports");
+    }
+    return new ShardSnapshot(namespaces, functions, lua, compiler.getCollapsedUnions());
+  }
+
+  /**
+   * Combines the snapshots of shards. An element declared by any shard replaces the plain types
+   * the others hold for it. Otherwise the first shard's element is kept, so the result only
+   * depends on the order of the shards.
+   */
+  public static ShardSnapshot merge(List<ShardSnapshot> snapshots) {
+    TreeMap<String, Namespace> namespaces = new TreeMap<>();
+    List<String> functions = null;
+    String lua = null;
+    Set<String> collapsedUnions = new TreeSet<>();
+    for (ShardSnapshot snapshot : snapshots) {
+      for (Map.Entry<String, Namespace> entry : snapshot.namespaces.entrySet()) {
+        Namespace namespace = entry.getValue();
+        Namespace merged = namespaces.get(entry.getKey());
+        if (merged == null) {
+          merged = new Namespace(namespace.compilable, new TreeMap<>(), new HashMap<>());
+        } else if (namespace.compilable && !merged.compilable) {
+          merged = new Namespace(true, merged.elements, merged.unionAliases);
+        }
+        namespaces.put(entry.getKey(), merged);
+        for (Element element : namespace.elements.values()) {
+          Element existing = merged.elements.get(element.key());
+          if (existing == null || (existing.isPlaceholder() && !element.isPlaceholder())) {
+            merged.elements.put(element.key(), element);
+          }
+        }
+        mergeUnionAliases(entry.getKey(), namespace.unionAliases, merged.unionAliases);
+      }
+      if (functions == null) {
+        functions = snapshot.functions;
+        lua = snapshot.lua;
+      }
+      collapsedUnions.addAll(snapshot.collapsedUnions);
+    }
+    return new ShardSnapshot(namespaces, functions, lua, new ArrayList<>(collapsedUnions));
+  }
+
+  /**
+   * Adds the aliases of a shard's namespace. Alias names only depend on the union, so shards that
+   * declare the same union agree on its name.
+   *
+   * @throws RuntimeException If a union has another name, or a name another union, than the
+   *     aliases merged so far give it.
+   */
+  private static void mergeUnionAliases(
+      String path, Map<String, String> aliases, Map<String, String> merged) {
+    for (Map.Entry<String, String> alias : aliases.entrySet()) {
+      String existing = merged.get(alias.getKey());
+      if (existing == null && merged.containsValue(alias.getValue())) {
+        throw new RuntimeException("Shards declare " + alias.getValue() + " in " + path
+            + " for different unions.");
+      }
+      if (existing != null && !existing.equals(alias.getValue())) {
+        throw new RuntimeException("Shards declare the union '" + alias.getKey() + "' in " + path
+            + " as both " + existing + " and " + alias.getValue() + ".");
+      }
+      merged.put(alias.getKey(), alias.getValue());
+    }
+  }
+
+  /**
+   * @return The full paths of the namespaces emitted as files, sorted.
+   */
+  public List<String> getNamespaces() {
+    List<String> list = new ArrayList<>();
+    for (Map.Entry<String, Namespace> entry : namespaces.entrySet()) {
+      if (entry.getValue().compilable) {
+        list.add(entry.getKey());
+      }
+    }
+    return list;
+  }
+
+  /**
+   * Writes the namespace as {@link TypeScriptNamespace#compile(Appendable, Indent)} would.
+   */
+  public void compileNamespace(String path, Appendable out) throws IOException {
+    Namespace namespace = namespaces.get(path);
+    List<TypeScriptCompilable> elements = new ArrayList<>();
+    for (Element element : namespace.elements.values()) {
+      if (element.compiled() != null) {
+        elements.add((writer, indent) -> writer.append(element.compiled()));
+      }
+    }
+    if (elements.isEmpty()) {
+      return;
+    }
+    TypeScriptNamespace.compile(
+        out, Indent.of("  "), path, elements, namespace.unionAliases);
+  }
+
+  /**
+   * @return The symbols of every element, in the order one graph holding them all would list
+   *     them: each namespace after its sub-namespaces, and elements by key.
+   */
+  public List<SymbolTable.Symbol> getSymbols() {
+    List<String> paths = new ArrayList<>(namespaces.keySet());
+    paths.sort(ShardSnapshot::compareGraphOrder);
+    List<SymbolTable.Symbol> symbols = new ArrayList<>();
+    for (String path : paths) {
+      for (Element element : namespaces.get(path).elements.values()) {
+        if (element.symbol() != null) {
+          symbols.add(element.symbol());
+        }
+      }
+    }
+    return symbols;
+  }
+
+  static int compareGraphOrder(String a, String b) {
+    String[] left = a.split("\\.");
+    String[] right = b.split("\\.");
+    for (int index = 0; index < Math.min(left.length, right.length); index++) {
+      int compare = left[index].compareTo(right[index]);
+      if (compare != 0) {
+        return compare;
+      }
+    }
+    // A sub-namespace comes before its parent.
+    return Integer.compare(right.length, left.length);
+  }
+
+  /**
+   * @return Lua's global functions as TypeScript functions, or an empty list if no shard declared
+   *     the class holding them.
+   */
+  public List<String> getFunctions() {
+    return functions != null ? functions : Collections.emptyList();
+  }
+
+  public String getLua() {
+    return lua != null ? lua : "";
+  }
+
+  public List<String> getCollapsedUnions() {
+    return Collections.unmodifiableList(collapsedUnions);
+  }
+
+  /**
+   * @throws UncheckedIOException If the file cannot be written.
+   */
+  public void write(File file) {
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeUTF(HEADER);
+      out.writeInt(namespaces.size());
+      for (Map.Entry<String, Namespace> entry : namespaces.entrySet()) {
+        Namespace namespace = entry.getValue();
+        writeString(out, entry.getKey());
+        out.writeBoolean(namespace.compilable);
+        out.writeInt(namespace.elements.size());
+        for (Element element : namespace.elements.values()) {
+          writeString(out, element.key());
+          SymbolTable.Symbol symbol = element.symbol();
+          out.writeBoolean(symbol != null);
+          if (symbol != null) {
+            writeString(out, symbol.className());
+            writeString(out, symbol.simpleName());
+            writeString(out, symbol.name());
+            out.writeBoolean(symbol.type());
+            out.writeInt(symbol.typeParameters());
+          }
+          writeString(out, element.compiled());
+        }
+        out.writeInt(namespace.unionAliases.size());
+        for (Map.Entry<String, String> alias : namespace.unionAliases.entrySet()) {
+          writeString(out, alias.getKey());
+          writeString(out, alias.getValue());
+        }
+      }
+      out.writeBoolean(functions != null);
+      if (functions != null) {
+        writeStrings(out, functions);
+        writeString(out, lua);
+      }
+      writeStrings(out, collapsedUnions);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write shard snapshot: " + file, e);
+    }
+  }
+
+  /**
+   * @throws UncheckedIOException If the file cannot be read or is not a shard snapshot.
+   */
+  public static ShardSnapshot read(File file) {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(file)))) {
+      if (!HEADER.equals(in.readUTF())) {
+        throw new IOException("Not a shard snapshot: " + file);
+      }
+      TreeMap<String, Namespace> namespaces = new TreeMap<>();
+      int namespaceCount = in.readInt();
+      for (int index = 0; index < namespaceCount; index++) {
+        String path = readString(in);
+        boolean compilable = in.readBoolean();
+        TreeMap<String, Element> elements = new TreeMap<>();
+        int elementCount = in.readInt();
+        for (int element = 0; element < elementCount; element++) {
+          String key = readString(in);
+          SymbolTable.Symbol symbol = null;
+          if (in.readBoolean()) {
+            symbol = new SymbolTable.Symbol(readString(in), readString(in), readString(in),
+                in.readBoolean(), in.readInt());
+          }
+          elements.put(key, new Element(key, symbol, readString(in)));
+        }
+        Map<String, String> unionAliases = new HashMap<>();
+        int aliasCount = in.readInt();
+        for (int alias = 0; alias < aliasCount; alias++) {
+          unionAliases.put(readString(in), readString(in));
+        }
+        namespaces.put(path, new Namespace(compilable, elements, unionAliases));
+      }
+      List<String> functions = null;
+      String lua = null;
+      if (in.readBoolean()) {
+        functions = readStrings(in);
+        lua = readString(in);
+      }
+      return new ShardSnapshot(namespaces, functions, lua, readStrings(in));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read shard snapshot: " + file, e);
+    }
+  }
+
+  /**
+   * Writes a string of any length, or null, as its UTF-8 length followed by its bytes.
+   */
+  private static void writeString(DataOutputStream out, String string) throws IOException {
+    if (string == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length == -1) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeStrings(DataOutputStream out, List<String> strings)
+      throws IOException {
+    out.writeInt(strings.size());
+    for (String string : strings) {
+      writeString(out, string);
+    }
+  }
+
+  private static List<String> readStrings(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    List<String> strings = new ArrayList<>(count);
+    for (int index = 0; index < count; index++) {
+      strings.add(readString(in));
+    }
+    return strings;
+  }
+}
@@ -0,0 +1,213 @@
+package com.asledgehammer.pipewrench;
+
+import com.asledgehammer.typescript.TypeScriptCompiler;
+import com.asledgehammer.typescript.util.ClassPathIndex;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Renders the API in several worker processes, so that no single heap holds the whole graph.
+ *
+ * <p>The roots of the {@link ClassManifest} are grouped by package and the packages are spread
+ * over the workers. Each worker walks its own roots, refers to the roots of the others by name
+ * without walking them, and writes a {@link ShardSnapshot} to a local file. The snapshots are
+ * merged in shard order and rendered as one.
+ */
+public class ShardedRender {
+
+  /**
+   * The sub-command that runs a worker. See {@link #work(File, File, File)}.
+   */
+  public static final String COMMAND = "shard";
+
+  private final String outDir;
+  private final int workers;
+  private final List<String> jvmArgs;
+
+  /**
+   * @param workers The most worker processes to start.
+   * @param jvmArgs Extra arguments for each worker's JVM, such as its heap size.
+   */
+  public ShardedRender(String outDir, int workers, List<String> jvmArgs) {
+    if (workers < 1) {
+      throw new RuntimeException("At least one worker is required: " + workers);
+    }
+    this.outDir = outDir;
+    this.workers = workers;
+    this.jvmArgs = jvmArgs;
+  }
+
+  public void render() {
+    List<String> roots = ClassManifest.load().expand(
+        Thread.currentThread().getContextClassLoader(), ClassPathIndex.ofClassPath());
+    List<List<String>> shards = partition(roots, workers);
+    System.out.println("Rendering " + shards.size() + " shard(s)..");
+
+    Path work;
+    try {
+      work = Files.createTempDirectory("pipewrench-shards");
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to create a directory for the shards", e);
+    }
+    try {
+      File all = work.resolve("all.manifest").toFile();
+      writeManifest(all, roots);
+
+      List<Process> processes = new ArrayList<>();
+      List<File> snapshots = new ArrayList<>();
+      List<File> logs = new ArrayList<>();
+      for (int index = 0; index < shards.size(); index++) {
+        File manifest = work.resolve("shard-" + index + ".manifest").toFile();
+        File snapshot = work.resolve("shard-" + index + ".snapshot").toFile();
+        File log = work.resolve("shard-" + index + ".log").toFile();
+        writeManifest(manifest, shards.get(index));
+        processes.add(start(manifest, all, snapshot, log));
+        snapshots.add(snapshot);
+        logs.add(log);
+      }
+
+      List<ShardSnapshot> results = new ArrayList<>();
+      for (int index = 0; index < processes.size(); index++) {
+        int exit = waitFor(processes.get(index));
+        if (exit != 0) {
+          for (Process process : processes) {
+            process.destroy();
+          }
+          throw new RuntimeException("Shard " + index + " failed with exit code " + exit + ":\n"
+              + readLog(logs.get(index)));
+        }
+        System.out.println("Shard " + index + " done.");
+        results.add(ShardSnapshot.read(snapshots.get(index)));
+      }
+
+      RenderZomboid renderer = new RenderZomboid(outDir);
+      renderer.render(ShardSnapshot.merge(results));
+    } finally {
+      delete(work);
+    }
+  }
+
+  /**
+   * Spreads the packages over the shards, largest first, each to the shard with the fewest roots.
+   * Ties go to the lower shard, and roots are sorted, so the split only depends on the set of
+   * roots.
+   *
+   * @return The roots of each shard that got any.
+   */
+  static List<List<String>> partition(List<String> roots, int count) {
+    Map<String, List<String>> packages = new TreeMap<>();
+    for (String root : new TreeSet<>(roots)) {
+      int index = root.lastIndexOf('.');
+      String packageName = index != -1 ? root.substring(0, index) : "";
+      packages.computeIfAbsent(packageName, key -> new ArrayList<>()).add(root);
+    }
+    List<List<String>> sorted = new ArrayList<>(packages.values());
+    sorted.sort(Comparator.comparingInt((List<String> list) -> list.size()).reversed());
+
+    List<List<String>> shards = new ArrayList<>();
+    for (int index = 0; index < Math.min(count, sorted.size()); index++) {
+      shards.add(new ArrayList<>());
+    }
+    for (List<String> classNames : sorted) {
+      List<String> smallest = shards.get(0);
+      for (List<String> shard : shards) {
+        if (shard.size() < smallest.size()) {
+          smallest = shard;
+        }
+      }
+      smallest.addAll(classNames);
+    }
+    return shards;
+  }
+
+  private Process start(File manifest, File all, File snapshot, File log) {
+    List<String> command = new ArrayList<>();
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+    command.addAll(jvmArgs);
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(PipeWrench.class.getName());
+    command.add(COMMAND);
+    command.add("--roots");
+    command.add(manifest.getPath());
+    command.add("--all");
+    command.add(all.getPath());
+    command.add("--out");
+    command.add(snapshot.getPath());
+    try {
+      return new ProcessBuilder(command)
+          .redirectErrorStream(true)
+          .redirectOutput(log)
+          .start();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to start shard: " + manifest, e);
+    }
+  }
+
+  private static int waitFor(Process process) {
+    try {
+      return process.waitFor();
+    } catch (InterruptedException e) {
+      process.destroy();
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Runs one shard: walks the roots, treats the other roots as declared elsewhere, and writes the
+   * compiled output as a {@link ShardSnapshot}.
+   *
+   * @param roots The manifest of the shard's own roots.
+   * @param all The manifest of every shard's roots.
+   */
+  public static void work(File roots, File all, File out) {
+    ClassManifest own = readManifest(roots);
+    Set<String> external = new HashSet<>(readManifest(all).getEntries());
+    external.removeAll(own.getEntries());
+
+    TypeScriptCompiler compiler =
+        RenderZomboid.newCompiler(RenderZomboid.newSettings(), own, null, null);
+    compiler.addExternal(external);
+    compiler.walk();
+    ShardSnapshot.of(compiler).write(out);
+  }
+
+  private static ClassManifest readManifest(File file) {
+    try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      return ClassManifest.parse(reader);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read class manifest: " + file, e);
+    }
+  }
+
+  private static void writeManifest(File file, List<String> classNames) {
+    try {
+      Files.write(file.toPath(), classNames, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write class manifest: " + file, e);
+    }
+  }
+
+  private static String readLog(File log) {
+    try {
+      return Files.readString(log.toPath(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      return "(no log: " + e.getMessage() + ")";
+    }
+  }
+
+  private static void delete(Path root) {
+    try (Stream<Path> stream = Files.walk(root)) {
+      stream.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    } catch (IOException e) {
+      System.out.println("Failed to delete " + root + ": " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package com.asledgehammer.pipewrench;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Defines the classes that are byte-for-byte identical in every game version, so that each is
+ * loaded and reflected once and seen as the same class by every version's loader. Any other class
+ * is not found here and falls through to the version's own loader.
+ */
+class SharedClassLoader extends ClassLoader implements Closeable {
+
+  static {
+    registerAsParallelCapable();
+  }
+
+  /**
+   * Where each shared class is read from, by binary name.
+   */
+  private final Map<String, GameVersions.ClassFile> classes;
+  private final ClassFileReader reader = new ClassFileReader();
+
+  SharedClassLoader(Map<String, GameVersions.ClassFile> classes) {
+    super("pipewrench-shared", ClassLoader.getPlatformClassLoader());
+    this.classes = classes;
+  }
+
+  @Override
+  protected Class<?> findClass(String name) throws ClassNotFoundException {
+    GameVersions.ClassFile classFile = classes.get(name);
+    if (classFile == null) {
+      throw new ClassNotFoundException(name);
+    }
+    byte[] bytes;
+    try {
+      bytes = reader.read(classFile);
+    } catch (IOException e) {
+      throw new ClassNotFoundException(name, e);
+    }
+    return defineClass(name, bytes, 0, bytes.length);
+  }
+
+  int size() {
+    return classes.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+}
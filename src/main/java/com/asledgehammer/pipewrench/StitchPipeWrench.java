@@ -1,217 +1,337 @@
 package com.asledgehammer.pipewrench;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Scanner;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 public class StitchPipeWrench {
 
+  /**
+   * Fingerprints of the partials consumed by the last stitch, kept next to the outputs.
+   */
+  static final String STATE_NAME = ".pipewrench-stitch";
+
   private final String moduleName;
-  private final String targetDir;
+  private final OutputTarget output;
+
+  /**
+   * Scanned partials by file name, reused across stitches by this instance while their hash holds.
+   */
+  private final Map<String, CachedPartial> cache = new ConcurrentHashMap<>();
 
   public StitchPipeWrench(String moduleName, String targetDir) {
+    this(moduleName, new FileOutputTarget(new File(targetDir)));
+  }
+
+  public StitchPipeWrench(String moduleName, OutputTarget output) {
     this.moduleName = moduleName;
-    this.targetDir = targetDir;
+    this.output = output;
   }
 
+  /**
+   * Rebuilds the outputs whose partials changed since the last stitch. A partial whose size and
+   * modification time match its stored fingerprint is not read at all, and one that is read is
+   * only treated as changed if its hash differs.
+   */
   public void stitch() {
 
-    File[] files = new File(targetDir).listFiles();
-    if (files == null || files.length == 0) {
+    List<String> files = output.list();
+    if (files.isEmpty()) {
       System.err.println("No partial files to stitch.");
-      System.exit(0);
+      return;
     }
 
-    stitchAPI(files);
-    stitchReference(files);
-    stitchInterface(files);
-  }
+    State previous = files.contains(STATE_NAME) ? readState() : new State();
 
-  private void stitchAPI(File[] files) {
-    System.out.println("## Stitching API:");
-
-    StringBuilder builder = new StringBuilder();
-    builder.append("/** @noResolution @noSelfInFile */\n");
-    builder.append("/// <reference path=\"reference.d.ts\" />\n\n");
-    builder.append("declare module '").append(moduleName).append("' {\n");
-
-    for (File file : files) {
-      String fileName = file.getName();
-      String fileNameLower = fileName.toLowerCase();
-
-      // Make sure the file is an API partial.
-      if (!fileNameLower.endsWith(".api.partial.d.ts")) {
-        continue;
+    List<String> partialNames = new ArrayList<>();
+    for (String fileName : files) {
+      if (getCommentPrefix(fileName) != null) {
+        partialNames.add(fileName);
       }
-      System.out.println("\tStitching file: " + file.getName() + "..");
+    }
 
-      List<String> lines = getPartialFromTSFile(file);
-      if (lines.isEmpty()) {
-        System.out.println("\t\tNo line(s) to stitch.");
-        continue;
-      }
+    Map<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+    partialNames.parallelStream().forEach(fileName ->
+        fingerprints.put(fileName, fingerprint(fileName, previous.partials.get(fileName))));
 
-      String comment = "// [PARTIAL] : " + file.getName() + " //\n";
-      String border = "//" + "/".repeat(comment.length() - 5) + "//\n";
+    Set<String> changed = new HashSet<>();
+    for (String fileName : partialNames) {
+      Fingerprint last = previous.partials.get(fileName);
+      if (last == null || !last.hash.equals(fingerprints.get(fileName).hash)) {
+        changed.add(fileName);
+      }
+    }
 
-      builder.append('\n').append(border).append(comment).append(border).append('\n');
+    State state = new State();
+    state.partials.putAll(fingerprints);
+    String apiName = moduleName + ".d.ts";
+    String referenceName = "reference.d.ts";
+    String interfaceName = moduleName + ".lua";
+    state.outputs.put(apiName, filter(partialNames, ".api.partial.d.ts"));
+    state.outputs.put(referenceName, filter(partialNames, ".reference.partial.d.ts"));
+    state.outputs.put(interfaceName, filter(partialNames, ".interface.partial.lua"));
+
+    boolean api = isDirty(apiName, files, previous, state, changed);
+    boolean reference = isDirty(referenceName, files, previous, state, changed);
+    boolean lua = isDirty(interfaceName, files, previous, state, changed);
+
+    if (api) {
+      stitchAPI(getPartials(state.outputs.get(apiName), fingerprints));
+    }
+    if (reference) {
+      stitchReference(getPartials(state.outputs.get(referenceName), fingerprints));
+    }
+    if (lua) {
+      stitchInterface(getPartials(state.outputs.get(interfaceName), fingerprints));
+    }
 
-      for (String line : lines) {
-        builder.append(line).append('\n');
+    if (!api && !reference && !lua) {
+      System.out.println("Nothing to stitch. All outputs are up to date.");
+      if (state.partials.equals(previous.partials)) {
+        return;
       }
     }
 
-    builder.append("}\n");
-
-    File file = new File(targetDir, moduleName + ".d.ts");
-    write(file, builder);
+    writeState(state);
+    output.finish();
+  }
 
-    System.out.println("\n");
+  private static boolean isDirty(
+      String outputName, List<String> files, State previous, State state, Set<String> changed) {
+    if (!files.contains(outputName)) {
+      return true;
+    }
+    List<String> inputs = state.outputs.get(outputName);
+    if (!inputs.equals(previous.outputs.get(outputName))) {
+      return true;
+    }
+    for (String input : inputs) {
+      if (changed.contains(input)) {
+        return true;
+      }
+    }
+    return false;
   }
 
-  private void stitchReference(File[] files) {
-    System.out.println("## Stitching Reference:");
+  private Fingerprint fingerprint(String fileName, Fingerprint last) {
+    OutputTarget.Stamp stamp;
+    try {
+      stamp = output.stamp(fileName);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read file: " + fileName, e);
+    }
+    if (stamp != null
+        && last != null
+        && last.size == stamp.size()
+        && last.lastModified == stamp.lastModified()) {
+      return last;
+    }
 
-    StringBuilder builder = new StringBuilder();
+    byte[] content = read(fileName);
+    String hash = FileOutputTarget.toHex(FileOutputTarget.newDigest().digest(content));
+    CachedPartial cached = cache.get(fileName);
+    if (cached == null || !cached.hash.equals(hash)) {
+      cache.put(fileName, new CachedPartial(hash,
+          Partial.scan(fileName, content, getCommentPrefix(fileName))));
+    }
+    return stamp != null
+        ? new Fingerprint(stamp.size(), stamp.lastModified(), hash)
+        : new Fingerprint(content.length, -1L, hash);
+  }
 
-    for (File file : files) {
-      String fileName = file.getName();
-      String fileNameLower = fileName.toLowerCase();
+  /**
+   * Returns the scanned partials in order, reading and scanning in parallel only the ones that are
+   * not cached with a matching hash.
+   */
+  private List<Partial> getPartials(List<String> fileNames, Map<String, Fingerprint> fingerprints) {
+    return fileNames.parallelStream()
+        .map(fileName -> {
+          String hash = fingerprints.get(fileName).hash;
+          CachedPartial cached = cache.get(fileName);
+          if (cached != null && cached.hash.equals(hash)) {
+            return cached.partial;
+          }
+          Partial partial = Partial.scan(fileName, read(fileName), getCommentPrefix(fileName));
+          cache.put(fileName, new CachedPartial(hash, partial));
+          return partial;
+        })
+        .collect(Collectors.toList());
+  }
 
-      // Make sure the file is an API partial.
-      if (!fileNameLower.endsWith(".reference.partial.d.ts")) {
-        continue;
+  private static List<String> filter(List<String> fileNames, String suffix) {
+    List<String> list = new ArrayList<>();
+    for (String fileName : fileNames) {
+      if (fileName.toLowerCase().endsWith(suffix)) {
+        list.add(fileName);
       }
-      System.out.println("\tStitching file: " + file.getName() + "..");
+    }
+    return list;
+  }
 
-      List<String> lines = getPartialFromTSFile(file);
-      if (lines.isEmpty()) {
-        System.out.println("\t\tNo line(s) to stitch.");
-        continue;
+  private State readState() {
+    State state = new State();
+    String content = new String(read(STATE_NAME), StandardCharsets.UTF_8);
+    try {
+      for (String line : content.split("\n")) {
+        String[] split = line.split("\t");
+        if (split.length == 5 && split[0].equals("partial")) {
+          state.partials.put(split[4],
+              new Fingerprint(Long.parseLong(split[1]), Long.parseLong(split[2]), split[3]));
+        } else if (split.length >= 2 && split[0].equals("output")) {
+          state.outputs.put(split[1], List.of(split).subList(2, split.length));
+        }
       }
+    } catch (NumberFormatException e) {
+      // A damaged state only costs a full stitch.
+      return new State();
+    }
+    return state;
+  }
 
-      String comment = "// [PARTIAL] : " + file.getName() + " //\n";
-      String border = "//" + "/".repeat(comment.length() - 5) + "//\n";
+  private void writeState(State state) {
+    output.write(STATE_NAME, writer -> {
+      for (String fileName : new TreeSet<>(state.partials.keySet())) {
+        Fingerprint fingerprint = state.partials.get(fileName);
+        writer.write("partial\t" + fingerprint.size + "\t" + fingerprint.lastModified + "\t"
+            + fingerprint.hash + "\t" + fileName + "\n");
+      }
+      for (String outputName : new TreeSet<>(state.outputs.keySet())) {
+        writer.write("output\t" + outputName);
+        for (String input : state.outputs.get(outputName)) {
+          writer.write("\t" + input);
+        }
+        writer.write("\n");
+      }
+    });
+  }
 
-      builder.append('\n').append(border).append(comment).append(border).append('\n');
+  private void stitchAPI(List<Partial> partials) {
+    System.out.println("## Stitching API:");
 
-      for (String line : lines) {
-        builder.append(line).append('\n');
+    output.write(moduleName + ".d.ts", writer -> {
+      writer.write("/** @noResolution @noSelfInFile */\n");
+      writer.write("/// <reference path=\"reference.d.ts\" />\n\n");
+      writer.write("declare module '" + moduleName + "' {\n");
+      for (Partial partial : partials) {
+        // Make sure the file is an API partial.
+        if (partial.name().toLowerCase().endsWith(".api.partial.d.ts")) {
+          writePartial(writer, partial, '/');
+        }
       }
-    }
+      writer.write("}\n");
+    });
 
-    File file = new File(targetDir, "reference.d.ts");
-    write(file, builder);
     System.out.println("\n");
   }
 
-  private void stitchInterface(File[] files) {
-    System.out.println("## Stitching Interface:");
-
-    StringBuilder builder = new StringBuilder();
+  private void stitchReference(List<Partial> partials) {
+    System.out.println("## Stitching Reference:");
 
-    builder.append("local Exports = {}\n");
+    output.write("reference.d.ts", writer -> {
+      for (Partial partial : partials) {
+        // Make sure the file is a reference partial.
+        if (partial.name().toLowerCase().endsWith(".reference.partial.d.ts")) {
+          writePartial(writer, partial, '/');
+        }
+      }
+    });
 
-    for (File file : files) {
-      String fileName = file.getName();
-      String fileNameLower = fileName.toLowerCase();
+    System.out.println("\n");
+  }
 
-      // Make sure the file is an API partial.
-      if (!fileNameLower.endsWith(".interface.partial.lua")) {
-        continue;
-      }
-      System.out.println("\tStitching file: " + file.getName() + "..");
+  private void stitchInterface(List<Partial> partials) {
+    System.out.println("## Stitching Interface:");
 
-      List<String> lines = getPartialFromLuaFile(file);
-      if (lines.isEmpty()) {
-        System.out.println("\t\tNo line(s) to stitch.");
-        continue;
+    output.write(moduleName + ".lua", writer -> {
+      writer.write("local Exports = {}\n");
+      for (Partial partial : partials) {
+        // Make sure the file is an interface partial.
+        if (partial.name().toLowerCase().endsWith(".interface.partial.lua")) {
+          writePartial(writer, partial, '-');
+        }
       }
+      writer.write("return Exports");
+    });
 
-      String comment = "-- [PARTIAL] : " + file.getName() + " --\n";
-      String border = "--" + "-".repeat(comment.length() - 5) + "--\n";
-      builder.append('\n').append(border).append(comment).append(border).append('\n');
+    System.out.println("\n");
+  }
 
-      for (String line : lines) {
-        builder.append(line).append('\n');
-      }
+  private static void writePartial(Writer writer, Partial partial, char commentChar)
+      throws IOException {
+    System.out.println("\tStitching file: " + partial.name() + "..");
+    if (partial.isEmpty()) {
+      System.out.println("\t\tNo line(s) to stitch.");
+      return;
     }
 
-    builder.append("return Exports");
-
-    File file = new File(targetDir, moduleName + ".lua");
-    write(file, builder);
+    String token = "" + commentChar + commentChar;
+    String comment = token + " [PARTIAL] : " + partial.name() + " " + token + "\n";
+    String border =
+        token + String.valueOf(commentChar).repeat(comment.length() - 5) + token + "\n";
+
+    writer.write('\n');
+    writer.write(border);
+    writer.write(comment);
+    writer.write(border);
+    writer.write('\n');
+    partial.writeTo(writer);
+  }
 
-    System.out.println("\n");
+  /**
+   * @return '//' for TypeScript partials, '--' for Lua partials and null for anything else.
+   */
+  private static String getCommentPrefix(String fileName) {
+    String fileNameLower = fileName.toLowerCase();
+    if (fileNameLower.endsWith(".api.partial.d.ts")
+        || fileNameLower.endsWith(".reference.partial.d.ts")) {
+      return "//";
+    } else if (fileNameLower.endsWith(".interface.partial.lua")) {
+      return "--";
+    }
+    return null;
   }
 
-  private static void write(File file, StringBuilder builder) {
+  private byte[] read(String path) {
     try {
-      FileWriter writer = new FileWriter(file);
-      writer.write(builder.toString());
-      writer.flush();
-      writer.close();
+      return output.read(path);
     } catch (IOException e) {
-      e.printStackTrace();
+      throw new UncheckedIOException("Failed to read file: " + path, e);
     }
   }
 
   public static List<String> getPartialFromTSFile(File file) {
-    List<String> lines = new ArrayList<>();
-    try {
-      Scanner scanner = new Scanner(file);
-      boolean in = false;
-      while (scanner.hasNextLine()) {
-        String line = scanner.nextLine();
-        String lineLower = line.toLowerCase();
-        if (line.trim().startsWith("//")) {
-          if (lineLower.contains("[partial:start]")) {
-            in = true;
-          } else if (lineLower.contains("[partial:stop]")) {
-            in = false;
-          } else if (in) {
-            lines.add(line);
-          }
-        } else if (in) {
-          lines.add(line);
-        }
-      }
-      scanner.close();
-    } catch (FileNotFoundException e) {
-      throw new RuntimeException(e);
-    }
-    return lines;
+    return getPartial(file, "//");
   }
 
   public static List<String> getPartialFromLuaFile(File file) {
-    List<String> lines = new ArrayList<>();
+    return getPartial(file, "--");
+  }
+
+  private static List<String> getPartial(File file, String commentPrefix) {
     try {
-      Scanner scanner = new Scanner(file);
-      boolean in = false;
-      while (scanner.hasNextLine()) {
-        String line = scanner.nextLine();
-        String lineLower = line.toLowerCase();
-        if (line.trim().startsWith("--")) {
-          if (lineLower.contains("[partial:start]")) {
-            in = true;
-          } else if (lineLower.contains("[partial:stop]")) {
-            in = false;
-          } else if (in) {
-            lines.add(line);
-          }
-        } else if (in) {
-          lines.add(line);
-        }
-      }
-      scanner.close();
-    } catch (FileNotFoundException e) {
+      byte[] content = Files.readAllBytes(file.toPath());
+      return Partial.scan(file.getName(), content, commentPrefix).getLines();
+    } catch (IOException e) {
       throw new RuntimeException(e);
     }
-    return lines;
+  }
+
+  private record Fingerprint(long size, long lastModified, String hash) {
+  }
+
+  private record CachedPartial(String hash, Partial partial) {
+  }
+
+  private static class State {
+
+    private final Map<String, Fingerprint> partials = new HashMap<>();
+    private final Map<String, List<String>> outputs = new HashMap<>();
   }
 
   public static void main(String[] args) {
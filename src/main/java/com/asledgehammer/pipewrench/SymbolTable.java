@@ -0,0 +1,131 @@
+package com.asledgehammer.pipewrench;
+
+import com.asledgehammer.typescript.type.TypeScriptElement;
+import com.asledgehammer.typescript.type.TypeScriptType;
+
+import java.util.*;
+
+/**
+ * Maps the simple names exported by the API partial to the generated elements that claim them.
+ * When several elements share a simple name, the last one in graph order is exported and the rest
+ * are kept as collisions so that they can be reported.
+ */
+public class SymbolTable {
+
+  /**
+   * A generated element as the partials see it, so that a table can also be built from a
+   * {@link ShardSnapshot}.
+   *
+   * @param name The element's name, which is the Lua global for classes and enums.
+   * @param type True for a plain type, false for a declared class or enum.
+   */
+  public record Symbol(
+      String className, String simpleName, String name, boolean type, int typeParameters) {
+
+    /**
+     * @return The symbol, or null if the element has no class.
+     */
+    public static Symbol of(TypeScriptElement element) {
+      Class<?> clazz = element.getClazz();
+      if (clazz == null) {
+        return null;
+      }
+      return new Symbol(clazz.getName(), getSimpleName(element), element.getName(),
+          element instanceof TypeScriptType, clazz.getTypeParameters().length);
+    }
+  }
+
+  private final Map<String, List<Symbol>> symbols = new TreeMap<>();
+
+  /**
+   * Builds the table in a single pass.
+   *
+   * @param symbols The symbols in graph order.
+   */
+  public SymbolTable(List<Symbol> symbols) {
+    for (Symbol symbol : symbols) {
+      this.symbols.computeIfAbsent(symbol.simpleName(), name -> new ArrayList<>(1)).add(symbol);
+    }
+  }
+
+  /**
+   * Builds the table from walked elements. Elements without a class are skipped.
+   */
+  public static SymbolTable of(List<TypeScriptElement> elements) {
+    List<Symbol> symbols = new ArrayList<>(elements.size());
+    for (TypeScriptElement element : elements) {
+      Symbol symbol = Symbol.of(element);
+      if (symbol != null) {
+        symbols.add(symbol);
+      }
+    }
+    return new SymbolTable(symbols);
+  }
+
+  public Symbol get(String name) {
+    List<Symbol> list = symbols.get(name);
+    return list != null ? list.get(list.size() - 1) : null;
+  }
+
+  /**
+   * @return Every element claiming the name, in graph order.
+   */
+  public List<Symbol> getAll(String name) {
+    List<Symbol> list = symbols.get(name);
+    return list != null ? Collections.unmodifiableList(list) : Collections.emptyList();
+  }
+
+  /**
+   * @return The sorted simple names.
+   */
+  public Set<String> getNames() {
+    return Collections.unmodifiableSet(symbols.keySet());
+  }
+
+  /**
+   * @return The exported element for every name, sorted by name.
+   */
+  public List<Symbol> getExported() {
+    List<Symbol> list = new ArrayList<>(symbols.size());
+    for (String name : symbols.keySet()) {
+      list.add(get(name));
+    }
+    return list;
+  }
+
+  /**
+   * @return One line per shared simple name, naming the exported class and the dropped ones.
+   */
+  public List<String> getCollisions() {
+    List<String> lines = new ArrayList<>();
+    for (Map.Entry<String, List<Symbol>> entry : symbols.entrySet()) {
+      List<Symbol> list = entry.getValue();
+      if (list.size() < 2) {
+        continue;
+      }
+      StringBuilder line = new StringBuilder(entry.getKey());
+      line.append(": exported ").append(list.get(list.size() - 1).className());
+      line.append(", dropped ");
+      for (int index = 0; index < list.size() - 1; index++) {
+        if (index != 0) {
+          line.append(", ");
+        }
+        line.append(list.get(index).className());
+      }
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  /**
+   * @return The class' simple name, without any enclosing class names.
+   */
+  public static String getSimpleName(TypeScriptElement element) {
+    String name = element.getClazz().getSimpleName();
+    if (name.contains("$")) {
+      String[] split = name.split("\\$");
+      name = split[split.length - 1];
+    }
+    return name;
+  }
+}
@@ -3,7 +3,11 @@ package com.asledgehammer.typescript;
 import com.asledgehammer.typescript.settings.TypeScriptSettings;
 import com.asledgehammer.typescript.type.TypeScriptElement;
 import com.asledgehammer.typescript.type.TypeScriptNamespace;
+import com.asledgehammer.typescript.util.ClassPathIndex;
+import com.asledgehammer.typescript.util.Indent;
 
+import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -14,14 +18,53 @@ public class TypeScriptCompiler {
   final TypeScriptGraph graph;
 
   public TypeScriptCompiler(TypeScriptSettings settings) {
+    this(settings, null, null);
+  }
+
+  /**
+   * @param classLoader The loader that classes added by name, and classes referenced by name while
+   *     walking, are loaded from. If null, the thread's context class loader is used.
+   * @param index The index that package roots are listed from. If null, the index of
+   *     'java.class.path' is used.
+   */
+  public TypeScriptCompiler(
+      TypeScriptSettings settings, ClassLoader classLoader, ClassPathIndex index) {
+    this(settings, classLoader, index, null);
+  }
+
+  /**
+   * @param walkCache The walks shared with the compilers of other class loaders, such as other
+   *     game versions, or null to walk every class. See {@link TypeScriptWalkCache}.
+   */
+  public TypeScriptCompiler(TypeScriptSettings settings, ClassLoader classLoader,
+      ClassPathIndex index, TypeScriptWalkCache walkCache) {
     this.settings = settings;
-    this.graph = new TypeScriptGraph(this);
+    this.graph = new TypeScriptGraph(this, classLoader, index, walkCache);
   }
 
   public void add(Class<?>... clazzes) {
     graph.add(clazzes);
   }
 
+  /**
+   * Adds classes by their binary name, such as 'zombie.Lua.LuaManager$GlobalObject', or by package
+   * glob, such as 'zombie.iso.objects.*' or 'zombie.radio.**'. They are loaded when the walk
+   * reaches them, and names that cannot be loaded are reported and skipped.
+   */
+  public void addByName(String... classNames) {
+    graph.addByName(classNames);
+  }
+
+  /**
+   * Adds every top-level class of a package. The classes are listed from the jar entries on the
+   * class path, and are not loaded until the walk reaches them.
+   *
+   * @param recursive True to include the classes of sub-packages.
+   */
+  public void addPackage(String packageName, boolean recursive) {
+    graph.addPackage(packageName, recursive);
+  }
+
   public Map<TypeScriptNamespace, String> compileNamespacesSeparately(String prefix) {
     return graph.compileNamespacesSeparately(prefix);
   }
@@ -30,12 +73,52 @@ public class TypeScriptCompiler {
     return graph.compile(prefix);
   }
 
+  public void compile(Appendable out, Indent indent) throws IOException {
+    graph.compile(out, indent);
+  }
+
+  public List<TypeScriptNamespace> getCompilableNamespaces() {
+    return graph.getCompilableNamespaces();
+  }
+
+  /**
+   * @see TypeScriptGraph#getCompilableNamespaces(int)
+   */
+  public List<TypeScriptNamespace> getCompilableNamespaces(int sinceRevision) {
+    return graph.getCompilableNamespaces(sinceRevision);
+  }
+
+  /**
+   * @see TypeScriptGraph#addReachable(Collection)
+   */
+  public void addReachable(Collection<String> classNames) {
+    graph.addReachable(classNames);
+  }
+
+  /**
+   * @see TypeScriptGraph#addExternal(Collection)
+   */
+  public void addExternal(Collection<String> classNames) {
+    graph.addExternal(classNames);
+  }
+
   public void walk() {
     if (!graph.isReadOnly()) {
       graph.walk();
     }
   }
 
+  /**
+   * Lets classes be added after a walk. See {@link TypeScriptGraph#reopen()}.
+   */
+  public void reopen() {
+    graph.reopen();
+  }
+
+  public int getRevision() {
+    return graph.getRevision();
+  }
+
   public TypeScriptSettings getSettings() {
     return settings;
   }
@@ -44,6 +127,21 @@ public class TypeScriptCompiler {
     return graph.resolve(clazz.getName());
   }
 
+  /**
+   * Resolves a class by its binary name, without referring to it from the caller's class loader.
+   */
+  public TypeScriptElement resolve(String className) {
+    return graph.resolve(className);
+  }
+
+  public ClassLoader getClassLoader() {
+    return graph.getClassLoader();
+  }
+
+  public ClassPathIndex getClassPathIndex() {
+    return graph.getClassPathIndex();
+  }
+
   public List<Class<?>> getAllDeclaredClasses() {
     return graph.getAllDeclaredClasses();
   }
@@ -55,4 +153,18 @@ public class TypeScriptCompiler {
   public List<TypeScriptElement> getAllGeneratedElements() {
     return graph.getAllGeneratedElements();
   }
+
+  /**
+   * @return Every namespace holding elements, by full path.
+   */
+  public Map<String, TypeScriptNamespace> getAllPopulatedNamespaces() {
+    return graph.getAllPopulatedNamespaces();
+  }
+
+  /**
+   * @return One line per parameter slot that was collapsed by the union width policy, sorted.
+   */
+  public List<String> getCollapsedUnions() {
+    return graph.getCollapsedUnions();
+  }
 }
@@ -2,24 +2,74 @@ package com.asledgehammer.typescript;
 
 import com.asledgehammer.typescript.type.TypeScriptElement;
 import com.asledgehammer.typescript.type.TypeScriptNamespace;
+import com.asledgehammer.typescript.type.TypeScriptOverloadSet;
+import com.asledgehammer.typescript.util.ClassPathIndex;
+import com.asledgehammer.typescript.util.CompileCache;
+import com.asledgehammer.typescript.util.Indent;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 public class TypeScriptGraph {
 
-  final Map<String, TypeScriptNamespace> namespaces = new HashMap<>();
+  final Map<String, TypeScriptNamespace> namespaces = new TreeMap<>();
   final List<Class<?>> knownClasses = new ArrayList<>();
+  private final Set<String> rootNames = new HashSet<>();
+  private final Set<String> externalNames = new HashSet<>();
+  private final TreeMap<String, List<String>> pendingRoots = new TreeMap<>();
+  private final Map<String, String> internedTypes = new HashMap<>();
+  private final List<String> collapsedUnions = new ArrayList<>();
+  private final List<TypeScriptOverloadSet> pendingSupertypes = new ArrayList<>();
   private final TypeScriptCompiler compiler;
+  private final ClassLoader classLoader;
+  private final CompileCache compileCache;
+  private final TypeScriptWalkCache walkCache;
+  private ClassPathIndex index;
+  /**
+   * The classes added while an element is walked, or null if no walk is being recorded.
+   */
+  private List<Class<?>> recorded;
+  private boolean recordedCollapse = false;
   private boolean readOnly = false;
   private boolean addedWhileWalking = false;
   private boolean walking = false;
+  private int revision = 0;
 
   public List<Class<?>> getAllKnownClasses() {
     return knownClasses;
   }
 
   public TypeScriptGraph(TypeScriptCompiler compiler) {
+    this(compiler, null, null, null);
+  }
+
+  public TypeScriptGraph(
+      TypeScriptCompiler compiler, ClassLoader classLoader, ClassPathIndex index) {
+    this(compiler, classLoader, index, null);
+  }
+
+  /**
+   * @param walkCache The walks shared with other graphs, or null to walk every class here.
+   */
+  public TypeScriptGraph(TypeScriptCompiler compiler, ClassLoader classLoader,
+      ClassPathIndex index, TypeScriptWalkCache walkCache) {
     this.compiler = compiler;
+    if (classLoader == null) {
+      classLoader = Thread.currentThread().getContextClassLoader();
+    }
+    if (classLoader == null) {
+      classLoader = TypeScriptGraph.class.getClassLoader();
+    }
+    this.classLoader = classLoader;
+    this.index = index;
+    this.walkCache = walkCache;
+    if (walkCache != null) {
+      walkCache.check(compiler.getSettings());
+      this.compileCache = walkCache.getCompileCache();
+    } else {
+      this.compileCache = new CompileCache(compiler.getSettings());
+    }
   }
 
   private static boolean isIllegalName(String name) {
@@ -41,35 +91,41 @@ public class TypeScriptGraph {
   }
 
   public String compile(String prefix) {
-
-    Map<String, TypeScriptNamespace> namespaces = getAllPopulatedNamespaces();
     StringBuilder builder = new StringBuilder();
-    List<String> names = new ArrayList<>(namespaces.keySet());
-    names.sort(Comparator.naturalOrder());
+    try {
+      compile(builder, Indent.of(prefix));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return builder.toString();
+  }
 
-    for (String key : names) {
-      if (isIllegalName(key)) {
-        continue;
-      }
-      TypeScriptNamespace namespace = namespaces.get(key);
-      if (namespace.getName().isEmpty()) {
+  public void compile(Appendable out, Indent indent) throws IOException {
+    for (TypeScriptNamespace namespace : getCompilableNamespaces()) {
+      if (!namespace.hasValidElements()) {
         continue;
       }
-      String compiled = namespace.compile(prefix);
-      if (compiled.isEmpty()) {
-        continue;
-      }
-      builder.append(compiled).append('\n');
+      namespace.compile(out, indent);
+      out.append('\n');
     }
-
-    return builder.toString();
   }
 
   public Map<TypeScriptNamespace, String> compileNamespacesSeparately(String prefix) {
-    Map<TypeScriptNamespace, String> compiledMap = new HashMap<>();
+    Map<TypeScriptNamespace, String> compiledMap = new LinkedHashMap<>();
+    for (TypeScriptNamespace namespace : getCompilableNamespaces()) {
+      compiledMap.put(namespace, namespace.compile(prefix));
+    }
+    return compiledMap;
+  }
+
+  /**
+   * @return The populated namespaces that can be emitted, sorted by their full path.
+   */
+  public List<TypeScriptNamespace> getCompilableNamespaces() {
     Map<String, TypeScriptNamespace> namespaces = getAllPopulatedNamespaces();
     List<String> names = new ArrayList<>(namespaces.keySet());
     names.sort(Comparator.naturalOrder());
+    List<TypeScriptNamespace> list = new ArrayList<>();
     for (String key : names) {
       if (isIllegalName(key)) {
         continue;
@@ -78,10 +134,9 @@ public class TypeScriptGraph {
       if (namespace.getName().isEmpty()) {
         continue;
       }
-      String compiled = namespace.compile(prefix);
-      compiledMap.put(namespace, compiled);
+      list.add(namespace);
     }
-    return compiledMap;
+    return list;
   }
 
   public void walk() {
@@ -92,13 +147,142 @@ public class TypeScriptGraph {
     walking = true;
     do {
       addedWhileWalking = false;
+      loadNextPendingPackage();
       for (TypeScriptNamespace namespace : new ArrayList<>(namespaces.values())) {
         namespace.walk(this);
       }
-    } while (addedWhileWalking);
+    } while (addedWhileWalking || !pendingRoots.isEmpty());
+
+    // Supertypes are picked from the final set of known classes, so that they do not depend on
+    // the order of the walk.
+    Set<Class<?>> known = new HashSet<>(knownClasses);
+    for (TypeScriptOverloadSet overloads : pendingSupertypes) {
+      overloads.collapseToSupertypes(this, known);
+    }
+    pendingSupertypes.clear();
 
     walking = false;
     readOnly = true;
+    revision++;
+  }
+
+  /**
+   * Accepts new classes after a walk. The next walk only walks what was added since, as elements
+   * that were walked before are skipped, and namespaces that gain elements are stamped with the
+   * next revision so that only those have to be compiled again.
+   */
+  public void reopen() {
+    if (walking) {
+      throw new RuntimeException("Cannot reopen while walking.");
+    }
+    readOnly = false;
+  }
+
+  /**
+   * @return The namespaces that can be emitted and that gained elements at or after the revision,
+   *     sorted by their full path. Revision 0 returns every namespace.
+   */
+  public List<TypeScriptNamespace> getCompilableNamespaces(int sinceRevision) {
+    List<TypeScriptNamespace> list = new ArrayList<>();
+    for (TypeScriptNamespace namespace : getCompilableNamespaces()) {
+      if (namespace.getRevision() >= sinceRevision) {
+        list.add(namespace);
+      }
+    }
+    return list;
+  }
+
+  /**
+   * Adds classes by their binary name. A name ending with '.*' adds every class in the package and
+   * one ending with '.**' adds its sub-packages as well.
+   */
+  public void addByName(String... classNames) {
+    for (String className : classNames) {
+      if (className.endsWith(".**")) {
+        addPackage(className.substring(0, className.length() - 3), true);
+      } else if (className.endsWith(".*")) {
+        addPackage(className.substring(0, className.length() - 2), false);
+      } else {
+        addRoot(className);
+      }
+    }
+  }
+
+  /**
+   * Adds the top-level classes of a package, listed from the class path index without loading
+   * them.
+   *
+   * @param recursive True to include the classes of sub-packages.
+   */
+  public void addPackage(String packageName, boolean recursive) {
+    List<String> classNames = getClassPathIndex().getClasses(packageName, recursive);
+    if (classNames.isEmpty()) {
+      System.out.println("No classes in package: " + packageName + (recursive ? ".**" : ".*"));
+    }
+    for (String className : classNames) {
+      addRoot(className);
+    }
+  }
+
+  private void addRoot(String className) {
+    if (readOnly) {
+      throw new RuntimeException("Cannot add classes when in read-only mode.");
+    }
+    if (rootNames.add(className)) {
+      int index = className.lastIndexOf('.');
+      String packageName = index != -1 ? className.substring(0, index) : "";
+      pendingRoots.computeIfAbsent(packageName, key -> new ArrayList<>()).add(className);
+    }
+  }
+
+  /**
+   * Loads the roots of one package, without initializing them, so that the walk only loads roots
+   * as it reaches them. A root referenced earlier by a walked class is already declared.
+   */
+  private void loadNextPendingPackage() {
+    Map.Entry<String, List<String>> entry = pendingRoots.pollFirstEntry();
+    if (entry == null) {
+      return;
+    }
+    for (String className : entry.getValue()) {
+      try {
+        add(Class.forName(className, false, classLoader));
+      } catch (ClassNotFoundException | LinkageError e) {
+        System.out.println("Class not found: " + className);
+        // Forget the root so that adding it again to a reopened graph retries it, as the class may
+        // be loadable by then.
+        rootNames.remove(className);
+      }
+    }
+  }
+
+  /**
+   * @return True if the class was added as a root by name, or as reachable, so that it is declared
+   * even when it is first reached during the walk.
+   */
+  public boolean isRoot(String className) {
+    return rootNames.contains(className);
+  }
+
+  /**
+   * Lets classes be declared in full if the walk reaches them, without adding them as roots. A
+   * class that is reached is walked like a root, so the walk covers the closure of the roots over
+   * these classes.
+   */
+  public void addReachable(Collection<String> classNames) {
+    rootNames.addAll(classNames);
+  }
+
+  /**
+   * Marks classes as declared elsewhere, such as by another shard of the same API. They are
+   * referenced by name as plain types but never declared or walked here.
+   */
+  public void addExternal(Collection<String> classNames) {
+    externalNames.addAll(classNames);
+  }
+
+  public boolean isExternal(String className) {
+    return externalNames.contains(className);
   }
 
   public void add(Class<?>... clazzes) {
@@ -106,6 +290,9 @@ public class TypeScriptGraph {
       throw new RuntimeException("Cannot add classes when in read-only mode.");
     }
     for (Class<?> clazz : clazzes) {
+      if (recorded != null) {
+        recorded.add(clazz);
+      }
       if (clazz.equals(Object.class)
           || clazz.equals(Void.class)
           || clazz.equals(Character.class)
@@ -222,6 +409,56 @@ public class TypeScriptGraph {
     return map;
   }
 
+  /**
+   * Returns the shared instance of a resolved type name so that walked signatures do not each
+   * hold their own copy.
+   */
+  public String intern(String type) {
+    String interned = internedTypes.putIfAbsent(type, type);
+    return interned != null ? interned : type;
+  }
+
+  /**
+   * Collapses the slots of the overloads to supertypes once the walk is done.
+   *
+   * @see TypeScriptOverloadSet#collapseToSupertypes(TypeScriptGraph, Set)
+   */
+  public void deferSupertypeCollapse(TypeScriptOverloadSet overloads) {
+    pendingSupertypes.add(overloads);
+    recordedCollapse = true;
+  }
+
+  public void reportCollapsedUnion(String entry) {
+    collapsedUnions.add(entry);
+    recordedCollapse = true;
+  }
+
+  /**
+   * Records the classes added from here on, for the walk of one element. See {@link
+   * TypeScriptWalkCache}.
+   */
+  public void startRecording() {
+    recorded = new ArrayList<>();
+    recordedCollapse = false;
+  }
+
+  /**
+   * @return The classes added since {@link #startRecording()}, in order, or null if the walk
+   *     collapsed a union and so depends on this graph.
+   */
+  public List<Class<?>> stopRecording() {
+    List<Class<?>> list = recordedCollapse ? null : recorded;
+    recorded = null;
+    recordedCollapse = false;
+    return list;
+  }
+
+  public List<String> getCollapsedUnions() {
+    List<String> list = new ArrayList<>(collapsedUnions);
+    list.sort(Comparator.naturalOrder());
+    return list;
+  }
+
   public void set(String path, TypeScriptNamespace namespace) {
     namespaces.put(path, namespace);
   }
@@ -230,6 +467,43 @@ public class TypeScriptGraph {
     return compiler;
   }
 
+  /**
+   * @return The loader that classes named while walking are loaded from.
+   */
+  public ClassLoader getClassLoader() {
+    return classLoader;
+  }
+
+  /**
+   * @return The walks shared with other graphs, or null if every class is walked here.
+   */
+  public TypeScriptWalkCache getWalkCache() {
+    return walkCache;
+  }
+
+  /**
+   * @return The store of compiled element output, shared by every compile of this graph, and by
+   *     the other graphs of its walk cache.
+   */
+  public CompileCache getCompileCache() {
+    return compileCache;
+  }
+
+  public ClassPathIndex getClassPathIndex() {
+    if (index == null) {
+      index = ClassPathIndex.ofClassPath();
+    }
+    return index;
+  }
+
+  /**
+   * @return The number of walks completed. Namespaces changed before the first walk, or during the
+   *     walk that completes a revision, carry the revision before it.
+   */
+  public int getRevision() {
+    return revision;
+  }
+
   public boolean isReadOnly() {
     return readOnly;
   }
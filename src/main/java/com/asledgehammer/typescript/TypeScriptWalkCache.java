@@ -0,0 +1,119 @@
+package com.asledgehammer.typescript;
+
+import com.asledgehammer.typescript.settings.TypeScriptSettings;
+import com.asledgehammer.typescript.type.TypeScriptReusableElement;
+import com.asledgehammer.typescript.util.CompileCache;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Walked classes shared by the graphs of several compilers, such as one per game version. A class
+ * is walked by the first graph that reaches it, and every later graph given the same class object
+ * takes its members from that walk instead of reflecting it again. The graphs share one {@link
+ * CompileCache} as well, and the compiled output of a reused class is keyed by its walk, so it is
+ * compiled once for all of them.
+ *
+ * <p>A walk is only stored when it does not depend on the graph it was walked in: walks that
+ * collapsed a union are done again in each graph. A class object is only shared when everything it
+ * refers to is shared too, so replaying the classes its walk added grows each graph as walking it
+ * would.
+ */
+public final class TypeScriptWalkCache {
+
+  /**
+   * A walk of one class. Compiled output of the class is keyed by its walk, so walks are compared
+   * by identity.
+   */
+  public static final class Walk {
+
+    private final TypeScriptReusableElement<?> element;
+    private final List<Class<?>> added;
+
+    private Walk(TypeScriptReusableElement<?> element, List<Class<?>> added) {
+      this.element = element;
+      this.added = added;
+    }
+
+    /**
+     * @return The walked element, detached from the graph it was walked in.
+     */
+    public TypeScriptReusableElement<?> getElement() {
+      return element;
+    }
+
+    /**
+     * @return The classes the walk added to the graph, in order.
+     */
+    public List<Class<?>> getAdded() {
+      return added;
+    }
+  }
+
+  private final Map<Class<?>, Walk> walks = new HashMap<>();
+  private final CompileCache compileCache;
+  private final int settingsHash;
+  private int reuseCount;
+
+  /**
+   * @param settings The settings of every compiler the cache is given to. Its {@link
+   *     TypeScriptSettings#compileCacheLength} bounds the shared compile cache.
+   */
+  public TypeScriptWalkCache(TypeScriptSettings settings) {
+    this.compileCache = new CompileCache(settings);
+    this.settingsHash = settings.getHash();
+  }
+
+  /**
+   * @return The stored walk of the class, or null if it was not walked yet.
+   */
+  public synchronized Walk get(Class<?> clazz) {
+    Walk walk = walks.get(clazz);
+    if (walk != null) {
+      reuseCount++;
+    }
+    return walk;
+  }
+
+  /**
+   * @return The stored walk.
+   */
+  public synchronized Walk put(
+      Class<?> clazz, TypeScriptReusableElement<?> element, List<Class<?>> added) {
+    Walk walk = new Walk(element, List.copyOf(added));
+    walks.put(clazz, walk);
+    return walk;
+  }
+
+  /**
+   * @throws RuntimeException If the settings compile differently from the ones the cache was built
+   *     with.
+   */
+  void check(TypeScriptSettings settings) {
+    if (settings.getHash() != settingsHash) {
+      throw new RuntimeException("The walk cache was built for other settings.");
+    }
+  }
+
+  /**
+   * @return The store of compiled output shared by every graph using the cache.
+   */
+  public CompileCache getCompileCache() {
+    return compileCache;
+  }
+
+  /**
+   * @return The number of walks stored.
+   */
+  public synchronized int size() {
+    return walks.size();
+  }
+
+  /**
+   * @return The number of times a stored walk was reused.
+   */
+  public synchronized int getReuseCount() {
+    return reuseCount;
+  }
+}
@@ -3,6 +3,7 @@ package com.asledgehammer.typescript.settings;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 public class TypeScriptSettings {
 
@@ -13,6 +14,14 @@ public class TypeScriptSettings {
   public boolean renderStaticFields = true;
   public boolean useNull = false;
 
+  /**
+   * The most types a merged parameter slot may list before it is collapsed using {@link
+   * #unionCollapse}. Zero or less leaves every slot as a full union.
+   */
+  public int maxUnionWidth = 0;
+
+  public UnionCollapse unionCollapse = UnionCollapse.ALIAS;
+
   public boolean isBlackListed(Method method) {
     if (methodsBlackList.contains(method)) {
       return true;
@@ -25,4 +34,19 @@ public class TypeScriptSettings {
    * If all classes should have private constructors.
    */
   public boolean readOnly = false;
+
+  /**
+   * The most characters of compiled element output kept for reuse between compiles. Zero or less,
+   * the default, compiles every element every time. Only a graph that is compiled more than once,
+   * such as by incremental renders, gains from keeping its output.
+   */
+  public int compileCacheLength = 0;
+
+  /**
+   * @return A hash of every setting that changes compiled output, to key cached output by.
+   */
+  public int getHash() {
+    return Objects.hash(methodsBlackList, methodsBlackListByPath, recursion, renderNonStaticFields,
+        renderStaticFields, useNull, maxUnionWidth, unionCollapse, readOnly);
+  }
 }
@@ -0,0 +1,13 @@
+package com.asledgehammer.typescript.settings;
+
+/**
+ * How a parameter slot wider than {@link TypeScriptSettings#maxUnionWidth} is emitted.
+ */
+public enum UnionCollapse {
+  /** Replace the union with a type alias declared once per namespace. */
+  ALIAS,
+  /** Replace the union with the most specific rendered supertype, or any if there is none. */
+  SUPERTYPE,
+  /** Emit one TypeScript overload per Java overload instead of a merged signature. */
+  OVERLOADS
+}
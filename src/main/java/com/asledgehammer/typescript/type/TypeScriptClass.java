@@ -3,16 +3,18 @@ package com.asledgehammer.typescript.type;
 import com.asledgehammer.typescript.TypeScriptGraph;
 import com.asledgehammer.typescript.settings.TypeScriptSettings;
 import com.asledgehammer.typescript.util.DocBuilder;
+import com.asledgehammer.typescript.util.Indent;
 
+import java.io.IOException;
 import java.lang.reflect.*;
 import java.util.*;
 
-public class TypeScriptClass extends TypeScriptElement {
+public class TypeScriptClass extends TypeScriptReusableElement<TypeScriptClass> {
 
   private final List<TypeScriptGeneric> genericParameters = new ArrayList<>();
-  private final Map<String, TypeScriptField> fields = new HashMap<>();
-  private final Map<String, TypeScriptMethodCluster> methods = new HashMap<>();
-  private final Map<String, TypeScriptMethodCluster> staticMethods = new HashMap<>();
+  private final Map<String, TypeScriptField> fields = new TreeMap<>();
+  private final Map<String, TypeScriptMethodCluster> methods = new TreeMap<>();
+  private final Map<String, TypeScriptMethodCluster> staticMethods = new TreeMap<>();
   private TypeScriptConstructor constructor;
 
   protected TypeScriptClass(TypeScriptNamespace namespace, Class<?> clazz) {
@@ -21,7 +23,7 @@ public class TypeScriptClass extends TypeScriptElement {
 
   @Override
   public void walk(TypeScriptGraph graph) {
-    if (this.walked) {
+    if (this.walked || beginWalk(graph)) {
       return;
     }
     System.out.println("Walking " + getName());
@@ -31,9 +33,38 @@ public class TypeScriptClass extends TypeScriptElement {
     walkMethods(graph);
     walkSub(graph);
     checkDuplicateFieldMethods(graph);
+    endWalk(graph);
     this.walked = true;
   }
 
+  @Override
+  protected TypeScriptClass detach() {
+    TypeScriptClass detached = new TypeScriptClass(null, clazz);
+    detached.adopt(this);
+    return detached;
+  }
+
+  @Override
+  protected void adopt(TypeScriptClass walked) {
+    genericParameters.addAll(walked.genericParameters);
+    for (Map.Entry<String, TypeScriptField> entry : walked.fields.entrySet()) {
+      fields.put(entry.getKey(), new TypeScriptField(this, entry.getValue()));
+    }
+    copyMethods(walked.methods, methods);
+    copyMethods(walked.staticMethods, staticMethods);
+    if (walked.constructor != null) {
+      constructor = new TypeScriptConstructor(this, walked.constructor);
+    }
+    this.walked = true;
+  }
+
+  private void copyMethods(
+      Map<String, TypeScriptMethodCluster> from, Map<String, TypeScriptMethodCluster> to) {
+    for (Map.Entry<String, TypeScriptMethodCluster> entry : from.entrySet()) {
+      to.put(entry.getKey(), new TypeScriptMethodCluster(this, entry.getValue()));
+    }
+  }
+
   private void walkConstructors(TypeScriptGraph graph) {
     if (clazz == null) {
       return;
@@ -148,19 +179,25 @@ public class TypeScriptClass extends TypeScriptElement {
   }
 
   @Override
-  public String compile(String prefixOriginal) {
-
+  public void compile(Appendable out, Indent indent) throws IOException {
     if (clazz == null) {
-      return "";
+      return;
     }
+    getNamespace().getGraph().getCompileCache()
+        .compile(out, getCompileKey(), walked, "ts", indent.toString(),
+            builder -> compileClass(builder, indent));
+  }
 
+  private void compileClass(Appendable out, Indent indent) throws IOException {
     TypeScriptSettings settings = getNamespace().getGraph().getCompiler().getSettings();
 
     DocBuilder docBuilder = new DocBuilder();
     docBuilder.appendLine("@customConstructor " + clazz.getSimpleName() + ".new");
     docBuilder.appendLine("@");
 
-    String prefix = prefixOriginal + "  ";
+    String prefixOriginal = indent.toString();
+    Indent inner = indent.next();
+    String prefix = inner.toString();
     StringBuilder stringBuilder = new StringBuilder();
 
     if (clazz.isInterface()) {
@@ -187,21 +224,11 @@ public class TypeScriptClass extends TypeScriptElement {
 
     docBuilder.appendLine(stringBuilder.toString());
 
-    stringBuilder.setLength(0);
-    stringBuilder.append(docBuilder.build(prefixOriginal)).append("\n").append(prefixOriginal);
-    stringBuilder.append("export class ").append(name);
-
-    StringBuilder compiledParams = new StringBuilder();
-    if (!genericParameters.isEmpty()) {
-      compiledParams.append('<');
-      for (TypeScriptGeneric param : genericParameters) {
-        compiledParams.append(param.compile("")).append(", ");
-      }
-      compiledParams = new StringBuilder(
-          compiledParams.substring(0, compiledParams.length() - 2) + '>');
-    }
-    stringBuilder.append(compiledParams);
-    stringBuilder.append(" {\n");
+    docBuilder.build(out, prefixOriginal);
+    out.append("\n").append(prefixOriginal);
+    out.append("export class ").append(name);
+    compileGenericParameters(out, genericParameters);
+    out.append(" {\n");
 
     if (settings.renderStaticFields || settings.renderNonStaticFields) {
       if (!fields.isEmpty()) {
@@ -212,24 +239,27 @@ public class TypeScriptClass extends TypeScriptElement {
           TypeScriptField field = fields.get(_name);
 
           if (field.isStatic() && settings.renderStaticFields) {
-            stringBuilder.append(field.compile(prefix)).append('\n');
+            field.compile(out, inner);
+            out.append('\n');
           }
         }
         // Non-Static Field(s)
         for (String name : names) {
           TypeScriptField field = fields.get(name);
           if (!field.isStatic() && settings.renderNonStaticFields) {
-            stringBuilder.append(field.compile(prefix)).append('\n');
+            field.compile(out, inner);
+            out.append('\n');
           }
         }
-        stringBuilder.append('\n');
+        out.append('\n');
       }
     }
 
     if (clazz.isInterface()) {
-      stringBuilder.append(prefix).append("protected constructor();\n");
+      out.append(prefix).append("protected constructor();\n");
     } else {
-      stringBuilder.append(constructor.compileCustomConstructor(prefix)).append('\n');
+      constructor.compile(out, inner);
+      out.append('\n');
     }
 
     if (!methods.isEmpty()) {
@@ -237,8 +267,8 @@ public class TypeScriptClass extends TypeScriptElement {
       names.sort(Comparator.naturalOrder());
       // Non-Static Method(s)
       for (String name : names) {
-        TypeScriptMethodCluster method = this.methods.get(name);
-        stringBuilder.append(method.compile(prefix)).append('\n');
+        this.methods.get(name).compile(out, inner);
+        out.append('\n');
       }
     }
 
@@ -247,19 +277,17 @@ public class TypeScriptClass extends TypeScriptElement {
       names.sort(Comparator.naturalOrder());
       // Static Method(s)
       for (String name : names) {
-        TypeScriptMethodCluster method = this.staticMethods.get(name);
-        stringBuilder.append(method.compile(prefix)).append('\n');
+        this.staticMethods.get(name).compile(out, inner);
+        out.append('\n');
       }
     }
 
-    if (!stringBuilder.toString().endsWith("\n")) {
-      stringBuilder.append('\n');
-    }
-
-    stringBuilder.append(prefixOriginal).append("}");
-    return stringBuilder.toString();
+    out.append(prefixOriginal).append("}");
   }
 
+  /**
+   * Each method's Lua is cached by its {@link TypeScriptMethodCluster}, so the class's is not.
+   */
   @Override
   public String compileLua(String table) {
     StringBuilder stringBuilder = new StringBuilder();
@@ -277,4 +305,16 @@ public class TypeScriptClass extends TypeScriptElement {
   public Map<String, TypeScriptMethodCluster> getStaticMethods() {
     return this.staticMethods;
   }
+
+  public Map<String, TypeScriptMethodCluster> getMethods() {
+    return this.methods;
+  }
+
+  public Map<String, TypeScriptField> getFields() {
+    return this.fields;
+  }
+
+  public TypeScriptConstructor getConstructor() {
+    return this.constructor;
+  }
 }
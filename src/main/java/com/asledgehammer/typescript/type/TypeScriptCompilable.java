@@ -1,6 +1,26 @@
 package com.asledgehammer.typescript.type;
 
+import com.asledgehammer.typescript.util.Indent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 public interface TypeScriptCompilable {
 
-  String compile(String prefix);
+  /**
+   * Writes the compiled TypeScript straight into the output without building intermediate
+   * strings.
+   */
+  void compile(Appendable out, Indent indent) throws IOException;
+
+  default String compile(String prefix) {
+    StringBuilder builder = new StringBuilder();
+    try {
+      compile(builder, Indent.of(prefix));
+    } catch (IOException e) {
+      // StringBuilder does not throw.
+      throw new UncheckedIOException(e);
+    }
+    return builder.toString();
+  }
 }
@@ -3,19 +3,23 @@ package com.asledgehammer.typescript.type;
 import com.asledgehammer.typescript.TypeScriptGraph;
 import com.asledgehammer.typescript.util.ComplexGenericMap;
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.TreeMap;
 
 public abstract class TypeScriptElement
     implements TypeScriptResolvable, TypeScriptCompilable, TypeScriptWalkable {
 
-  protected final Map<String, TypeScriptElement> elements = new HashMap<>();
+  protected final Map<String, TypeScriptElement> elements = new TreeMap<>();
   protected final TypeScriptNamespace namespace;
   protected final Class<?> clazz;
   final ComplexGenericMap genericMap;
   public String name;
   protected boolean walked = false;
+  private Map<String, Class<?>> nestedClasses;
 
   protected TypeScriptElement(TypeScriptNamespace namespace, Class<?> clazz) {
     this.namespace = namespace;
@@ -46,34 +50,53 @@ public abstract class TypeScriptElement
       return null;
     }
 
-    if (path.contains("$")) {
-      String[] split = path.split("\\$");
-      TypeScriptElement element = elements.get(split[0]);
+    // Walk '$'-separated paths one nested level at a time.
+    TypeScriptElement element = this;
+    int start = 0;
+    int end;
+    while ((end = path.indexOf('$', start)) != -1) {
+      element = element.resolveNested(path.substring(start, end));
       if (element == null) {
-        element = getSubElement(namespace, clazz, split[0]);
-        elements.put(split[0], element);
+        return null;
       }
-
-      StringBuilder rebuiltPath = new StringBuilder(split[1]);
-      if (split.length > 2) {
-        for (int index = 2; index < split.length; index++) {
-          rebuiltPath.append(split[index]);
-        }
-      }
-
-      return element.resolve(rebuiltPath.toString());
+      start = end + 1;
     }
+    return element.resolveNested(path.substring(start));
+  }
 
-    if (elements.containsKey(path)) {
-      return elements.get(path);
+  private TypeScriptElement resolveNested(String name) {
+    if (this.clazz == null) {
+      return null;
     }
-
-    TypeScriptElement element = getSubElement(namespace, clazz, path);
-    elements.put(path, element);
-
+    TypeScriptElement element = elements.get(name);
+    if (element != null) {
+      return element;
+    }
+    Class<?> nested = getNestedClasses().get(name);
+    if (nested == null) {
+      throw new RuntimeException("No nested class '" + name + "' in " + clazz.getName());
+    }
+    element = resolve(namespace, nested);
+    elements.put(name, element);
     return element;
   }
 
+  /**
+   * @return The member classes and interfaces of this element by simple name, built on first use.
+   */
+  private Map<String, Class<?>> getNestedClasses() {
+    if (nestedClasses == null) {
+      nestedClasses = new HashMap<>();
+      for (Class<?> next : clazz.getClasses()) {
+        nestedClasses.putIfAbsent(next.getSimpleName(), next);
+      }
+      for (Class<?> next : clazz.getInterfaces()) {
+        nestedClasses.putIfAbsent(next.getSimpleName(), next);
+      }
+    }
+    return nestedClasses;
+  }
+
   public Class<?> getClazz() {
     return clazz;
   }
@@ -90,20 +113,12 @@ public abstract class TypeScriptElement
     return walked;
   }
 
-  public static TypeScriptElement getSubElement(
-      TypeScriptNamespace namespace, Class<?> enclosingClazz, String name) {
-    for (Class<?> next : enclosingClazz.getClasses()) {
-      if (next.getSimpleName().equals(name)) {
-        return resolve(namespace, next);
-      }
-    }
-    for (Class<?> next : enclosingClazz.getInterfaces()) {
-      if (next.getSimpleName().equals(name)) {
-        return resolve(namespace, next);
-      }
-    }
-
-    throw new RuntimeException();
+  /**
+   * @return The object compiled output of the element is cached by: the element, or the walk it
+   *     shares with other graphs.
+   */
+  protected Object getCompileKey() {
+    return this;
   }
 
   public static TypeScriptElement resolve(TypeScriptNamespace namespace, Class<?> clazz) {
@@ -181,31 +196,38 @@ public abstract class TypeScriptElement
 
     string = TypeScriptElement.adaptType(string);
 
+    // Documentation passes no graph so that nothing is registered as a side effect.
+    if (graph == null) {
+      return appendArrayDimensions(string, arrayDimCount);
+    }
+
     int index = string.indexOf("<");
     if (index != -1) {
       String forName = string.substring(0, index).replace("._function_", ".function");
       try {
-        Class<?> cl = Class.forName(forName);
+        Class<?> cl = Class.forName(forName, false, graph.getClassLoader());
         graph.add(cl);
       } catch (Exception ignored) {
       }
     } else {
       try {
         String forName = string.replace("._function_", ".function");
-        ClassLoader cls = ClassLoader.getSystemClassLoader();
-        Class<?> cl = Class.forName(forName, false, cls);
+        Class<?> cl = Class.forName(forName, false, graph.getClassLoader());
         graph.add(cl);
       } catch (Exception ignored) {
       }
     }
 
+    return appendArrayDimensions(string, arrayDimCount);
+  }
+
+  private static String appendArrayDimensions(String string, int arrayDimCount) {
     StringBuilder stringBuilder = new StringBuilder(string);
     while (arrayDimCount > 0) {
       stringBuilder.append("[]");
       arrayDimCount--;
     }
-    string = stringBuilder.toString();
-    return string;
+    return stringBuilder.toString();
   }
 
   public static String adaptType(String type) {
@@ -241,6 +263,21 @@ public abstract class TypeScriptElement
     return true;
   }
 
+  static void compileGenericParameters(Appendable out, List<TypeScriptGeneric> parameters)
+      throws IOException {
+    if (parameters.isEmpty()) {
+      return;
+    }
+    out.append('<');
+    for (int index = 0; index < parameters.size(); index++) {
+      if (index != 0) {
+        out.append(", ");
+      }
+      parameters.get(index).compile(out, null);
+    }
+    out.append('>');
+  }
+
   public String compileLua(String table) {
     return table;
   }
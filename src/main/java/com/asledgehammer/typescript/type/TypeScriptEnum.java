@@ -2,17 +2,19 @@ package com.asledgehammer.typescript.type;
 
 import com.asledgehammer.typescript.TypeScriptGraph;
 import com.asledgehammer.typescript.settings.TypeScriptSettings;
+import com.asledgehammer.typescript.util.Indent;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.*;
 
-public class TypeScriptEnum extends TypeScriptElement implements TypeScriptCompilable {
+public class TypeScriptEnum extends TypeScriptReusableElement<TypeScriptEnum> implements TypeScriptCompilable {
 
-  private final Map<String, TypeScriptField> fields = new HashMap<>();
-  private final Map<String, TypeScriptMethodCluster> methods = new HashMap<>();
-  private final Map<String, TypeScriptMethodCluster> staticMethods = new HashMap<>();
+  private final Map<String, TypeScriptField> fields = new TreeMap<>();
+  private final Map<String, TypeScriptMethodCluster> methods = new TreeMap<>();
+  private final Map<String, TypeScriptMethodCluster> staticMethods = new TreeMap<>();
 
   protected TypeScriptEnum(TypeScriptNamespace namespace, Class<?> clazz) {
     super(namespace, clazz);
@@ -20,12 +22,34 @@ public class TypeScriptEnum extends TypeScriptElement implements TypeScriptCompi
 
   @Override
   public void walk(TypeScriptGraph graph) {
-    if (walked) {
+    if (walked || beginWalk(graph)) {
       return;
     }
     System.out.println("Walking " + getName());
     walkFields(graph);
     walkMethods(graph);
+    endWalk(graph);
+    this.walked = true;
+  }
+
+  @Override
+  protected TypeScriptEnum detach() {
+    TypeScriptEnum detached = new TypeScriptEnum(null, clazz);
+    detached.adopt(this);
+    return detached;
+  }
+
+  @Override
+  protected void adopt(TypeScriptEnum walked) {
+    for (Map.Entry<String, TypeScriptField> entry : walked.fields.entrySet()) {
+      fields.put(entry.getKey(), new TypeScriptField(this, entry.getValue()));
+    }
+    for (Map.Entry<String, TypeScriptMethodCluster> entry : walked.methods.entrySet()) {
+      methods.put(entry.getKey(), new TypeScriptMethodCluster(this, entry.getValue()));
+    }
+    for (Map.Entry<String, TypeScriptMethodCluster> entry : walked.staticMethods.entrySet()) {
+      staticMethods.put(entry.getKey(), new TypeScriptMethodCluster(this, entry.getValue()));
+    }
     this.walked = true;
   }
 
@@ -80,32 +104,36 @@ public class TypeScriptEnum extends TypeScriptElement implements TypeScriptCompi
   }
 
   @Override
-  public String compile(String prefixOriginal) {
+  public void compile(Appendable out, Indent indent) throws IOException {
     if (clazz == null) {
-      return "";
+      return;
     }
+    getNamespace().getGraph().getCompileCache()
+        .compile(out, getCompileKey(), walked, "ts", indent.toString(),
+            builder -> compileEnum(builder, indent));
+  }
 
+  private void compileEnum(Appendable out, Indent indent) throws IOException {
     TypeScriptSettings settings = getNamespace().getGraph().getCompiler().getSettings();
 
-    String prefix = prefixOriginal + "  ";
-    StringBuilder stringBuilder = new StringBuilder();
-    stringBuilder
-        .append(prefixOriginal)
+    String prefixOriginal = indent.toString();
+    Indent inner = indent.next();
+    String prefix = inner.toString();
+    out.append(prefixOriginal)
         .append("/** [ENUM] ")
         .append(clazz.getName())
         .append(" */")
         .append('\n');
 
-    stringBuilder.append(prefixOriginal).append("export class ").append(getName()).append(" {\n");
-    stringBuilder.append(prefix).append("protected constructor();\n");
+    out.append(prefixOriginal).append("export class ").append(getName()).append(" {\n");
+    out.append(prefix).append("protected constructor();\n");
 
     List<Enum<?>> values = Arrays.asList((Enum<?>[]) (clazz.getEnumConstants()));
     values.sort(Comparator.comparing(Enum::name));
 
     if (!values.isEmpty()) {
       for (Enum<?> value : values) {
-        stringBuilder
-            .append(prefix)
+        out.append(prefix)
             .append("static readonly ")
             .append(value.name())
             .append(": ")
@@ -130,28 +158,29 @@ public class TypeScriptEnum extends TypeScriptElement implements TypeScriptCompi
       }
 
       if (!fields.isEmpty()) {
-        stringBuilder.append('\n').append(prefix).append("/* FIELDS */\n\n");
+        out.append('\n').append(prefix).append("/* FIELDS */\n\n");
         List<String> names = new ArrayList<>(fields.keySet());
         names.sort(Comparator.naturalOrder());
         for (String name : names) {
           TypeScriptField field = fields.get(name);
           if (!field.isStatic() && settings.renderNonStaticFields) {
-            stringBuilder.append(field.compile(prefix)).append("\n\n");
+            field.compile(out, inner);
+            out.append("\n\n");
           }
         }
       }
     }
 
-    stringBuilder.append(prefix).append("name(): string;\n");
-    stringBuilder.append(prefix).append("ordinal(): number;\n");
+    out.append(prefix).append("name(): string;\n");
+    out.append(prefix).append("ordinal(): number;\n");
 
     if (!methods.isEmpty()) {
       List<String> names = new ArrayList<>(methods.keySet());
       names.sort(Comparator.naturalOrder());
       // Non-Static Method(s)
       for (String name : names) {
-        TypeScriptMethodCluster method = this.methods.get(name);
-        stringBuilder.append(method.compile(prefix)).append('\n');
+        this.methods.get(name).compile(out, inner);
+        out.append('\n');
       }
     }
 
@@ -160,12 +189,23 @@ public class TypeScriptEnum extends TypeScriptElement implements TypeScriptCompi
       names.sort(Comparator.naturalOrder());
       // Static Method(s)
       for (String name : names) {
-        TypeScriptMethodCluster method = this.staticMethods.get(name);
-        stringBuilder.append(method.compile(prefix)).append('\n');
+        this.staticMethods.get(name).compile(out, inner);
+        out.append('\n');
       }
     }
 
-    stringBuilder.append(prefixOriginal).append('}');
-    return stringBuilder.toString();
+    out.append(prefixOriginal).append('}');
+  }
+
+  public Map<String, TypeScriptMethodCluster> getStaticMethods() {
+    return this.staticMethods;
+  }
+
+  public Map<String, TypeScriptMethodCluster> getMethods() {
+    return this.methods;
+  }
+
+  public Map<String, TypeScriptField> getFields() {
+    return this.fields;
   }
 }
@@ -4,7 +4,9 @@ import com.asledgehammer.typescript.TypeScriptGraph;
 import com.asledgehammer.typescript.util.ClazzUtils;
 import com.asledgehammer.typescript.util.ComplexGenericMap;
 import com.asledgehammer.typescript.util.DocBuilder;
+import com.asledgehammer.typescript.util.Indent;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.TypeVariable;
@@ -19,6 +21,7 @@ public class TypeScriptField implements TypeScriptCompilable, TypeScriptWalkable
   private final boolean bPrimitive;
   private boolean walked = false;
   private String adaptedReturn;
+  private String docLine;
 
   public boolean isStatic() {
     return bStatic;
@@ -41,6 +44,20 @@ public class TypeScriptField implements TypeScriptCompilable, TypeScriptWalkable
     this.bPrimitive = field.getType().isPrimitive();
   }
 
+  /**
+   * Copies a walked field into another container of the same class.
+   */
+  TypeScriptField(TypeScriptElement container, TypeScriptField walked) {
+    this.container = container;
+    this.field = walked.field;
+    this.bStatic = walked.bStatic;
+    this.bFinal = walked.bFinal;
+    this.bPrimitive = walked.bPrimitive;
+    this.walked = walked.walked;
+    this.adaptedReturn = walked.adaptedReturn;
+    this.docLine = walked.docLine;
+  }
+
   @Override
   public void walk(TypeScriptGraph graph) {
 
@@ -57,7 +74,7 @@ public class TypeScriptField implements TypeScriptCompilable, TypeScriptWalkable
     this.adaptedReturn = TypeScriptElement.inspect(graph, this.adaptedReturn);
 
     try {
-      ClassLoader cls = ClassLoader.getSystemClassLoader();
+      ClassLoader cls = graph.getClassLoader();
       Class<?> cl = Class.forName(this.adaptedReturn, false, cls);
       graph.add(cl);
     } catch (Exception ignored) {
@@ -74,29 +91,29 @@ public class TypeScriptField implements TypeScriptCompilable, TypeScriptWalkable
       }
     }
 
+    this.docLine = field.getGenericType().getTypeName();
     this.walked = true;
   }
 
   @Override
-  public String compile(String prefix) {
-    int modifiers = field.getModifiers();
-    boolean isStatic = Modifier.isStatic(modifiers);
-    boolean isFinal = Modifier.isFinal(modifiers);
-    boolean isPrimitive = field.getType().isPrimitive();
-
+  public void compile(Appendable out, Indent indent) throws IOException {
+    String prefix = indent.toString();
     DocBuilder doc = new DocBuilder();
-    doc.appendLine(field.getGenericType().getTypeName());
-
-    String compiled = doc.build(prefix)
-        + '\n'
-        + prefix
-        + (isStatic ? "static " : "")
-        + (isFinal ? "readonly " : "")
-        + field.getName()
-        + (!isPrimitive ? "?" : "")
-        + ": ";
-    compiled += adaptedReturn;
-    return compiled + ";";
+    doc.appendLine(docLine);
+    doc.build(out, prefix);
+
+    out.append('\n').append(prefix);
+    if (bStatic) {
+      out.append("static ");
+    }
+    if (bFinal) {
+      out.append("readonly ");
+    }
+    out.append(field.getName());
+    if (!bPrimitive) {
+      out.append('?');
+    }
+    out.append(": ").append(adaptedReturn).append(';');
   }
 
   public TypeScriptElement getContainer() {
@@ -107,6 +124,13 @@ public class TypeScriptField implements TypeScriptCompilable, TypeScriptWalkable
     return field;
   }
 
+  /**
+   * @return The TypeScript type of the field, once walked.
+   */
+  public String getType() {
+    return adaptedReturn;
+  }
+
   public boolean hasWalked() {
     return walked;
   }
@@ -1,7 +1,9 @@
 package com.asledgehammer.typescript.type;
 
 import com.asledgehammer.typescript.TypeScriptGraph;
+import com.asledgehammer.typescript.util.Indent;
 
+import java.io.IOException;
 import java.lang.reflect.TypeVariable;
 
 public class TypeScriptGeneric implements TypeScriptWalkable, TypeScriptCompilable {
@@ -17,7 +19,7 @@ public class TypeScriptGeneric implements TypeScriptWalkable, TypeScriptCompilab
   }
 
   @Override
-  public String compile(String prefix) {
-    return this.type.getTypeName();
+  public void compile(Appendable out, Indent indent) throws IOException {
+    out.append(this.type.getTypeName());
   }
 }
@@ -2,19 +2,25 @@ package com.asledgehammer.typescript.type;
 
 import com.asledgehammer.typescript.TypeScriptGraph;
 import com.asledgehammer.typescript.settings.Recursion;
+import com.asledgehammer.typescript.util.Indent;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.lang.ClassLoader;
 
 public class TypeScriptNamespace
     implements TypeScriptResolvable, TypeScriptWalkable, TypeScriptCompilable {
 
-  public final Map<String, TypeScriptElement> elements = new HashMap<>();
-  private final Map<String, TypeScriptNamespace> namespaces = new HashMap<>();
+  public final Map<String, TypeScriptElement> elements = new TreeMap<>();
+  private final Map<String, TypeScriptNamespace> namespaces = new TreeMap<>();
+  private final Map<String, String> unionAliases = new HashMap<>();
   private final TypeScriptNamespace parent;
   private final TypeScriptGraph graph;
   private final String fullPath;
   private final String name;
+  private int revision;
 
   public TypeScriptNamespace(TypeScriptGraph graph, TypeScriptNamespace parent, String path) {
     this.graph = graph;
@@ -30,6 +36,7 @@ public class TypeScriptNamespace
 
     this.fullPath =
         (parent != null ? parent.fullPath + '.' : "") + (path.contains(".") ? split[0] : path);
+    this.revision = graph.getRevision();
   }
 
   @Override
@@ -63,39 +70,58 @@ public class TypeScriptNamespace
       return namespace.resolve(info[1]);
     }
 
-    if (elements.containsKey(path)) {
-      return elements.get(path);
+    // A class first seen as a plain type is declared once it is added as a root, such as when a
+    // reopened graph is given classes that were not roots in an earlier walk.
+    TypeScriptElement existing = elements.get(path);
+    if (existing != null
+        && !(existing instanceof TypeScriptType
+            && existing.clazz != null
+            && graph.isRoot(existing.clazz.getName()))) {
+      return existing;
     }
 
     Class<?> clazz = null;
-    ClassLoader cls = ClassLoader.getSystemClassLoader();
+    ClassLoader cls = graph.getClassLoader();
 
     try {
       clazz = Class.forName(fullPath.replace("_function_", "function") + "." + (path), false, cls);
     } catch (Throwable ignored) {
     }
 
+    if (clazz != null && graph.isExternal(clazz.getName())) {
+      TypeScriptType type = new TypeScriptType(this, clazz, path);
+      put(path, type);
+      return type;
+    }
+
     Recursion recursion = graph.getCompiler().getSettings().recursion;
-    if ((clazz != null && clazz.isEnum()) || !graph.isWalking() || recursion == Recursion.ALL) {
+    if ((clazz != null && (clazz.isEnum() || graph.isRoot(clazz.getName())))
+        || !graph.isWalking()
+        || recursion == Recursion.ALL) {
       if (clazz != null) {
         TypeScriptElement element = TypeScriptElement.resolve(this, clazz);
-        elements.put(path, element);
+        put(path, element);
         return element;
       }
     }
 
     if (clazz != null && clazz.getName().startsWith("zombie")) {
       TypeScriptElement element = TypeScriptElement.resolve(this, clazz);
-      elements.put(path, element);
+      put(path, element);
       return element;
     }
 
     TypeScriptType type = new TypeScriptType(this, clazz, path);
-    elements.put(path, type);
+    put(path, type);
 
     return type;
   }
 
+  private void put(String path, TypeScriptElement element) {
+    elements.put(path, element);
+    revision = graph.getRevision();
+  }
+
   @Override
   public void walk(TypeScriptGraph graph) {
     for (TypeScriptNamespace namespace : new ArrayList<>(namespaces.values())) {
@@ -106,44 +132,120 @@ public class TypeScriptNamespace
     }
   }
 
-  @Override
-  public String compile(String prefixOriginal) {
-
-    boolean hasElements = false;
+  /**
+   * @return True if compiling this namespace would emit anything.
+   */
+  public boolean hasValidElements() {
     for (TypeScriptElement element : elements.values()) {
       if (element.isValid()) {
-        hasElements = true;
-        break;
+        return true;
       }
     }
+    return false;
+  }
 
-    if (!hasElements) {
-      return "";
+  @Override
+  public void compile(Appendable out, Indent indent) throws IOException {
+    if (!hasValidElements()) {
+      return;
+    }
+    List<String> names = new ArrayList<>(elements.keySet());
+    names.sort(Comparator.naturalOrder());
+    List<TypeScriptCompilable> valid = new ArrayList<>();
+    for (String key : names) {
+      TypeScriptElement element = elements.get(key);
+      if (element.isValid()) {
+        valid.add(element);
+      }
     }
+    compile(out, indent, fullPath, valid, unionAliases);
+  }
 
-    StringBuilder builder = new StringBuilder(prefixOriginal);
+  /**
+   * Compiles a namespace from its parts, so that namespaces merged from several graphs compile
+   * the same as one.
+   *
+   * @param elements The valid elements, sorted by name.
+   * @param unionAliases The aliases by union. See {@link #addUnionAlias(String)}.
+   */
+  public static void compile(Appendable out, Indent indent, String fullPath,
+      List<? extends TypeScriptCompilable> elements, Map<String, String> unionAliases)
+      throws IOException {
+
+    String prefixOriginal = indent.toString();
+    Indent inner = indent.next();
 
-    String fullPath = this.fullPath;
     fullPath = fullPath.replaceAll("\\.function", "._function_");
     fullPath = fullPath.replaceAll("\\.function\\.", "._function_.");
 
-    builder.append("export namespace ").append(fullPath).append(" {\n");
-
-    String prefix = prefixOriginal + "  ";
+    out.append(prefixOriginal).append("export namespace ").append(fullPath).append(" {\n");
 
-    List<String> names = new ArrayList<>(elements.keySet());
-    names.sort(Comparator.naturalOrder());
+    for (TypeScriptCompilable element : elements) {
+      element.compile(out, inner);
+      out.append('\n');
+    }
 
-    for (String key : names) {
-      TypeScriptElement element = elements.get(key);
-      if (element.isValid()) {
-        builder.append(element.compile(prefix)).append('\n');
+    if (!unionAliases.isEmpty()) {
+      String prefix = inner.toString();
+      List<String> aliases = new ArrayList<>(unionAliases.keySet());
+      aliases.sort(Comparator.comparing(unionAliases::get));
+      for (String union : aliases) {
+        String alias = unionAliases.get(union);
+        out.append(prefix).append("export type ")
+            .append(alias.substring(alias.lastIndexOf('.') + 1))
+            .append(" = ").append(union).append(";\n");
       }
     }
 
-    builder.append(prefixOriginal).append("}");
+    out.append(prefixOriginal).append("}");
+  }
+
+  /**
+   * Declares a type alias for a union in this namespace, reusing the alias if the same union was
+   * added before. The name only depends on the namespace and the union, so that it is the same
+   * between runs and in every graph that declares the union, whatever order unions are added in.
+   *
+   * @return The fully-qualified name of the alias.
+   * @throws RuntimeException If another union of the namespace has the same name.
+   */
+  public String addUnionAlias(String union) {
+    String existing = unionAliases.get(union);
+    if (existing != null) {
+      return existing;
+    }
+    String alias = getUnionAliasName(fullPath, union);
+    if (unionAliases.containsValue(alias)) {
+      throw new RuntimeException("Union alias " + alias + " is taken by another union.");
+    }
+    unionAliases.put(union, alias);
+    revision = graph.getRevision();
+    return alias;
+  }
+
+  /**
+   * @return The fully-qualified name of the alias for a union in the namespace: 'Union_' and the
+   *     first 64 bits of the SHA-256 hash of the union.
+   */
+  private static String getUnionAliasName(String fullPath, String union) {
+    byte[] hash;
+    try {
+      hash = MessageDigest.getInstance("SHA-256").digest(union.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+    StringBuilder alias = new StringBuilder(fullPath.replaceAll("\\.function", "._function_"));
+    alias.append(".Union_");
+    for (int index = 0; index < 8; index++) {
+      alias.append(String.format("%02x", hash[index]));
+    }
+    return alias.toString();
+  }
 
-    return builder.toString();
+  /**
+   * @return The union type aliases declared in this namespace, by union.
+   */
+  public Map<String, String> getUnionAliases() {
+    return Collections.unmodifiableMap(unionAliases);
   }
 
   public TypeScriptElement get(String id) {
@@ -152,10 +254,18 @@ public class TypeScriptNamespace
 
   public void set(String id, TypeScriptElement element) {
     if (element.isValid()) {
-      elements.put(id, element);
+      put(id, element);
     }
   }
 
+  /**
+   * @return The revision of the graph when an element or alias was last added to this namespace.
+   *     See {@link TypeScriptGraph#getRevision()}.
+   */
+  public int getRevision() {
+    return revision;
+  }
+
   public String getName() {
     return name;
   }
@@ -0,0 +1,690 @@
+package com.asledgehammer.typescript.type;
+
+import com.asledgehammer.typescript.TypeScriptGraph;
+import com.asledgehammer.typescript.settings.TypeScriptSettings;
+import com.asledgehammer.typescript.util.ClazzUtils;
+import com.asledgehammer.typescript.util.ComplexGenericMap;
+import com.asledgehammer.typescript.util.DocBuilder;
+import com.asledgehammer.typescript.util.Indent;
+
+import java.io.IOException;
+import java.lang.reflect.*;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The shared slot table for a set of overloaded executables. Methods and constructors both walk
+ * into one of these and then pick the printer that matches where they are emitted.
+ */
+public class TypeScriptOverloadSet implements TypeScriptWalkable {
+
+  private static final Comparator<Executable> sorter = (o1, o2) -> {
+
+    // Try the original method first. If this is different, then we use this order.
+    if (o1.getParameterCount() != o2.getParameterCount()) {
+      return o1.getParameterCount() - o2.getParameterCount();
+    }
+
+    // If otherwise, we go until the string comparison of type names is not zero.
+    Type[] o1Types = o1.getGenericParameterTypes();
+    Type[] o2Types = o2.getGenericParameterTypes();
+    for (int index = 0; index < o1Types.length; index++) {
+      int compare = o1Types[index].getTypeName().compareTo(o2Types[index].getTypeName());
+      if (compare != 0) {
+        return compare;
+      }
+    }
+
+    // Next, check the return type.
+    if (o1 instanceof Method m1 && o2 instanceof Method m2) {
+      String returnType1 = m1.getGenericReturnType().getTypeName();
+      String returnType2 = m2.getGenericReturnType().getTypeName();
+      return returnType1.compareTo(returnType2);
+    }
+
+    return 0;
+  };
+
+  private final TypeScriptElement element;
+  private final String name;
+  private final List<Executable> executables = new ArrayList<>();
+  private TypeScriptSignature[] signatures = new TypeScriptSignature[0];
+  private String[][] slotTypes = new String[0][];
+  private final BitSet nullableSlots = new BitSet();
+  private String[] returnTypes = new String[0];
+  private String[] genericTypeNames = new String[0];
+  private String[] docLines = new String[0];
+  private int minParamCount = 0;
+  private boolean returnTypeContainsNonPrimitive = false;
+  private boolean splitOverloads = false;
+  /**
+   * The parameter classes of each signature, held from the walk until the slots in {@link
+   * #supertypeSlots} are collapsed.
+   */
+  private List<Class<?>[]> parameterClasses;
+  private final BitSet supertypeSlots = new BitSet();
+
+  public TypeScriptOverloadSet(
+      TypeScriptElement element, String name, Collection<? extends Executable> executables) {
+    this.element = element;
+    this.name = name;
+    this.executables.addAll(executables);
+    this.executables.sort(sorter);
+  }
+
+  /**
+   * Copies a walked set into another element of the same class. The walked arrays are shared, as
+   * they are not changed once the walk is done.
+   */
+  TypeScriptOverloadSet(TypeScriptElement element, TypeScriptOverloadSet walked) {
+    this.element = element;
+    this.name = walked.name;
+    this.signatures = walked.signatures;
+    this.slotTypes = walked.slotTypes;
+    this.nullableSlots.or(walked.nullableSlots);
+    this.returnTypes = walked.returnTypes;
+    this.genericTypeNames = walked.genericTypeNames;
+    this.docLines = walked.docLines;
+    this.minParamCount = walked.minParamCount;
+    this.returnTypeContainsNonPrimitive = walked.returnTypeContainsNonPrimitive;
+    this.splitOverloads = walked.splitOverloads;
+  }
+
+  @Override
+  public void walk(TypeScriptGraph graph) {
+    if (element.clazz == null) {
+      return;
+    }
+
+    List<String> genericTypeNames = new ArrayList<>();
+    signatures = new TypeScriptSignature[executables.size()];
+    for (int index = 0; index < signatures.length; index++) {
+      Executable executable = executables.get(index);
+      signatures[index] = walkSignature(graph, executable);
+      for (TypeVariable<?> variable : executable.getTypeParameters()) {
+        if (!genericTypeNames.contains(variable.getTypeName())) {
+          genericTypeNames.add(variable.getTypeName());
+        }
+      }
+    }
+    this.genericTypeNames = genericTypeNames.toArray(new String[0]);
+
+    walkDocs();
+    buildSlots();
+    collapseWideSlots(graph);
+
+    // Everything the printers need is now in the signatures. Let go of the reflection objects.
+    executables.clear();
+  }
+
+  private TypeScriptSignature walkSignature(TypeScriptGraph graph, Executable executable) {
+    ComplexGenericMap genericMap = element.genericMap;
+    Class<?> declClazz = executable.getDeclaringClass();
+    Parameter[] parameters = executable.getParameters();
+    Type[] types = executable.getGenericParameterTypes();
+
+    String[] parameterTypes = new String[parameters.length];
+    BitSet primitives = new BitSet();
+    BitSet varargs = new BitSet();
+    for (int i = 0; i < parameters.length; i++) {
+      Class<?> paramClazz = parameters[i].getType();
+      // Some synthetic parameters have no generic counterpart.
+      Type paramType = i < types.length ? types[i] : paramClazz;
+      graph.add(paramClazz);
+
+      String tName;
+      if (isErasedToObject(executable, paramType, paramClazz)) {
+        tName = "any";
+      } else {
+        tName = paramType.getTypeName();
+        if (genericMap != null) {
+          tName = ClazzUtils.walkTypesRecursively(genericMap, declClazz, tName);
+        }
+        tName = TypeScriptElement.inspect(graph, tName);
+        tName = TypeScriptElement.adaptType(tName);
+        tName = appendMissingGenerics(tName, paramClazz);
+        tName = ClazzUtils.walkTypesRecursively(genericMap, declClazz, tName);
+      }
+
+      parameterTypes[i] = graph.intern(tName);
+      primitives.set(i, paramClazz.isPrimitive());
+      varargs.set(i, parameters[i].isVarArgs());
+    }
+
+    String returnType = null;
+    boolean referenceReturn = false;
+    if (executable instanceof Method method) {
+      returnType = graph.intern(walkReturnType(graph, method));
+      referenceReturn = !method.getReturnType().isPrimitive();
+    }
+    return new TypeScriptSignature(
+        parameterTypes, returnType, referenceReturn, primitives, varargs);
+  }
+
+  private String walkReturnType(TypeScriptGraph graph, Method method) {
+    ComplexGenericMap genericMap = element.genericMap;
+    Class<?> returnClazz = method.getReturnType();
+
+    String returnType = method.getGenericReturnType().getTypeName();
+    if (genericMap != null) {
+      returnType =
+          ClazzUtils.walkTypesRecursively(genericMap, method.getDeclaringClass(), returnType);
+    }
+    returnType = TypeScriptElement.adaptType(returnType);
+    returnType = TypeScriptElement.inspect(graph, returnType);
+    if (!returnType.equals("T")) {
+      returnType = appendMissingGenerics(returnType, returnClazz);
+    }
+    if (isObjectClazz(returnClazz)) {
+      returnType = "any";
+    }
+
+    if (!returnClazz.isPrimitive()) {
+      returnTypeContainsNonPrimitive = true;
+    }
+
+    graph.add(returnClazz);
+    return returnType;
+  }
+
+  /**
+   * Folds the signatures into one union per argument position, keeping the order in which types
+   * first appear.
+   */
+  private void buildSlots() {
+    int slotCount = 0;
+    minParamCount = signatures.length == 0 ? 0 : Integer.MAX_VALUE;
+    for (TypeScriptSignature signature : signatures) {
+      slotCount = Math.max(slotCount, signature.getParameterCount());
+      minParamCount = Math.min(minParamCount, signature.getParameterCount());
+    }
+
+    List<String> slot = new ArrayList<>();
+    slotTypes = new String[slotCount][];
+    nullableSlots.clear();
+    for (int i = 0; i < slotCount; i++) {
+      slot.clear();
+      for (TypeScriptSignature signature : signatures) {
+        if (i >= signature.getParameterCount()) {
+          continue;
+        }
+        String type = signature.parameterTypes()[i];
+        if (!slot.contains(type)) {
+          slot.add(type);
+        }
+        // A slot can take null if any overload declares a reference type there.
+        if (!signature.isPrimitive(i)) {
+          nullableSlots.set(i);
+        }
+      }
+      slotTypes[i] = slot.toArray(new String[0]);
+    }
+
+    List<String> returnTypes = new ArrayList<>();
+    for (TypeScriptSignature signature : signatures) {
+      String returnType = signature.returnType();
+      if (returnType != null && !returnTypes.contains(returnType)) {
+        returnTypes.add(returnType);
+      }
+    }
+    this.returnTypes = returnTypes.toArray(new String[0]);
+  }
+
+  /**
+   * Applies {@link TypeScriptSettings#maxUnionWidth} to the built slots. Slots collapsed to a
+   * supertype are only marked here and collapsed by {@link #collapseToSupertypes} once the walk
+   * is done, so that the supertype does not depend on what the walk had reached so far.
+   */
+  private void collapseWideSlots(TypeScriptGraph graph) {
+    TypeScriptSettings settings = graph.getCompiler().getSettings();
+    if (settings.maxUnionWidth <= 0) {
+      return;
+    }
+    for (int i = 0; i < slotTypes.length; i++) {
+      String[] argSlot = slotTypes[i];
+      if (argSlot.length <= settings.maxUnionWidth || contains(argSlot, "any")) {
+        continue;
+      }
+
+      String collapsed;
+      switch (settings.unionCollapse) {
+        case OVERLOADS -> {
+          splitOverloads = true;
+          collapsed = "overloads";
+        }
+        case SUPERTYPE -> {
+          supertypeSlots.set(i);
+          continue;
+        }
+        default -> {
+          if (referencesTypeVariable(argSlot)) {
+            // An alias declared in the namespace cannot see the executable's type variables.
+            continue;
+          }
+          String alias = element.namespace.addUnionAlias(String.join(" | ", argSlot));
+          slotTypes[i] = new String[]{alias};
+          collapsed = "alias " + alias;
+        }
+      }
+
+      graph.reportCollapsedUnion(
+          element.clazz.getName() + '#' + name + " arg" + i + " (" + argSlot.length
+              + " types) -> " + collapsed);
+    }
+    if (!supertypeSlots.isEmpty()) {
+      parameterClasses = new ArrayList<>();
+      for (Executable executable : executables) {
+        parameterClasses.add(executable.getParameterTypes());
+      }
+      graph.deferSupertypeCollapse(this);
+    }
+  }
+
+  /**
+   * Collapses the slots marked by the walk to their most specific common supertype among the
+   * known classes. Members that are TypeScript primitives, such as a String or a boxed number,
+   * stay in the union, as a supertype like CharSequence or Number would not accept them. A slot
+   * that would still be wider than {@link TypeScriptSettings#maxUnionWidth} becomes any.
+   *
+   * @param knownClasses Every class of the walked graph.
+   */
+  public void collapseToSupertypes(TypeScriptGraph graph, Set<Class<?>> knownClasses) {
+    int maxUnionWidth = graph.getCompiler().getSettings().maxUnionWidth;
+    for (int i = supertypeSlots.nextSetBit(0); i >= 0; i = supertypeSlots.nextSetBit(i + 1)) {
+      String[] argSlot = slotTypes[i];
+      List<String> collapsed = new ArrayList<>();
+      String supertype = findCommonSupertype(graph, knownClasses, i, collapsed);
+      if (supertype != null) {
+        collapsed.add(supertype);
+      }
+      if (collapsed.isEmpty() || collapsed.contains("any") || collapsed.size() > maxUnionWidth) {
+        collapsed.clear();
+        collapsed.add("any");
+      }
+      slotTypes[i] = collapsed.toArray(new String[0]);
+      graph.reportCollapsedUnion(
+          element.clazz.getName() + '#' + name + " arg" + i + " (" + argSlot.length
+              + " types) -> supertype " + String.join(" | ", collapsed));
+    }
+    supertypeSlots.clear();
+    parameterClasses = null;
+  }
+
+  /**
+   * @param primitives Filled with the TypeScript primitives of the slot, in order.
+   * @return The most specific known supertype of the slot's other members, any if they have
+   *     none, or null if there are no other members.
+   */
+  private String findCommonSupertype(
+      TypeScriptGraph graph, Set<Class<?>> knownClasses, int slot, List<String> primitives) {
+    Set<Class<?>> common = null;
+    for (int index = 0; index < signatures.length; index++) {
+      TypeScriptSignature signature = signatures[index];
+      if (slot >= signature.getParameterCount()) {
+        continue;
+      }
+      String type = signature.parameterTypes()[slot];
+      if (isPrimitiveType(type)) {
+        if (!primitives.contains(type)) {
+          primitives.add(type);
+        }
+        continue;
+      }
+      Class<?> paramClazz = parameterClasses.get(index)[slot];
+      if (paramClazz.isPrimitive() || paramClazz.isArray()) {
+        return "any";
+      }
+      Set<Class<?>> supertypes = new HashSet<>();
+      collectSupertypes(paramClazz, supertypes);
+      if (common == null) {
+        common = supertypes;
+      } else {
+        common.retainAll(supertypes);
+      }
+    }
+    if (common == null) {
+      return null;
+    }
+
+    // Only pick from classes the graph renders, so that collapsing does not grow the graph.
+    List<Class<?>> candidates = new ArrayList<>();
+    for (Class<?> clazz : common) {
+      if (!clazz.equals(Object.class) && knownClasses.contains(clazz)) {
+        candidates.add(clazz);
+      }
+    }
+    candidates.sort(Comparator.comparing(Class::getName));
+    for (Class<?> candidate : candidates) {
+      boolean mostSpecific = true;
+      for (Class<?> other : candidates) {
+        if (other != candidate && candidate.isAssignableFrom(other)) {
+          mostSpecific = false;
+          break;
+        }
+      }
+      if (mostSpecific) {
+        String tName = TypeScriptElement.inspect(null, candidate.getTypeName());
+        return graph.intern(appendMissingGenerics(tName, candidate));
+      }
+    }
+    return "any";
+  }
+
+  private static boolean isPrimitiveType(String type) {
+    return type.equals("string") || type.equals("number") || type.equals("boolean");
+  }
+
+  private static void collectSupertypes(Class<?> clazz, Set<Class<?>> supertypes) {
+    if (clazz == null || !supertypes.add(clazz)) {
+      return;
+    }
+    collectSupertypes(clazz.getSuperclass(), supertypes);
+    for (Class<?> iClazz : clazz.getInterfaces()) {
+      collectSupertypes(iClazz, supertypes);
+    }
+  }
+
+  private boolean referencesTypeVariable(String[] argSlot) {
+    List<String> variables = new ArrayList<>(List.of(genericTypeNames));
+    for (TypeVariable<?> variable : element.clazz.getTypeParameters()) {
+      variables.add(variable.getTypeName());
+    }
+    for (String type : argSlot) {
+      for (String token : type.split("[^A-Za-z0-9_$]+")) {
+        if (variables.contains(token)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private void walkDocs() {
+    List<String> lines = new ArrayList<>();
+    for (Executable executable : executables) {
+      Parameter[] parameters = executable.getParameters();
+      String compiled;
+      if (parameters.length != 0) {
+        StringBuilder builder = new StringBuilder("(");
+        for (int i = 0; i < parameters.length; i++) {
+          Parameter parameter = parameters[i];
+          String tName = (parameter.isVarArgs()
+              ? parameter.getType().getComponentType().getSimpleName() + "..."
+              : parameter.getType().getSimpleName())
+              + " "
+              + parameter.getName();
+          if (element.genericMap != null) {
+            tName = ClazzUtils.walkTypesRecursively(element.genericMap, element.clazz, tName);
+          }
+          tName = TypeScriptElement.adaptType(tName);
+          tName = TypeScriptElement.inspect(null, tName);
+          if (i != 0) {
+            builder.append(", ");
+          }
+          builder.append(tName);
+        }
+        compiled = builder.append(')').toString();
+      } else {
+        compiled = executable instanceof Method ? "(Empty)" : "(Empty Constructor)";
+      }
+
+      if (executable instanceof Method method) {
+        String returnType = ClazzUtils.walkTypesRecursively(
+            element.genericMap, element.clazz, method.getGenericReturnType().getTypeName());
+        returnType = TypeScriptElement.adaptType(returnType);
+        returnType = TypeScriptElement.inspect(null, returnType);
+        compiled += ": " + returnType;
+      }
+      lines.add(" - " + compiled);
+    }
+    docLines = lines.toArray(new String[0]);
+  }
+
+  public void compileMethod(Appendable out, Indent indent, String name, boolean isStatic)
+      throws IOException {
+    if (element.clazz == null || !exists()) {
+      return;
+    }
+    String prefix = indent.toString();
+    compileDocs(out, prefix, isStatic, "Method Parameters: ");
+    StringBuilder head = new StringBuilder(prefix);
+    if (isStatic) {
+      head.append("static ");
+    }
+    head.append(name);
+    compileGenericParameters(head);
+    compileSignatures(out, head.toString(), true);
+  }
+
+  public void compileFunction(Appendable out, Indent indent, String name) throws IOException {
+    if (element.clazz == null || !exists()) {
+      return;
+    }
+    String prefix = indent.toString();
+    compileDocs(out, prefix, true, "Method Parameters: ");
+    StringBuilder head = new StringBuilder(prefix).append("export function ").append(name);
+    compileGenericParameters(head);
+    compileSignatures(out, head.toString(), true);
+  }
+
+  public void compileConstructor(Appendable out, Indent indent) throws IOException {
+    Class<?> clazz = element.clazz;
+    if (clazz == null || !exists()) {
+      return;
+    }
+    String prefix = indent.toString();
+    compileDocs(out, prefix, false, "Constructors: ");
+    String head = prefix + (Modifier.isAbstract(clazz.getModifiers()) ? "protected " : "")
+        + "constructor";
+    compileSignatures(out, head, false);
+  }
+
+  /**
+   * Emits either the merged signature, or one line per distinct overload when a slot was too
+   * wide to merge.
+   */
+  private void compileSignatures(Appendable out, String head, boolean withReturn)
+      throws IOException {
+    TypeScriptSettings settings = element.getNamespace().getGraph().getCompiler().getSettings();
+    if (!splitOverloads) {
+      out.append(head);
+      compileParameters(out);
+      if (withReturn) {
+        out.append(": ");
+        compileReturnType(out);
+      }
+      out.append(';');
+      return;
+    }
+
+    List<String> lines = new ArrayList<>();
+    for (TypeScriptSignature signature : signatures) {
+      StringBuilder line = new StringBuilder(head).append('(');
+      for (int i = 0; i < signature.getParameterCount(); i++) {
+        if (i != 0) {
+          line.append(", ");
+        }
+        line.append("arg").append(i).append(": ").append(signature.parameterTypes()[i]);
+        if (settings.useNull && !signature.isPrimitive(i)) {
+          line.append(" | null");
+        }
+      }
+      line.append(')');
+      if (withReturn) {
+        line.append(": ").append(signature.returnType());
+        if (settings.useNull && signature.referenceReturn()) {
+          line.append(" | null");
+        }
+      }
+      line.append(';');
+      if (!lines.contains(line.toString())) {
+        lines.add(line.toString());
+      }
+    }
+    for (int index = 0; index < lines.size(); index++) {
+      if (index != 0) {
+        out.append('\n');
+      }
+      out.append(lines.get(index));
+    }
+  }
+
+  public String compileLua(String table, String name, String target) {
+    StringBuilder params = new StringBuilder("(");
+    for (int i = 0; i < slotTypes.length; i++) {
+      if (i != 0) {
+        params.append(',');
+      }
+      params.append("arg").append(i + 1);
+    }
+    params.append(')');
+    return "function " + table + '.' + name + params + " return " + target + params + " end";
+  }
+
+  private void compileDocs(Appendable out, String prefix, boolean noSelf, String header)
+      throws IOException {
+    DocBuilder docBuilder = new DocBuilder();
+    if (noSelf) {
+      docBuilder.appendLine("@noSelf");
+      docBuilder.appendLine();
+    }
+    docBuilder.appendLine(header);
+    for (String line : docLines) {
+      docBuilder.appendLine(line);
+    }
+    docBuilder.build(out, prefix);
+    out.append('\n');
+  }
+
+  private void compileGenericParameters(StringBuilder builder) {
+    if (genericTypeNames.length == 0) {
+      return;
+    }
+    builder.append('<').append(String.join(", ", genericTypeNames)).append('>');
+  }
+
+  private void compileParameters(Appendable out) throws IOException {
+    TypeScriptSettings settings = element.getNamespace().getGraph().getCompiler().getSettings();
+    out.append('(');
+    for (int i = 0; i < slotTypes.length; i++) {
+      if (i != 0) {
+        out.append(", ");
+      }
+      out.append("arg").append(Integer.toString(i));
+      if (i > minParamCount - 1) {
+        out.append('?');
+      }
+      out.append(": ");
+
+      String[] argSlot = slotTypes[i];
+      if (contains(argSlot, "any")) {
+        out.append("any");
+      } else {
+        appendUnion(out, argSlot);
+      }
+
+      if (settings.useNull && nullableSlots.get(i)) {
+        out.append(" | null");
+      }
+    }
+    out.append(')');
+  }
+
+  private void compileReturnType(Appendable out) throws IOException {
+    TypeScriptSettings settings = element.getNamespace().getGraph().getCompiler().getSettings();
+    if (contains(returnTypes, "any")) {
+      out.append("any");
+    } else {
+      appendUnion(out, returnTypes);
+    }
+    if (settings.useNull && returnTypeContainsNonPrimitive && returnTypes.length != 0) {
+      out.append(" | null");
+    }
+  }
+
+  private static void appendUnion(Appendable out, String[] types) throws IOException {
+    for (int index = 0; index < types.length; index++) {
+      if (index != 0) {
+        out.append(" | ");
+      }
+      out.append(types[index]);
+    }
+  }
+
+  private static String appendMissingGenerics(String tName, Class<?> clazz) {
+    if (tName.contains("<")) {
+      return tName;
+    }
+    int count = clazz.getTypeParameters().length;
+    if (count == 0) {
+      return tName;
+    }
+    return tName + "<" + "any, ".repeat(count - 1) + "any>";
+  }
+
+  /**
+   * Type variables declared by the executable itself are kept, as they are emitted with it. Any
+   * other type that erases to Object has no usable name in the output and is treated as any.
+   */
+  private static boolean isErasedToObject(Executable executable, Type type, Class<?> clazz) {
+    if (!isObjectClazz(clazz)) {
+      return false;
+    }
+    while (type instanceof GenericArrayType arrayType) {
+      type = arrayType.getGenericComponentType();
+    }
+    return !(type instanceof TypeVariable<?> variable
+        && variable.getGenericDeclaration().equals(executable));
+  }
+
+  private static boolean isObjectClazz(Class<?> clazz) {
+    while (clazz.isArray()) {
+      clazz = clazz.getComponentType();
+    }
+    return clazz.equals(Object.class);
+  }
+
+  private static boolean contains(String[] array, String value) {
+    for (String next : array) {
+      if (next.equals(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public boolean exists() {
+    return signatures.length != 0 || !executables.isEmpty();
+  }
+
+  public int getParameterCount() {
+    return slotTypes.length;
+  }
+
+  public TypeScriptSignature[] getSignatures() {
+    return signatures;
+  }
+
+  /**
+   * @return The types merged into the argument position, after any collapse.
+   */
+  public String[] getSlotTypes(int index) {
+    return slotTypes[index];
+  }
+
+  /**
+   * @return The number of leading arguments every overload takes. The rest are optional.
+   */
+  public int getMinParameterCount() {
+    return minParamCount;
+  }
+
+  public String[] getReturnTypes() {
+    return returnTypes;
+  }
+}
@@ -0,0 +1,80 @@
+package com.asledgehammer.typescript.type;
+
+import com.asledgehammer.typescript.TypeScriptGraph;
+import com.asledgehammer.typescript.TypeScriptWalkCache;
+
+import java.util.List;
+
+/**
+ * An element reflected from a class whose walk can be stored in a {@link TypeScriptWalkCache} and
+ * taken by the elements of the same class in other graphs.
+ *
+ * @param <E> The type of the element itself.
+ */
+public abstract class TypeScriptReusableElement<E extends TypeScriptReusableElement<E>>
+    extends TypeScriptElement {
+
+  private Object compileKey = this;
+
+  protected TypeScriptReusableElement(TypeScriptNamespace namespace, Class<?> clazz) {
+    super(namespace, clazz);
+  }
+
+  /**
+   * Starts the walk of the element. If the graph's walk cache holds a walk of the class, its
+   * members are taken and the classes it added are added again, so that the graph grows as if the
+   * class was walked here. Otherwise the graph records the walk for {@link #endWalk}.
+   *
+   * @return True if the walk was reused and the element is walked.
+   */
+  @SuppressWarnings("unchecked")
+  protected boolean beginWalk(TypeScriptGraph graph) {
+    TypeScriptWalkCache walkCache = graph.getWalkCache();
+    if (walkCache == null) {
+      return false;
+    }
+    TypeScriptWalkCache.Walk walk = walkCache.get(clazz);
+    if (walk == null) {
+      graph.startRecording();
+      return false;
+    }
+    // Walks are stored by class, and a class always resolves to the same type of element.
+    adopt((E) walk.getElement());
+    for (Class<?> added : walk.getAdded()) {
+      graph.add(added);
+    }
+    compileKey = walk;
+    walked = true;
+    return true;
+  }
+
+  /**
+   * Stores the walk started by {@link #beginWalk} in the graph's walk cache, unless it depends on
+   * the graph.
+   */
+  protected void endWalk(TypeScriptGraph graph) {
+    TypeScriptWalkCache walkCache = graph.getWalkCache();
+    if (walkCache == null) {
+      return;
+    }
+    List<Class<?>> added = graph.stopRecording();
+    if (added != null) {
+      compileKey = walkCache.put(clazz, detach(), added);
+    }
+  }
+
+  /**
+   * @return A copy of the walked members held by an element outside of any namespace.
+   */
+  protected abstract E detach();
+
+  /**
+   * Takes copies of the members of a detached element of the same class.
+   */
+  protected abstract void adopt(E detached);
+
+  @Override
+  protected Object getCompileKey() {
+    return compileKey;
+  }
+}
@@ -0,0 +1,33 @@
+package com.asledgehammer.typescript.type;
+
+import java.util.BitSet;
+
+/**
+ * One walked overload with its reflection handles dropped. Type names are interned through the
+ * graph so that overloads sharing a type share the string.
+ *
+ * @param parameterTypes The resolved TypeScript type of each parameter.
+ * @param returnType The resolved TypeScript return type, or null for constructors.
+ * @param referenceReturn True when the Java return type is not a primitive.
+ * @param primitives Bit i is set when parameter i is a Java primitive.
+ * @param varargs Bit i is set when parameter i is a varargs array.
+ */
+public record TypeScriptSignature(
+    String[] parameterTypes,
+    String returnType,
+    boolean referenceReturn,
+    BitSet primitives,
+    BitSet varargs) {
+
+  public int getParameterCount() {
+    return parameterTypes.length;
+  }
+
+  public boolean isPrimitive(int index) {
+    return primitives.get(index);
+  }
+
+  public boolean isVararg(int index) {
+    return varargs.get(index);
+  }
+}
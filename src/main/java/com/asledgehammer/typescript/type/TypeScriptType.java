@@ -1,6 +1,9 @@
 package com.asledgehammer.typescript.type;
 
 import com.asledgehammer.typescript.TypeScriptGraph;
+import com.asledgehammer.typescript.util.Indent;
+
+import java.io.IOException;
 import java.lang.reflect.TypeVariable;
 import java.util.ArrayList;
 import java.util.List;
@@ -35,17 +38,9 @@ public class TypeScriptType extends TypeScriptElement {
   }
 
   @Override
-  public String compile(String prefix) {
-    StringBuilder compiled = new StringBuilder(prefix);
-    compiled.append("export type ").append(name);
-    if (!genericParameters.isEmpty()) {
-      compiled.append('<');
-      for (TypeScriptGeneric param : genericParameters) {
-        compiled.append(param.compile("")).append(", ");
-      }
-      compiled = new StringBuilder(compiled.substring(0, compiled.length() - 2) + '>');
-    }
-    compiled.append(" = any;");
-    return compiled.toString();
+  public void compile(Appendable out, Indent indent) throws IOException {
+    out.append(indent.toString()).append("export type ").append(name);
+    compileGenericParameters(out, genericParameters);
+    out.append(" = any;");
   }
 }
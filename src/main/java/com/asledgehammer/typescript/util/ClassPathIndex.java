@@ -0,0 +1,128 @@
+package com.asledgehammer.typescript.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The names of the top-level classes on a class path, found by listing jar entries and class files
+ * without loading any class. Nested, anonymous and local classes are left out.
+ */
+public class ClassPathIndex {
+
+  private static ClassPathIndex shared;
+
+  private final String classPath;
+  private final Map<String, Set<String>> packages = new HashMap<>();
+
+  private ClassPathIndex(String classPath) {
+    this.classPath = classPath;
+  }
+
+  /**
+   * Indexes every jar and directory on 'java.class.path'. The index is built once and shared for
+   * as long as the property holds the same class path.
+   */
+  public static synchronized ClassPathIndex ofClassPath() {
+    String classPath = System.getProperty("java.class.path", "");
+    if (shared == null || !shared.classPath.equals(classPath)) {
+      shared = of(classPath);
+    }
+    return shared;
+  }
+
+  /**
+   * Indexes every jar and directory on a class path, separated by the platform's path separator.
+   */
+  public static ClassPathIndex of(String classPath) {
+    ClassPathIndex index = new ClassPathIndex(classPath);
+    for (String entry : classPath.split(File.pathSeparator)) {
+      if (!entry.isEmpty()) {
+        index.add(new File(entry));
+      }
+    }
+    return index;
+  }
+
+  private void add(File file) {
+    if (file.isDirectory()) {
+      addDirectory(file.toPath());
+    } else if (file.isFile()) {
+      addJar(file);
+    }
+  }
+
+  /**
+   * Reads the jar's central directory. No entry is inflated.
+   */
+  private void addJar(File file) {
+    try (ZipFile zip = new ZipFile(file)) {
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        if (!entry.isDirectory()) {
+          addPath(entry.getName());
+        }
+      }
+    } catch (IOException e) {
+      System.out.println("Failed to index class path entry: " + file);
+    }
+  }
+
+  private void addDirectory(Path root) {
+    try (Stream<Path> stream = Files.walk(root)) {
+      stream.forEach(path -> {
+        if (Files.isRegularFile(path)) {
+          addPath(root.relativize(path).toString().replace(File.separatorChar, '/'));
+        }
+      });
+    } catch (IOException e) {
+      System.out.println("Failed to index class path entry: " + root);
+    }
+  }
+
+  private void addPath(String path) {
+    if (!path.endsWith(".class") || path.startsWith("META-INF/") || path.indexOf('$') != -1) {
+      return;
+    }
+    String name = path.substring(0, path.length() - ".class".length()).replace('/', '.');
+    if (name.endsWith("module-info") || name.endsWith("package-info")) {
+      return;
+    }
+    int index = name.lastIndexOf('.');
+    String packageName = index != -1 ? name.substring(0, index) : "";
+    packages.computeIfAbsent(packageName, key -> new HashSet<>()).add(name);
+  }
+
+  public boolean contains(String className) {
+    int index = className.lastIndexOf('.');
+    Set<String> classes = packages.get(index != -1 ? className.substring(0, index) : "");
+    return classes != null && classes.contains(className);
+  }
+
+  /**
+   * @param recursive True to include the classes of sub-packages.
+   * @return The classes in the package, sorted.
+   */
+  public List<String> getClasses(String packageName, boolean recursive) {
+    List<String> list = new ArrayList<>();
+    String prefix = packageName + ".";
+    for (Map.Entry<String, Set<String>> entry : packages.entrySet()) {
+      String name = entry.getKey();
+      if (name.equals(packageName) || (recursive && name.startsWith(prefix))) {
+        list.addAll(entry.getValue());
+      }
+    }
+    list.sort(Comparator.naturalOrder());
+    return list;
+  }
+
+  public String getClassPath() {
+    return classPath;
+  }
+}
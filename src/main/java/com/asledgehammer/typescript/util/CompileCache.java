@@ -0,0 +1,126 @@
+package com.asledgehammer.typescript.util;
+
+import com.asledgehammer.typescript.settings.TypeScriptSettings;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Compiled output of walked elements, keyed by the element and the prefix it was compiled with. A
+ * cache holds the output of one set of settings. The store is bounded by the total length of the
+ * cached strings and drops the least recently used entries first.
+ *
+ * <p>An entry is only valid for the state it was compiled in, so callers key it by an object that
+ * a walk replaces or by the element's walked state. Entries that no longer match are never read
+ * again and age out.
+ */
+public final class CompileCache {
+
+  /**
+   * Compiles output for a missing entry.
+   */
+  public interface Source {
+
+    void compile(Appendable out) throws IOException;
+  }
+
+  private record Key(Object owner, boolean walked, String variant, String prefix) {
+  }
+
+  private final TypeScriptSettings settings;
+  private final LinkedHashMap<Key, String> entries = new LinkedHashMap<>(256, 0.75f, true);
+  private long length;
+
+  public CompileCache(TypeScriptSettings settings) {
+    this.settings = settings;
+  }
+
+  /**
+   * Appends the cached output, compiling and caching it first if it is missing.
+   *
+   * @param owner The element the output belongs to, or a record of it and the member compiled.
+   *     Elements and the walks they share are compared by identity, so keys stay cheap to hash.
+   * @param walked The walked state of the owner.
+   * @param variant The kind of output, such as 'ts' or 'lua'.
+   * @param prefix The line prefix or table the output was compiled with.
+   */
+  public void compile(Appendable out, Object owner, boolean walked, String variant, String prefix,
+      Source source) throws IOException {
+    out.append(get(owner, walked, variant, prefix, source));
+  }
+
+  /**
+   * @return The cached output, compiled and cached first if it is missing.
+   * @see #compile(Appendable, Object, boolean, String, String, Source)
+   */
+  public String get(Object owner, boolean walked, String variant, String prefix, Source source)
+      throws IOException {
+    int limit = settings.compileCacheLength;
+    if (limit <= 0) {
+      StringBuilder builder = new StringBuilder();
+      source.compile(builder);
+      return builder.toString();
+    }
+    Key key = new Key(owner, walked, variant, prefix);
+    synchronized (entries) {
+      String cached = entries.get(key);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    // Compile outside the lock, as namespaces compile in parallel. A race only compiles twice.
+    StringBuilder builder = new StringBuilder();
+    source.compile(builder);
+    String compiled = builder.toString();
+    if (compiled.length() > limit) {
+      return compiled;
+    }
+    synchronized (entries) {
+      String previous = entries.put(key, compiled);
+      if (previous != null) {
+        length -= previous.length();
+      }
+      length += compiled.length();
+      Iterator<Map.Entry<Key, String>> iterator = entries.entrySet().iterator();
+      while (length > limit && iterator.hasNext()) {
+        length -= iterator.next().getValue().length();
+        iterator.remove();
+      }
+    }
+    return compiled;
+  }
+
+  /**
+   * @return The cached output, built and cached first if it is missing.
+   * @see #compile(Appendable, Object, boolean, String, String, Source)
+   */
+  public String get(
+      Object owner, boolean walked, String variant, String prefix, Supplier<String> source) {
+    try {
+      return get(owner, walked, variant, prefix, out -> out.append(source.get()));
+    } catch (IOException e) {
+      // StringBuilder does not throw.
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+      length = 0;
+    }
+  }
+
+  /**
+   * @return The total length of the cached output.
+   */
+  public long getLength() {
+    synchronized (entries) {
+      return length;
+    }
+  }
+}
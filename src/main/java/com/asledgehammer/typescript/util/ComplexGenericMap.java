@@ -4,13 +4,13 @@ import java.lang.reflect.Parameter;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 public class ComplexGenericMap {
 
-  private final Map<Class<?>, ComplexGenericMap> superMap = new HashMap<>();
+  private final Map<Class<?>, ComplexGenericMap> superMap = new LinkedHashMap<>();
   private final List<String> paramDeclarations;
   private final ComplexGenericMap sub;
   private final Class<?> clazz;
@@ -37,6 +37,18 @@ public class ComplexGenericMap {
     }
   }
 
+  /**
+   * @return The loader of the most derived class, which can see every type argument it declares.
+   */
+  private ClassLoader getClassLoader() {
+    ComplexGenericMap root = this;
+    while (root.sub != null) {
+      root = root.sub;
+    }
+    ClassLoader classLoader = root.clazz != null ? root.clazz.getClassLoader() : null;
+    return classLoader != null ? classLoader : ClassLoader.getSystemClassLoader();
+  }
+
   public ComplexGenericMap getSuper(Class<?> superClazz) {
     for (Class<?> key : superMap.keySet()) {
       if (key.equals(superClazz)) {
@@ -82,7 +94,8 @@ public class ComplexGenericMap {
 
     private ParameterChain(ComplexGenericMap container, int index) {
       try {
-        this.typeClazz = Class.forName(container.paramDeclarations.get(index));
+        this.typeClazz = Class.forName(
+            container.paramDeclarations.get(index), false, container.getClassLoader());
       } catch (Exception ignored) {
       }
       if (container.sub != null) {
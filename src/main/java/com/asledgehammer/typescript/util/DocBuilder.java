@@ -1,5 +1,7 @@
 package com.asledgehammer.typescript.util;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -42,23 +44,34 @@ public class DocBuilder {
   }
 
   public String build(String prefix) {
+    StringBuilder builder = new StringBuilder();
+    try {
+      build(builder, prefix);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return builder.toString();
+  }
+
+  public void build(Appendable out, String prefix) throws IOException {
 
     if (isEmpty()) {
-      return prefix + "/** */";
+      out.append(prefix).append("/** */");
+      return;
     } else if (lines.size() == 1) {
-      return prefix + "/** " + lines.get(0) + " */";
+      out.append(prefix).append("/** ").append(lines.get(0)).append(" */");
+      return;
     }
 
-    StringBuilder builder = new StringBuilder(prefix).append("/**\n");
+    out.append(prefix).append("/**\n");
     for (String line : lines) {
       if (line == null || line.isEmpty()) {
-        builder.append(prefix).append(" *\n");
+        out.append(prefix).append(" *\n");
         continue;
       }
-      builder.append(prefix).append(" * ").append(line).append('\n');
+      out.append(prefix).append(" * ").append(line).append('\n');
     }
-    builder.append(prefix).append(" */");
-    return builder.toString();
+    out.append(prefix).append(" */");
   }
 
   public boolean isEmpty() {
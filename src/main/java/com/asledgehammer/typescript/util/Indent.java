@@ -0,0 +1,33 @@
+package com.asledgehammer.typescript.util;
+
+/**
+ * A line prefix for compiled output. Each level caches the next one so that nested elements do
+ * not rebuild the same prefix strings.
+ */
+public final class Indent {
+
+  private static final String UNIT = "  ";
+
+  private final String prefix;
+  private Indent next;
+
+  private Indent(String prefix) {
+    this.prefix = prefix;
+  }
+
+  public static Indent of(String prefix) {
+    return new Indent(prefix);
+  }
+
+  public Indent next() {
+    if (next == null) {
+      next = new Indent(prefix + UNIT);
+    }
+    return next;
+  }
+
+  @Override
+  public String toString() {
+    return prefix;
+  }
+}
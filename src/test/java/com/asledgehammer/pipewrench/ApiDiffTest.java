@@ -0,0 +1,157 @@
+package com.asledgehammer.pipewrench;
+
+import com.asledgehammer.typescript.TypeScriptCompiler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ApiDiffTest {
+
+  @TempDir
+  Path root;
+
+  /**
+   * @param entries The entries of the snapshot as 'key', 'value' pairs, in any order.
+   */
+  private ApiSnapshot snapshot(String name, String... entries) throws IOException {
+    StringBuilder builder = new StringBuilder(ApiSnapshot.HEADER).append('\n')
+        .append("# name: ").append(name).append('\n');
+    for (int index = 0; index < entries.length; index += 2) {
+      builder.append(entries[index]).append('\t').append(entries[index + 1]).append('\n');
+    }
+    Path file = root.resolve(name + ".api");
+    Files.writeString(file, builder);
+    return ApiSnapshot.read(file.toFile());
+  }
+
+  /**
+   * @return The change lines of the report.
+   */
+  private static List<String> changes(ApiDiff diff) throws IOException {
+    StringWriter writer = new StringWriter();
+    diff.write(writer);
+    List<String> changes = new ArrayList<>();
+    for (String line : writer.toString().split("\n")) {
+      if (line.startsWith("    {\"change\"")) {
+        changes.add(line.trim().replaceAll(",$", ""));
+      }
+    }
+    return changes;
+  }
+
+  @Test
+  void membersOfAddedAndRemovedClassesAreSkipped() throws IOException {
+    ApiSnapshot before = snapshot("before",
+        "a.Removed#method:get", "1 overload(s), 0-0 arg(s): number",
+        "a.Removed", "class",
+        "a.Kept", "class",
+        "a.Removed#field:x", "number");
+    ApiSnapshot after = snapshot("after",
+        "a.Kept", "class",
+        "a.Added", "class",
+        "a.Added#method:set/arg0", "string",
+        "a.Added#method:set", "1 overload(s), 1-1 arg(s): void");
+    ApiDiff diff = new ApiDiff(before, after);
+    assertEquals(List.of(
+        "{\"change\": \"added\", \"kind\": \"class\", \"path\": \"a.Added\", \"new\": \"class\"}",
+        "{\"change\": \"removed\", \"kind\": \"class\", \"path\": \"a.Removed\", "
+            + "\"old\": \"class\"}"), changes(diff));
+    assertTrue(diff.hasChanges());
+    assertEquals(List.of(
+        "API changes from before to after:",
+        "\tadded: 1 class",
+        "\tremoved: 1 class",
+        "\tchanged: none",
+        "\t+ a.Added",
+        "\t- a.Removed"), diff.getSummary());
+  }
+
+  @Test
+  void changedSlot() throws IOException {
+    ApiSnapshot before = snapshot("before",
+        "a.A", "class",
+        "a.A#method:set", "1 overload(s), 1-1 arg(s): void",
+        "a.A#method:set/arg0", "number");
+    ApiSnapshot after = snapshot("after",
+        "a.A", "class",
+        "a.A#method:set", "1 overload(s), 1-1 arg(s): void",
+        "a.A#method:set/arg0", "number | string");
+    assertEquals(List.of("{\"change\": \"changed\", \"kind\": \"slot\", "
+        + "\"path\": \"a.A#method:set/arg0\", \"old\": \"number\", \"new\": \"number | string\"}"),
+        changes(new ApiDiff(before, after)));
+  }
+
+  @Test
+  void nestedClassesSortAfterTheMembersOfTheirOuterClass() throws IOException {
+    ApiSnapshot before = snapshot("before",
+        "a.Outer$Inner", "class",
+        "a.Outer", "class",
+        "a.Outer$Inner#field:y", "number",
+        "a.Outer#field:x", "number");
+    ApiSnapshot after = snapshot("after",
+        "a.Outer$Inner#field:y", "string",
+        "a.Outer$Inner", "class");
+    assertEquals(List.of(
+        "{\"change\": \"removed\", \"kind\": \"class\", \"path\": \"a.Outer\", \"old\": \"class\"}",
+        "{\"change\": \"changed\", \"kind\": \"field\", \"path\": \"a.Outer$Inner#field:y\", "
+            + "\"old\": \"number\", \"new\": \"string\"}"), changes(new ApiDiff(before, after)));
+  }
+
+  @Test
+  void identicalSnapshotsHaveNoChanges() throws IOException {
+    ApiSnapshot snapshot = snapshot("same", "a.A", "class", "a.A#field:x", "number");
+    ApiDiff diff = new ApiDiff(snapshot, snapshot("other", "a.A#field:x", "number", "a.A", "class"));
+    assertEquals(List.of(), changes(diff));
+    assertFalse(diff.hasChanges());
+  }
+
+  @Test
+  void snapshotRoundTrip() throws IOException {
+    ApiSnapshot snapshot = snapshot("original",
+        "a.B", "class extends a.A",
+        "a.A", "abstract class<T>",
+        "a.A#static:of/arg1", "string (optional)");
+    StringWriter written = new StringWriter();
+    snapshot.write(written);
+    Path file = root.resolve("written.api");
+    Files.writeString(file, written.toString());
+    ApiSnapshot read = ApiSnapshot.read(file.toFile());
+
+    assertEquals("original", read.getName());
+    assertEquals(3, read.size());
+    assertEquals("a.A", read.getKey(0));
+    assertEquals("abstract class<T>", read.getValue(0));
+    assertEquals("a.A#static:of/arg1", read.getKey(1));
+    assertEquals("string (optional)", read.getValue(1));
+    StringWriter rewritten = new StringWriter();
+    read.write(rewritten);
+    assertEquals(written.toString(), rewritten.toString());
+    assertTrue(ApiSnapshot.isSnapshot(file.toFile()));
+  }
+
+  @Test
+  void walkedSnapshotRoundTrip() throws IOException {
+    TypeScriptCompiler compiler = new TypeScriptCompiler(RenderZomboid.newSettings());
+    compiler.add(ArrayList.class);
+    compiler.walk();
+    ApiSnapshot snapshot = ApiSnapshot.of("walked", compiler);
+    Path file = root.resolve("walked.api");
+    try (Writer writer = Files.newBufferedWriter(file)) {
+      snapshot.write(writer);
+    }
+    ApiSnapshot read = ApiSnapshot.read(file.toFile());
+    assertEquals(snapshot.size(), read.size());
+    assertEquals(List.of(), changes(new ApiDiff(snapshot, read)));
+  }
+}
@@ -0,0 +1,118 @@
+package com.asledgehammer.pipewrench;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchiveOutputTargetTest {
+
+  private static final List<String> PATHS = List.of(
+      "java/zombie_iso.d.ts", "PipeWrench.d.ts", "java/java_util.d.ts", "PipeWrench.lua",
+      "java.api.partial.d.ts", "java/zombie.d.ts");
+
+  @TempDir
+  Path root;
+
+  private byte[] bundle(String name, List<String> paths, boolean parallel) throws IOException {
+    File file = root.resolve(name).toFile();
+    ArchiveOutputTarget target = new ArchiveOutputTarget(file);
+    (parallel ? paths.parallelStream() : paths.stream())
+        .forEach(path -> target.write(path, "content of " + path + "\n".repeat(100)));
+    target.finish();
+    return Files.readAllBytes(file.toPath());
+  }
+
+  @Test
+  void archiveDoesNotDependOnWriteOrder() throws IOException {
+    List<String> reversed = new ArrayList<>(PATHS);
+    Collections.reverse(reversed);
+    byte[] expected = bundle("a.zip", PATHS, false);
+    assertArrayEquals(expected, bundle("b.zip", reversed, false));
+    for (int run = 0; run < 8; run++) {
+      List<String> shuffled = new ArrayList<>(PATHS);
+      Collections.shuffle(shuffled, new Random(run));
+      assertArrayEquals(expected, bundle("c" + run + ".zip", shuffled, true));
+    }
+  }
+
+  @Test
+  void entriesAreSortedWithTheIndexLast() throws IOException {
+    bundle("a.zip", PATHS, true);
+    List<String> names = new ArrayList<>();
+    try (ZipFile zip = new ZipFile(root.resolve("a.zip").toFile())) {
+      for (ZipEntry entry : Collections.list(zip.entries())) {
+        names.add(entry.getName());
+      }
+    }
+    List<String> expected = new ArrayList<>(new TreeSet<>(PATHS));
+    expected.add(ArchiveOutputTarget.INDEX_NAME);
+    assertEquals(expected, names);
+  }
+
+  @Test
+  void rootFilesCanBeReadBeforeFinishing() throws IOException {
+    ArchiveOutputTarget target = new ArchiveOutputTarget(root.resolve("a.zip").toFile());
+    target.write("java.api.partial.d.ts", "partial");
+    target.write("java/zombie.d.ts", "namespace");
+    assertEquals(List.of("java.api.partial.d.ts"), target.list());
+    assertEquals("partial", new String(target.read("java.api.partial.d.ts")));
+    target.finish();
+  }
+
+  @Test
+  void duplicateEntryFails() {
+    ArchiveOutputTarget target = new ArchiveOutputTarget(root.resolve("a.zip").toFile());
+    target.write("a.d.ts", "one");
+    assertThrows(UncheckedIOException.class, () -> target.write("a.d.ts", "two"));
+    target.finish();
+  }
+
+  @Test
+  void entriesReadBackFromTheArchive() throws IOException {
+    for (boolean compress : new boolean[]{true, false}) {
+      File file = root.resolve("entries-" + compress + ".zip").toFile();
+      ArchiveOutputTarget target = new ArchiveOutputTarget(file, path -> compress);
+      Map<String, String> contents = new TreeMap<>();
+      for (String path : PATHS) {
+        contents.put(path, "content of \u00e9 " + path + "\n".repeat(1000));
+        target.write(path, contents.get(path));
+      }
+      assertEquals(contents.get("PipeWrench.lua"), new String(
+          target.read("PipeWrench.lua"), StandardCharsets.UTF_8));
+      target.finish();
+      try (ZipFile zip = new ZipFile(file)) {
+        for (Map.Entry<String, String> entry : contents.entrySet()) {
+          ZipEntry zipEntry = zip.getEntry(entry.getKey());
+          assertEquals(compress ? ZipEntry.DEFLATED : ZipEntry.STORED, zipEntry.getMethod());
+          assertEquals(entry.getValue(), new String(
+              zip.getInputStream(zipEntry).readAllBytes(), StandardCharsets.UTF_8));
+        }
+      }
+    }
+  }
+
+  @Test
+  void archiveIsOnlyCreatedWhenFinished() {
+    File file = root.resolve("a.zip").toFile();
+    ArchiveOutputTarget target = new ArchiveOutputTarget(file);
+    target.write("a.d.ts", "one");
+    assertThrows(UncheckedIOException.class, () -> target.write("b.d.ts", writer -> {
+      throw new IOException("failed");
+    }));
+    assertFalse(file.exists());
+    target.finish();
+    assertTrue(file.exists());
+    assertThrows(IllegalStateException.class, () -> target.write("c.d.ts", "three"));
+  }
+}
@@ -0,0 +1,94 @@
+package com.asledgehammer.pipewrench;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FileOutputTargetTest {
+
+  @TempDir
+  Path root;
+
+  private record Counts(int written, int skipped) {
+  }
+
+  private Counts write(String path, String content) {
+    FileOutputTarget target = new FileOutputTarget(root.toFile());
+    target.write(path, content);
+    Counts counts = new Counts(target.getWrittenCount(), target.getSkippedCount());
+    target.finish();
+    return counts;
+  }
+
+  private long countTempFiles() throws IOException {
+    try (Stream<Path> stream = Files.walk(root)) {
+      return stream.filter(path -> path.toString().endsWith(".tmp")).count();
+    }
+  }
+
+  @Test
+  void unchangedContentIsSkipped() throws IOException {
+    assertEquals(1, write("java/a.d.ts", "declare const a: number;\n").written());
+    Counts counts = write("java/a.d.ts", "declare const a: number;\n");
+    assertEquals(0, counts.written());
+    assertEquals(1, counts.skipped());
+    assertEquals(0, countTempFiles());
+  }
+
+  @Test
+  void changedContentIsWritten() throws IOException {
+    write("a.d.ts", "one");
+    assertEquals(1, write("a.d.ts", "two").written());
+    assertEquals("two", Files.readString(root.resolve("a.d.ts")));
+  }
+
+  @Test
+  void fileEditedWithTheSameSizeIsRestored() throws IOException {
+    write("a.d.ts", "original");
+    Path path = root.resolve("a.d.ts");
+    Files.writeString(path, "edited!!");
+    Files.setLastModifiedTime(path, FileTime.fromMillis(0));
+    assertEquals(1, write("a.d.ts", "original").written());
+    assertEquals("original", Files.readString(path));
+  }
+
+  @Test
+  void contentLargerThanTheSpillSizeIsWritten() throws IOException {
+    String content = "x\u00e9".repeat(FileOutputTarget.SPILL_SIZE);
+    assertEquals(1, write("big.d.ts", content).written());
+    assertEquals(content, Files.readString(root.resolve("big.d.ts"), StandardCharsets.UTF_8));
+    assertEquals(0, countTempFiles());
+    assertEquals(1, write("big.d.ts", content).skipped());
+  }
+
+  @Test
+  void manifestWithoutModificationTimesRewritesOnce() throws IOException {
+    write("a.d.ts", "same");
+    Path manifest = root.resolve(FileOutputTarget.MANIFEST_NAME);
+    String[] split = Files.readString(manifest).trim().split("\t");
+    Files.writeString(manifest, split[0] + "\t" + split[1] + "\t" + split[3] + "\n");
+    assertEquals(1, write("a.d.ts", "same").written());
+    assertEquals(1, write("a.d.ts", "same").skipped());
+  }
+
+  @Test
+  void targetsSharingADirectoryKeepEachOthersEntries() {
+    write("a.d.ts", "old");
+    FileOutputTarget generator = new FileOutputTarget(root.toFile());
+    FileOutputTarget stitcher = new FileOutputTarget(root.toFile());
+    generator.write("a.d.ts", "new");
+    generator.finish();
+    stitcher.write("b.d.ts", "stitched");
+    stitcher.finish();
+    assertEquals(1, write("a.d.ts", "new").skipped());
+    assertEquals(1, write("b.d.ts", "stitched").skipped());
+  }
+}
@@ -0,0 +1,44 @@
+package com.asledgehammer.pipewrench;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ModRenderTest {
+
+  private static final Map<String, String> BY_SIMPLE_NAME = Map.of(
+      "IsoPlayer", "zombie.characters.IsoPlayer",
+      "Foo", "zombie.iso.function.Foo");
+
+  private static String resolve(String name) {
+    return ModRender.resolve(name, BY_SIMPLE_NAME, ModRenderTest.class.getClassLoader());
+  }
+
+  @Test
+  void simpleNames() {
+    assertEquals("zombie.characters.IsoPlayer", resolve("IsoPlayer"));
+    assertEquals("zombie.characters.IsoPlayer", resolve("IsoPlayer.getX"));
+    assertNull(resolve("getPlayer"));
+  }
+
+  @Test
+  void dottedPathsResolveByTheirLongestClassPrefix() {
+    assertEquals("zombie.characters.IsoPlayer", resolve("zombie.characters.IsoPlayer.new"));
+    assertEquals("java.util.ArrayList", resolve("java.util.ArrayList"));
+    assertEquals("java.util.ArrayList", resolve("java.util.ArrayList.new"));
+    assertNull(resolve("zombie.missing.Missing.new"));
+  }
+
+  @Test
+  void escapedReservedWords() {
+    assertEquals("zombie.iso.function.Foo", resolve("zombie.iso._function_.Foo.new"));
+    assertEquals("function", ModRender.unescape("_function_"));
+    assertEquals("instanceof", ModRender.unescape("_instanceof_"));
+    assertEquals("_", ModRender.unescape("_"));
+    assertEquals("__", ModRender.unescape("__"));
+    assertEquals("_private", ModRender.unescape("_private"));
+  }
+}
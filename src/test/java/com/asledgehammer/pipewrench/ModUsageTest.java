@@ -0,0 +1,152 @@
+package com.asledgehammer.pipewrench;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModUsageTest {
+
+  private static ModUsage read(String... lines) throws IOException {
+    ModUsage usage = new ModUsage(RenderZomboid.MODULE_NAME);
+    usage.read(new StringReader(String.join("\n", lines)));
+    return usage;
+  }
+
+  private static Set<String> names(String... lines) throws IOException {
+    ModUsage usage = read(lines);
+    assertFalse(usage.isEverything());
+    return usage.getNames();
+  }
+
+  @Test
+  void namedAndNamespaceImports() throws IOException {
+    assertEquals(Set.of("IsoPlayer", "getPlayer", "zombie.iso.IsoGridSquare"), names(
+        "import { getPlayer, IsoPlayer as Player } from '@asledgehammer/pipewrench';",
+        "import * as PW from \"@asledgehammer/pipewrench\";",
+        "let square: PW.zombie.iso.IsoGridSquare;"));
+  }
+
+  @Test
+  void otherModulesAreIgnored() throws IOException {
+    assertEquals(Set.of(), names(
+        "import { getPlayer } from 'other';",
+        "import * as PW from 'other';",
+        "PW.zombie.iso.IsoObject;",
+        "import('@asledgehammer/pipewrench');"));
+  }
+
+  @Test
+  void membersOfBindingsAreRecorded() throws IOException {
+    assertEquals(Set.of("IsoPlayer", "IsoPlayer.getPlayer", "zombie.iso.IsoObject.new"), names(
+        "import { IsoPlayer as Player } from '@asledgehammer/pipewrench';",
+        "import * as PW from '@asledgehammer/pipewrench';",
+        "const player = Player.getPlayer();",
+        "const object = PW.zombie.iso.IsoObject.new();",
+        "other.PW.zombie.Skipped;"));
+  }
+
+  @Test
+  void divisionAfterClosingBrackets() throws IOException {
+    assertEquals(Set.of("zombie.A", "zombie.B", "zombie.C", "zombie.D"), names(
+        "import * as PW from '@asledgehammer/pipewrench';",
+        "let a = (b) / PW.zombie.A / 2;",
+        "let c = d[0] / PW.zombie.B / 2;",
+        "let e = {} / PW.zombie.C / 2;",
+        "let f = `${g}` / PW.zombie.D / 2;"));
+  }
+
+  @Test
+  void regexAfterOperatorsAndKeywords() throws IOException {
+    assertEquals(Set.of("zombie.A", "zombie.B"), names(
+        "import * as PW from '@asledgehammer/pipewrench';",
+        "s.split(/'/).map(PW.zombie.A);",
+        "function f() { return /PW.zombie.Skipped[/]/g.test(s) && PW.zombie.B; }",
+        "let x = y ? .5 : /PW.zombie.AlsoSkipped/;"));
+  }
+
+  @Test
+  void nestedTemplateSubstitutions() throws IOException {
+    assertEquals(Set.of("zombie.A", "zombie.B", "zombie.C"), names(
+        "import * as PW from '@asledgehammer/pipewrench';",
+        "const s = `a ${`b ${PW.zombie.A} ${ {k: 1}.k }`} PW.zombie.Skipped ${PW.zombie.B}`;",
+        "PW.zombie.C;"));
+  }
+
+  @Test
+  void typeImports() throws IOException {
+    assertEquals(Set.of("IsoObject", "IsoPlayer", "zombie.iso.IsoCell"), names(
+        "import type { IsoPlayer } from '@asledgehammer/pipewrench';",
+        "import { type IsoObject } from '@asledgehammer/pipewrench';",
+        "import type * as PW from '@asledgehammer/pipewrench';",
+        "let cell: PW.zombie.iso.IsoCell;"));
+  }
+
+  @Test
+  void importEqualsRequire() throws IOException {
+    assertEquals(Set.of("zombie.iso.IsoObject"), names(
+        "import PW = require('@asledgehammer/pipewrench');",
+        "PW.zombie.iso.IsoObject;"));
+  }
+
+  @Test
+  void exportAllFromTheModule() throws IOException {
+    assertTrue(read("export * from '@asledgehammer/pipewrench';").isEverything());
+    assertTrue(read("export * as PW from '@asledgehammer/pipewrench';").isEverything());
+    assertFalse(read("export * from 'other';").isEverything());
+  }
+
+  @Test
+  void namedExportsFromTheModule() throws IOException {
+    assertEquals(Set.of("IsoObject", "IsoPlayer", "getPlayer"), names(
+        "export { IsoPlayer, getPlayer as player } from '@asledgehammer/pipewrench';",
+        "export type { IsoObject } from '@asledgehammer/pipewrench';",
+        "export { local };",
+        "export type Local = string;",
+        "player.notRecorded;"));
+  }
+
+  @Test
+  void optionalChains() throws IOException {
+    assertEquals(Set.of("getPlayer", "zombie.iso.IsoObject", "IsoPlayer", "IsoPlayer.getX"),
+        names(
+            "import { getPlayer, IsoPlayer } from '@asledgehammer/pipewrench';",
+            "import * as PW from '@asledgehammer/pipewrench';",
+            "PW?.zombie?.iso.IsoObject;",
+            "getPlayer()?.getX();",
+            "IsoPlayer?.getX;"));
+  }
+
+  @Test
+  void shadowedBindingsOnlyAddNames() throws IOException {
+    assertEquals(Set.of("IsoPlayer", "IsoPlayer.getX", "IsoPlayer.getY"), names(
+        "import { IsoPlayer } from '@asledgehammer/pipewrench';",
+        "function f(IsoPlayer: any) { return IsoPlayer.getX; }",
+        "const o = { IsoPlayer: 1 };",
+        "IsoPlayer.getY;"));
+  }
+
+  @Test
+  void commentsAndStringsAreSkipped() throws IOException {
+    assertEquals(Set.of("zombie.A"), names(
+        "import * as PW from '@asledgehammer/pipewrench';",
+        "// PW.zombie.Line",
+        "/* PW.zombie.Block */",
+        "const s = 'PW.zombie.Single' + \"PW.zombie.Double\\\" PW.zombie.Escaped\";",
+        "PW.zombie.A;"));
+  }
+
+  @Test
+  void bindingsLastForTheFile() throws IOException {
+    ModUsage usage = new ModUsage(RenderZomboid.MODULE_NAME);
+    usage.read(new StringReader("import * as PW from '@asledgehammer/pipewrench';"));
+    usage.read(new StringReader("PW.zombie.A;"));
+    assertEquals(Set.of(), usage.getNames());
+    assertEquals(2, usage.getFileCount());
+  }
+}
@@ -0,0 +1,120 @@
+package com.asledgehammer.pipewrench;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PartialTest {
+
+  private static final String TS = String.join("\n",
+      "// Header that is not stitched.",
+      "export const before = 1;",
+      "  // [PARTIAL:START]",
+      "  export const a: number;",
+      "",
+      "  // A comment kept between the markers.",
+      "  /* [partial:stop] without the prefix is kept */",
+      "\texport const b: string; // trailing comment",
+      "  export const unicode: 'é中';",
+      "// [Partial:Stop] mixed case",
+      "export const after = 2;",
+      "//[pArTiAl:sTaRt]",
+      "export const c: boolean;",
+      "// [PARTIAL:STOP]",
+      "");
+
+  private static final String LUA = String.join("\n",
+      "local hidden = true",
+      "-- [PARTIAL:START]",
+      "function Exports.a() return a() end",
+      "  -- a comment",
+      "function Exports.b() return b() end -- [PARTIAL:STOP] after code is kept",
+      "--[partial:STOP]",
+      "local alsoHidden = true",
+      "-- [PARTIAL:START]",
+      "function Exports.c() return c() end");
+
+  /**
+   * The Scanner-based extraction that {@link Partial#scan} replaced.
+   */
+  private static List<String> scanWithScanner(String content, String commentPrefix) {
+    List<String> lines = new ArrayList<>();
+    boolean in = false;
+    try (Scanner scanner = new Scanner(content)) {
+      while (scanner.hasNextLine()) {
+        String line = scanner.nextLine();
+        String lineLower = line.toLowerCase();
+        if (line.trim().startsWith(commentPrefix)) {
+          if (lineLower.contains("[partial:start]")) {
+            in = true;
+          } else if (lineLower.contains("[partial:stop]")) {
+            in = false;
+          } else if (in) {
+            lines.add(line);
+          }
+        } else if (in) {
+          lines.add(line);
+        }
+      }
+    }
+    return lines;
+  }
+
+  private static void assertSameAsScanner(String content, String commentPrefix)
+      throws IOException {
+    for (String terminator : new String[]{"\n", "\r\n", "\r"}) {
+      String converted = content.replace("\n", terminator);
+      List<String> expected = scanWithScanner(converted, commentPrefix);
+      Partial partial =
+          Partial.scan("test", converted.getBytes(StandardCharsets.UTF_8), commentPrefix);
+      assertEquals(expected, partial.getLines(), "line terminator " + terminator.length());
+
+      StringWriter writer = new StringWriter();
+      partial.writeTo(writer);
+      StringBuilder joined = new StringBuilder();
+      for (String line : expected) {
+        joined.append(line).append('\n');
+      }
+      assertEquals(joined.toString(), writer.toString(), "line terminator " + terminator.length());
+    }
+  }
+
+  @Test
+  void typeScriptMatchesScanner() throws IOException {
+    assertSameAsScanner(TS, "//");
+  }
+
+  @Test
+  void luaMatchesScanner() throws IOException {
+    assertSameAsScanner(LUA, "--");
+  }
+
+  @Test
+  void mixedLineTerminatorsMatchScanner() {
+    String content = "// [PARTIAL:START]\r\na\rb\n\r\nc\r\r// [partial:stop]\nd\n";
+    assertEquals(scanWithScanner(content, "//"),
+        Partial.scan("test", content.getBytes(StandardCharsets.UTF_8), "//").getLines());
+  }
+
+  @Test
+  void markerWithoutPrefixIsKept() {
+    String content = "// [PARTIAL:START]\n[PARTIAL:STOP]\n  # [partial:stop]\n// [PARTIAL:STOP]\n";
+    Partial partial = Partial.scan("test", content.getBytes(StandardCharsets.UTF_8), "//");
+    assertEquals(List.of("[PARTIAL:STOP]", "  # [partial:stop]"), partial.getLines());
+    assertEquals(scanWithScanner(content, "//"), partial.getLines());
+  }
+
+  @Test
+  void fileWithoutMarkersIsEmpty() {
+    Partial partial =
+        Partial.scan("test", "export const a = 1;\n".getBytes(StandardCharsets.UTF_8), "//");
+    assertEquals(0, partial.getLineCount());
+  }
+}
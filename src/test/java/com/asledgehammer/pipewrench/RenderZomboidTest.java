@@ -0,0 +1,41 @@
+package com.asledgehammer.pipewrench;
+
+import com.asledgehammer.typescript.TypeScriptCompiler;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RenderZomboidTest {
+
+  /**
+   * Hides the class holding Lua's global functions, as a class path without the game does.
+   */
+  private static final ClassLoader WITHOUT_GLOBAL_OBJECT =
+      new ClassLoader(RenderZomboidTest.class.getClassLoader()) {
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve)
+            throws ClassNotFoundException {
+          if (name.equals(RenderZomboid.GLOBAL_OBJECT)) {
+            throw new ClassNotFoundException(name);
+          }
+          return super.loadClass(name, resolve);
+        }
+      };
+
+  @Test
+  void rootsWithoutTheGlobalObjectRenderNoFunctions() throws IOException {
+    MemoryOutputTarget output = new MemoryOutputTarget();
+    ClassManifest roots = ClassManifest.of(List.of("java.util.ArrayList"));
+    TypeScriptCompiler compiler = RenderZomboid.newCompiler(
+        RenderZomboid.newSettings(), roots, WITHOUT_GLOBAL_OBJECT, null);
+    new RenderZomboid(output, compiler).render();
+    String partial = new String(output.read("java.api.partial.d.ts"), StandardCharsets.UTF_8);
+    assertTrue(partial.contains("ArrayList"));
+    String lua = new String(output.read("java.interface.partial.lua"), StandardCharsets.UTF_8);
+    assertTrue(lua.contains("Exports.ArrayList = "));
+  }
+}
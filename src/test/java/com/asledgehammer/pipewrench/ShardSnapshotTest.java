@@ -0,0 +1,191 @@
+package com.asledgehammer.pipewrench;
+
+import com.asledgehammer.typescript.TypeScriptCompiler;
+import com.asledgehammer.typescript.settings.TypeScriptSettings;
+import com.asledgehammer.typescript.settings.UnionCollapse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardSnapshotTest {
+
+  private static final String NAMESPACE = "com.asledgehammer.pipewrench";
+
+  @SuppressWarnings("unused")
+  public static class Holder {
+
+    public Declared get() {
+      return null;
+    }
+  }
+
+  @SuppressWarnings("unused")
+  public static class Declared {
+
+    public void set(String value) {
+    }
+
+    public void set(StringBuilder value) {
+    }
+  }
+
+  @SuppressWarnings("unused")
+  public static class Other {
+
+    public void put(Thread value) {
+    }
+
+    public void put(StringBuffer value) {
+    }
+  }
+
+  private static ShardSnapshot shard(
+      TypeScriptSettings settings, List<String> external, Class<?>... classes) {
+    TypeScriptCompiler compiler = new TypeScriptCompiler(settings);
+    compiler.addExternal(external);
+    compiler.add(classes);
+    compiler.walk();
+    return ShardSnapshot.of(compiler);
+  }
+
+  private static ShardSnapshot shard(List<String> external, Class<?>... classes) {
+    return shard(RenderZomboid.newSettings(), external, classes);
+  }
+
+  private static String compile(ShardSnapshot snapshot) throws IOException {
+    StringBuilder builder = new StringBuilder();
+    for (String path : snapshot.getNamespaces()) {
+      snapshot.compileNamespace(path, builder);
+      builder.append('\n');
+    }
+    return builder.toString();
+  }
+
+  private static SymbolTable.Symbol findSymbol(ShardSnapshot snapshot, Class<?> clazz) {
+    for (SymbolTable.Symbol symbol : snapshot.getSymbols()) {
+      if (symbol.className().equals(clazz.getName())) {
+        return symbol;
+      }
+    }
+    return null;
+  }
+
+  @Test
+  void declarationReplacesPlaceholderInEitherOrder() throws IOException {
+    ShardSnapshot holder = shard(List.of(Declared.class.getName()), Holder.class);
+    ShardSnapshot declared = shard(List.of(Holder.class.getName()), Declared.class);
+    assertTrue(findSymbol(holder, Declared.class).type());
+
+    ShardSnapshot first = ShardSnapshot.merge(List.of(holder, declared));
+    ShardSnapshot second = ShardSnapshot.merge(List.of(declared, holder));
+    assertFalse(findSymbol(first, Declared.class).type());
+    assertFalse(findSymbol(first, Holder.class).type());
+    assertEquals(compile(first), compile(second));
+    assertEquals(first.getSymbols(), second.getSymbols());
+    assertTrue(compile(first).contains("export class ShardSnapshotTest$Declared"));
+  }
+
+  @Test
+  void firstDeclarationWins() throws IOException {
+    ShardSnapshot a = shard(List.of(), Declared.class);
+    ShardSnapshot b = shard(List.of(), Declared.class, Holder.class);
+    ShardSnapshot merged = ShardSnapshot.merge(List.of(a, b));
+    assertEquals(findSymbol(a, Declared.class), findSymbol(merged, Declared.class));
+    assertTrue(compile(merged).contains("export class ShardSnapshotTest$Holder"));
+  }
+
+  @Test
+  void writeAndReadRoundTrip(@TempDir File dir) throws IOException {
+    TypeScriptSettings settings = RenderZomboid.newSettings();
+    settings.maxUnionWidth = 1;
+    settings.unionCollapse = UnionCollapse.ALIAS;
+    ShardSnapshot snapshot = shard(settings, List.of(), Holder.class, Declared.class);
+    assertFalse(snapshot.getCollapsedUnions().isEmpty());
+
+    File file = new File(dir, "shard.snapshot");
+    snapshot.write(file);
+    ShardSnapshot read = ShardSnapshot.read(file);
+    assertEquals(snapshot.getNamespaces(), read.getNamespaces());
+    assertEquals(compile(snapshot), compile(read));
+    assertEquals(snapshot.getSymbols(), read.getSymbols());
+    assertEquals(snapshot.getFunctions(), read.getFunctions());
+    assertEquals(snapshot.getLua(), read.getLua());
+    assertEquals(snapshot.getCollapsedUnions(), read.getCollapsedUnions());
+  }
+
+  @Test
+  void shardsNameTheSameUnionAlike() throws IOException {
+    TypeScriptSettings settings = RenderZomboid.newSettings();
+    settings.maxUnionWidth = 1;
+    settings.unionCollapse = UnionCollapse.ALIAS;
+    ShardSnapshot a = shard(settings, List.of(), Declared.class);
+    ShardSnapshot b = shard(settings, List.of(), Other.class, Declared.class);
+    String merged = compile(ShardSnapshot.merge(List.of(a, b)));
+    assertEquals(compile(ShardSnapshot.merge(List.of(b, a))), merged);
+    assertEquals(2, merged.split("export type Union_", -1).length - 1);
+  }
+
+  @Test
+  void conflictingUnionAliasesFail(@TempDir File dir) throws IOException {
+    File sameName = new File(dir, "name.snapshot");
+    File sameUnion = new File(dir, "union.snapshot");
+    File original = new File(dir, "original.snapshot");
+    writeAliases(original, Map.of("string | number", NAMESPACE + ".Union_a"));
+    writeAliases(sameName, Map.of("string | boolean", NAMESPACE + ".Union_a"));
+    writeAliases(sameUnion, Map.of("string | number", NAMESPACE + ".Union_b"));
+
+    ShardSnapshot snapshot = ShardSnapshot.read(original);
+    assertThrows(RuntimeException.class,
+        () -> ShardSnapshot.merge(List.of(snapshot, ShardSnapshot.read(sameName))));
+    assertThrows(RuntimeException.class,
+        () -> ShardSnapshot.merge(List.of(snapshot, ShardSnapshot.read(sameUnion))));
+    ShardSnapshot.merge(List.of(snapshot, ShardSnapshot.read(original)));
+  }
+
+  /**
+   * Writes a snapshot holding one namespace with only the given aliases.
+   */
+  private static void writeAliases(File file, Map<String, String> aliases) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+      out.writeUTF(ShardSnapshot.HEADER);
+      out.writeInt(1);
+      writeString(out, NAMESPACE);
+      out.writeBoolean(true);
+      out.writeInt(0);
+      out.writeInt(aliases.size());
+      for (Map.Entry<String, String> alias : aliases.entrySet()) {
+        writeString(out, alias.getKey());
+        writeString(out, alias.getValue());
+      }
+      out.writeBoolean(false);
+      out.writeInt(0);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String string) throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  @Test
+  void readRejectsOtherFiles(@TempDir File dir) throws IOException {
+    File file = new File(dir, "other.snapshot");
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+      out.writeUTF("something else");
+    }
+    assertThrows(RuntimeException.class, () -> ShardSnapshot.read(file));
+  }
+}
@@ -0,0 +1,50 @@
+package com.asledgehammer.pipewrench;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ShardedRenderTest {
+
+  private static final List<String> ROOTS = List.of(
+      "zombie.iso.IsoObject", "zombie.iso.IsoCell", "zombie.iso.IsoGridSquare",
+      "zombie.ai.State", "zombie.ai.StateMachine",
+      "zombie.core.Core",
+      "zombie.Lua.LuaManager$GlobalObject");
+
+  @Test
+  void largestPackagesGoToTheShardWithFewestRoots() {
+    // Sizes 3, 2, 1 and 1: the last package ties at three roots and goes to the lower shard.
+    assertEquals(List.of(
+            List.of("zombie.iso.IsoCell", "zombie.iso.IsoGridSquare", "zombie.iso.IsoObject",
+                "zombie.core.Core"),
+            List.of("zombie.ai.State", "zombie.ai.StateMachine",
+                "zombie.Lua.LuaManager$GlobalObject")),
+        ShardedRender.partition(ROOTS, 2));
+  }
+
+  @Test
+  void partitionDoesNotDependOnRootOrder() {
+    List<List<String>> expected = ShardedRender.partition(ROOTS, 3);
+    Random random = new Random(0);
+    for (int round = 0; round < 10; round++) {
+      List<String> shuffled = new ArrayList<>(ROOTS);
+      Collections.shuffle(shuffled, random);
+      shuffled.add(shuffled.get(0));
+      assertEquals(expected, ShardedRender.partition(shuffled, 3));
+    }
+  }
+
+  @Test
+  void partitionOnlyReturnsShardsWithRoots() {
+    assertEquals(4, ShardedRender.partition(ROOTS, 10).size());
+    List<List<String>> single = ShardedRender.partition(ROOTS, 1);
+    assertEquals(1, single.size());
+    assertEquals(ROOTS.size(), single.get(0).size());
+  }
+}
@@ -0,0 +1,68 @@
+package com.asledgehammer.typescript;
+
+import com.asledgehammer.typescript.settings.TypeScriptSettings;
+import com.asledgehammer.typescript.settings.UnionCollapse;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TypeScriptWalkCacheTest {
+
+  @SuppressWarnings("unused")
+  public static class Sample {
+
+    public void text(String value) {
+    }
+
+    public void text(StringBuilder value) {
+    }
+  }
+
+  private static TypeScriptSettings newSettings(int maxUnionWidth) {
+    TypeScriptSettings settings = new TypeScriptSettings();
+    settings.maxUnionWidth = maxUnionWidth;
+    settings.unionCollapse = UnionCollapse.ALIAS;
+    return settings;
+  }
+
+  private static String compile(
+      TypeScriptSettings settings, TypeScriptWalkCache walkCache, Class<?>... classes) {
+    TypeScriptCompiler compiler = new TypeScriptCompiler(settings, null, null, walkCache);
+    compiler.add(classes);
+    compiler.walk();
+    return compiler.compile("");
+  }
+
+  @Test
+  void reusedWalksCompileLikeColdWalks() {
+    String cold = compile(newSettings(0), null, ArrayList.class, AtomicLong.class);
+    TypeScriptWalkCache walkCache = new TypeScriptWalkCache(newSettings(0));
+    assertEquals(cold, compile(newSettings(0), walkCache, ArrayList.class, AtomicLong.class));
+    int stored = walkCache.size();
+    assertEquals(cold, compile(newSettings(0), walkCache, ArrayList.class, AtomicLong.class));
+    assertEquals(stored, walkCache.size());
+    assertEquals(stored, walkCache.getReuseCount());
+  }
+
+  @Test
+  void walksThatCollapseUnionsAreNotStored() {
+    String cold = compile(newSettings(1), null, Sample.class);
+    TypeScriptWalkCache walkCache = new TypeScriptWalkCache(newSettings(1));
+    assertEquals(cold, compile(newSettings(1), walkCache, Sample.class));
+    assertEquals(cold, compile(newSettings(1), walkCache, Sample.class));
+    assertEquals(0, walkCache.size());
+    TypeScriptWalkCache unlimited = new TypeScriptWalkCache(newSettings(0));
+    compile(newSettings(0), unlimited, Sample.class);
+    assertEquals(1, unlimited.size());
+  }
+
+  @Test
+  void rejectsOtherSettings() {
+    TypeScriptWalkCache walkCache = new TypeScriptWalkCache(newSettings(0));
+    assertThrows(RuntimeException.class, () -> compile(newSettings(1), walkCache, Sample.class));
+  }
+}
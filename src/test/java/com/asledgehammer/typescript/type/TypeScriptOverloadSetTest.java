@@ -0,0 +1,87 @@
+package com.asledgehammer.typescript.type;
+
+import com.asledgehammer.typescript.TypeScriptCompiler;
+import com.asledgehammer.typescript.settings.TypeScriptSettings;
+import com.asledgehammer.typescript.settings.UnionCollapse;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TypeScriptOverloadSetTest {
+
+  @SuppressWarnings("unused")
+  public static class Sample {
+
+    public void text(String value) {
+    }
+
+    public void text(StringBuilder value) {
+    }
+
+    public void text(StringBuffer value) {
+    }
+
+    public void amount(Integer value) {
+    }
+
+    public void amount(BigDecimal value) {
+    }
+
+    public void amount(AtomicLong value) {
+    }
+
+    public void mixed(String value) {
+    }
+
+    public void mixed(Thread value) {
+    }
+
+    public void mixed(Runnable[] value) {
+    }
+  }
+
+  private static String[] walkSlot(String methodName, int maxUnionWidth, Class<?>... classes) {
+    TypeScriptSettings settings = new TypeScriptSettings();
+    settings.maxUnionWidth = maxUnionWidth;
+    settings.unionCollapse = UnionCollapse.SUPERTYPE;
+    TypeScriptCompiler compiler = new TypeScriptCompiler(settings);
+    compiler.add(classes);
+    compiler.walk();
+    TypeScriptClass sample = (TypeScriptClass) compiler.resolve(Sample.class);
+    return sample.getMethods().get(methodName).getOverloads().getSlotTypes(0);
+  }
+
+  @Test
+  void supertypeKeepsStringInTheUnion() {
+    String[] slot = walkSlot("text", 2, Sample.class, CharSequence.class);
+    assertEquals("string", slot[0]);
+    assertEquals(2, slot.length);
+  }
+
+  @Test
+  void supertypeKeepsNumberInTheUnion() {
+    String[] slot = walkSlot("amount", 2, Sample.class, Number.class);
+    assertArrayEquals(new String[]{"number", "java.lang.Number"}, slot);
+  }
+
+  @Test
+  void supertypeFallsBackToAnyWhenTooWide() {
+    assertArrayEquals(new String[]{"any"}, walkSlot("text", 1, Sample.class, CharSequence.class));
+  }
+
+  @Test
+  void supertypeFallsBackToAnyWithoutCommonSupertype() {
+    assertArrayEquals(new String[]{"any"}, walkSlot("mixed", 2, Sample.class));
+  }
+
+  @Test
+  void supertypeDoesNotDependOnWalkOrder() {
+    assertArrayEquals(
+        walkSlot("text", 2, Sample.class, CharSequence.class),
+        walkSlot("text", 2, CharSequence.class, Sample.class));
+  }
+}